@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Input data for benchmarks. The same seed gives the same data. PDF files are created by {@link PdfGenerator}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class BenchmarkData {
+
+    public static final long SEED = 42;
+
+    /**
+     * Create lines with Outlines (bookmarks): up to 4 levels, pages are increased from the first to the last one.
+     * 
+     * @param outlines
+     *            Number of Outlines (bookmarks).
+     * @param pages
+     *            Number of pages.
+     * @return lines with Outlines (bookmarks) representation.
+     */
+    public static List<String> createOutlineLines(final int outlines, final int pages) {
+        final Random random = new Random(SEED);
+        final List<String> lines = new ArrayList<>(outlines);
+
+        int level = 0;
+        for (int i = 0; i < outlines; ++i) {
+            final StringBuilder line = new StringBuilder();
+            for (int j = 0; j < level; ++j) {
+                line.append(OutlineHelper.SHIFT);
+            }
+            line.append(PdfGenerator.createTitle(random).replace(OutlineHelper.SEPARATOR, ""));
+            line.append(OutlineHelper.SEPARATOR).append((long) i * pages / outlines + 1);
+            lines.add(line.toString());
+
+            // Next level is deeper by one or any upper level.
+            level = random.nextBoolean() && level < 3 ? level + 1 : random.nextInt(level + 1);
+        }
+        return lines;
+    }
+
+    /**
+     * Create lines with Metadata.
+     * 
+     * @param entries
+     *            Number of Metadata entries.
+     * @return lines with Metadata representation.
+     */
+    public static List<String> createMetadataLines(final int entries) {
+        final Random random = new Random(SEED);
+        final List<String> lines = new ArrayList<>(entries);
+        for (int i = 0; i < entries; ++i) {
+            lines.add(String.format(MetadataHelper.METADATA_LINE_TEMPLATE, String.format("Key%05d", i),
+                    PdfGenerator.createTitle(random)));
+        }
+        return lines;
+    }
+
+    /**
+     * Create file with random content.
+     * 
+     * @param file
+     *            Target file.
+     * @param size
+     *            Size of the file in bytes.
+     * @param compressible
+     *            <code>true</code> for content that can be compressed (text), <code>false</code> for random bytes.
+     * @throws IOException
+     */
+    public static void createFile(final File file, final long size, final boolean compressible) throws IOException {
+        final Random random = new Random(SEED);
+        final byte[] buffer = new byte[IOHelper.COPY_BUFFER_SIZE];
+        try (OutputStream output = Files.newOutputStream(file.toPath())) {
+            long written = 0;
+            while (written < size) {
+                if (compressible) {
+                    for (int i = 0; i < buffer.length; ++i) {
+                        buffer[i] = (byte) PdfGenerator.TITLE_ALPHABET.charAt(random.nextInt(26 + 6));
+                    }
+                } else {
+                    random.nextBytes(buffer);
+                }
+
+                final int length = (int) Math.min(buffer.length, size - written);
+                output.write(buffer, 0, length);
+                written += length;
+            }
+        }
+    }
+
+    /**
+     * Delete directory with all content.
+     * 
+     * @param dir
+     *            Target directory.
+     * @throws IOException
+     */
+    public static void delete(final Path dir) throws IOException {
+        if (dir != null && Files.exists(dir)) {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark for cleaning of Outline (bookmark) titles. Chain of {@link String#replaceAll(String, String)} calls that
+ * was used before {@link TitleNormalizer} is measured as baseline.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CleanTitleBenchmark {
+
+    private static final int TITLES = 1000;
+
+    private final String[] titles = new String[TITLES];
+
+    private static String legacyCleanTitle(final String title) {
+        //@formatter:off
+        return title
+            .trim()
+            .replaceAll("`",                "'"     )
+            .replaceAll("‘",                "'"     )
+            .replaceAll("’",                "'"     )
+            .replaceAll("”",                "\""    )
+            .replaceAll("“",                "\""    )
+            .replaceAll("''",               "\""    )
+            .replaceAll(" - ",              " – "   )
+            .replaceAll("(?<=\\S)–(?=\\S)", " – "   )
+            .replaceAll("…",                "..."   )
+            .replaceAll("\\. \\. \\.",      "..."   )
+            .replaceAll(" ,",               ","     )
+            .replaceAll(" \\.",             "."     )
+            .replaceAll("\t",               OutlineHelper.SHIFT)
+            .replaceAll("\\s{2,}",          " "     )
+            ;
+        //@formatter:on
+    }
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(BenchmarkData.SEED);
+        for (int i = 0; i < TITLES; ++i) {
+            titles[i] = PdfGenerator.createTitle(random);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TITLES)
+    public void cleanTitle(final Blackhole blackhole) {
+        for (String title : titles) {
+            blackhole.consume(OutlineHelper.cleanTitle(title));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TITLES)
+    public void cleanTitleLegacy(final Blackhole blackhole) {
+        for (String title : titles) {
+            blackhole.consume(legacyCleanTitle(title));
+        }
+    }
+}
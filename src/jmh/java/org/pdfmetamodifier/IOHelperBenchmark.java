@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmark for full load-modify-save cycles over PDF file with Outlines (bookmarks), Metadata and Embedded (attached)
+ * file. PDF file is restored from the copy before every invocation.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IOHelperBenchmark {
+
+    // Two levels of Outlines (bookmarks): 110 or 10100 items.
+    @Param({ "10", "100" })
+    public int outlineBreadth;
+
+    @Param({ "10", "1000" })
+    public int pages;
+
+    @Param({ "1024", "16777216" })
+    public long attachmentSize;
+
+    private Path workDir;
+
+    private File originalPdfFile;
+
+    private File pdfFile;
+
+    private File outlinesFile;
+
+    private File savedOutlinesFile;
+
+    private File metadataFile;
+
+    private File savedMetadataFile;
+
+    private File attachmentFile;
+
+    private File attachmentsDir;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        workDir = Files.createTempDirectory("pmm-benchmark");
+        originalPdfFile = workDir.resolve("original.pdf").toFile();
+        pdfFile = workDir.resolve("document.pdf").toFile();
+        outlinesFile = workDir.resolve("outlines.txt").toFile();
+        savedOutlinesFile = workDir.resolve("saved_outlines.txt").toFile();
+        metadataFile = workDir.resolve("metadata.txt").toFile();
+        savedMetadataFile = workDir.resolve("saved_metadata.txt").toFile();
+        attachmentFile = workDir.resolve("attachment.txt").toFile();
+        attachmentsDir = workDir.resolve("attachments").toFile();
+
+        // PDF file.
+        //@formatter:off
+        final PdfGenerator generator = new PdfGenerator()
+                .setSeed(BenchmarkData.SEED)
+                .setPages(pages)
+                .setOutlineDepth(2)
+                .setOutlineBreadth(outlineBreadth)
+                .setAttachments(1)
+                .setAttachmentSize(attachmentSize);
+        //@formatter:on
+        generator.generate(originalPdfFile);
+
+        // Input files.
+        Files.write(outlinesFile.toPath(), BenchmarkData.createOutlineLines((int) generator.getOutlines(), pages));
+        Files.write(metadataFile.toPath(), BenchmarkData.createMetadataLines(10));
+        BenchmarkData.createFile(attachmentFile, attachmentSize, true);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() throws IOException {
+        Files.copy(originalPdfFile.toPath(), pdfFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() throws IOException {
+        BenchmarkData.delete(workDir);
+    }
+
+    @Benchmark
+    public void saveOutlines() throws IOException {
+        IOHelper.saveOutlines(pdfFile, savedOutlinesFile);
+    }
+
+    @Benchmark
+    public void updateOutlines() throws IOException {
+        IOHelper.updateOutlines(pdfFile, outlinesFile);
+    }
+
+    @Benchmark
+    public void saveMetadata() throws IOException {
+        IOHelper.saveMetadata(pdfFile, savedMetadataFile);
+    }
+
+    @Benchmark
+    public void updateMetadata() throws IOException {
+        IOHelper.updateMetadata(pdfFile, metadataFile);
+    }
+
+    @Benchmark
+    public void saveAttachments() throws IOException {
+        IOHelper.saveAttachments(pdfFile, attachmentsDir);
+    }
+
+    @Benchmark
+    public void addAttachments() throws IOException {
+        IOHelper.addAttachments(pdfFile, Collections.singletonList(attachmentFile));
+    }
+}
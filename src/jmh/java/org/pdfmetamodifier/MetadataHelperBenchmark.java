@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark for conversion of Metadata from/to list of lines.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetadataHelperBenchmark {
+
+    @Param({ "10", "1000" })
+    public int entries;
+
+    private List<String> lineList;
+
+    private PDDocumentInformation documentInformation;
+
+    @Setup
+    public void setUp() {
+        lineList = BenchmarkData.createMetadataLines(entries);
+        documentInformation = MetadataHelper.stringListToMetadata(lineList);
+    }
+
+    @Benchmark
+    public List<String> metadataToLineList() {
+        return MetadataHelper.metadataToLineList(documentInformation);
+    }
+
+    @Benchmark
+    public PDDocumentInformation stringListToMetadata() {
+        return MetadataHelper.stringListToMetadata(lineList);
+    }
+}
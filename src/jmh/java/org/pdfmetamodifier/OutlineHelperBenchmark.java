@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageTree;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmark for conversion of Outlines (bookmarks) from/to list of lines. Resolving of page numbers through page index
+ * is compared with {@link PDPageTree#indexOf(PDPage)} for every Outline (bookmark), which was used before the index.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OutlineHelperBenchmark {
+
+    @Param({ "100", "10000" })
+    public int outlines;
+
+    @Param({ "10", "1000", "100000" })
+    public int pages;
+
+    private PDDocument document;
+
+    private List<String> lineList;
+
+    private PDDocumentOutline documentOutline;
+
+    private final List<PDPage> outlinePages = new ArrayList<>();
+
+    private static void collectPages(final PDOutlineNode node, final List<PDPage> outlinePages) throws IOException {
+        for (PDOutlineItem outlineItem : node.children()) {
+            outlinePages.add(((PDPageDestination) outlineItem.getDestination()).getPage());
+            collectPages(outlineItem, outlinePages);
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        document = new PdfGenerator().setSeed(BenchmarkData.SEED).setPages(pages).setOutlineDepth(0).create();
+        lineList = BenchmarkData.createOutlineLines(outlines, pages);
+        documentOutline = OutlineHelper.lineListToOutlines(document.getPages(), lineList);
+        outlinePages.clear();
+        collectPages(documentOutline, outlinePages);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+    @Benchmark
+    public List<String> outlinesToLineList() throws IOException {
+        return OutlineHelper.outlinesToLineList(documentOutline, document.getPages(), null);
+    }
+
+    @Benchmark
+    public PDDocumentOutline lineListToOutlines() {
+        return OutlineHelper.lineListToOutlines(document.getPages(), lineList);
+    }
+
+    @Benchmark
+    public long pageNumbersIndexed() {
+        final Map<COSDictionary, Integer> pageIndex = OutlineHelper.createPageIndex(document.getPages());
+        long sum = 0;
+        for (PDPage page : outlinePages) {
+            sum += pageIndex.get(page.getCOSObject()) + 1;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long pageNumbersLinear() {
+        final PDPageTree pages = document.getPages();
+        long sum = 0;
+        for (PDPage page : outlinePages) {
+            sum += pages.indexOf(page) + 1;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Asynchronous version of {@link IOHelper} methods: every call returns {@link CompletableFuture} immediately and PDF
+ * file is processed by the executor.
+ * 
+ * <p>
+ * Number of PDF files that are processed at the same time is bounded; the rest of jobs wait in the queue without
+ * occupying threads of the executor. Cancelled job is skipped if it was not started yet, otherwise it is stopped
+ * before the next operation over PDF file (see {@link Pipeline#setCancellation(BooleanSupplier)}), so PDF file is
+ * never left partially written. Any returned future can be cancelled, including futures of save operations.
+ * </p>
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class AsyncIOHelper implements Closeable {
+
+    private final Executor executor;
+
+    // Executor that is created (and shut down) by this object.
+    private final ExecutorService ownExecutor;
+
+    private final int maxJobs;
+
+    private final Deque<Job> queue = new ArrayDeque<>();
+
+    private int runningJobs = 0;
+
+    private boolean closed = false;
+
+    // Job that is executed by the dispatching thread itself (for example, by direct executor) does not dispatch jobs
+    // again: the loop of dispatching thread continues instead, so the stack does not grow with the queue.
+    private final ThreadLocal<Boolean> dispatching = ThreadLocal.withInitial(() -> false);
+
+    /*
+     * Pipeline over PDF file and its result.
+     */
+    private static class Job {
+
+        private final File pdfFile;
+
+        private final Pipeline pipeline;
+
+        private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+        Job(final File pdfFile, final Pipeline pipeline) {
+            this.pdfFile = pdfFile;
+            this.pipeline = pipeline;
+        }
+
+        void run() {
+            // Job was cancelled while it was in the queue.
+            if (future.isDone()) {
+                return;
+            }
+
+            try {
+                future.complete(pipeline.setCancellation(future::isCancelled).execute(pdfFile));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Use own pool of threads; it is shut down when this object is closed.
+     * 
+     * @param threads
+     *            Number of PDF files that are processed at the same time.
+     */
+    public AsyncIOHelper(final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(String.format("Number of threads should be positive: %d!", threads));
+        }
+
+        this.ownExecutor = Executors.newFixedThreadPool(threads);
+        this.executor = ownExecutor;
+        this.maxJobs = threads;
+    }
+
+    /**
+     * Use executor of the caller; it is not shut down when this object is closed.
+     * 
+     * @param executor
+     *            Executor of jobs.
+     * @param maxJobs
+     *            Number of PDF files that are processed at the same time.
+     */
+    public AsyncIOHelper(final Executor executor, final int maxJobs) {
+        if (maxJobs < 1) {
+            throw new IllegalArgumentException(String.format("Number of jobs should be positive: %d!", maxJobs));
+        }
+
+        this.ownExecutor = null;
+        this.executor = executor;
+        this.maxJobs = maxJobs;
+    }
+
+    /**
+     * @return number of jobs that wait in the queue.
+     */
+    public synchronized int getQueuedJobs() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of jobs that are executed now.
+     */
+    public synchronized int getRunningJobs() {
+        return runningJobs;
+    }
+
+    // Start jobs from the queue while there are free places.
+    private void dispatch() {
+        if (dispatching.get()) {
+            return;
+        }
+
+        dispatching.set(true);
+        try {
+            while (true) {
+                final Job job;
+                synchronized (this) {
+                    if (runningJobs >= maxJobs || queue.isEmpty()) {
+                        return;
+                    }
+                    job = queue.poll();
+                    ++runningJobs;
+                }
+
+                try {
+                    executor.execute(() -> run(job));
+                } catch (RejectedExecutionException e) {
+                    synchronized (this) {
+                        --runningJobs;
+                    }
+                    job.future.completeExceptionally(e);
+                }
+            }
+        } finally {
+            dispatching.remove();
+        }
+    }
+
+    private void run(final Job job) {
+        try {
+            job.run();
+        } finally {
+            synchronized (this) {
+                --runningJobs;
+            }
+            dispatch();
+        }
+    }
+
+    private Job submit(final File pdfFile, final Pipeline pipeline) {
+        final Job job = new Job(pdfFile, pipeline);
+        synchronized (this) {
+            if (closed) {
+                job.future.completeExceptionally(new RejectedExecutionException("Executor is closed!"));
+                return job;
+            }
+            queue.add(job);
+        }
+        dispatch();
+        return job;
+    }
+
+    /*
+     * Result that is derived from the result of the job: cancellation of it cancels the job too.
+     */
+    private static <T> CompletableFuture<T> derive(final Job job, final Function<Boolean, T> result) {
+        final CompletableFuture<T> future = job.future.thenApply(result);
+        future.whenComplete((value, e) -> {
+            if (future.isCancelled()) {
+                job.future.cancel(false);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Execute pipeline over PDF file. Pipeline should not be used by other jobs.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param pipeline
+     *            Operations over PDF file.
+     * @return <code>true</code> if PDF file was modified.
+     */
+    public CompletableFuture<Boolean> execute(final File pdfFile, final Pipeline pipeline) {
+        return submit(pdfFile, pipeline).future;
+    }
+
+    /**
+     * Save Outlines (bookmarks) to the file.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param outlinesFile
+     *            File with Outlines (bookmarks) in user-frendly format.
+     * @return completion of the job.
+     */
+    public CompletableFuture<Void> saveOutlines(final File pdfFile, final File outlinesFile) {
+        return derive(submit(pdfFile, new Pipeline().saveOutlines(outlinesFile)), modified -> null);
+    }
+
+    /**
+     * Update Outlines (bookmarks) from the file.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param outlinesFile
+     *            File with Outlines (bookmarks) in user-frendly format.
+     * @return <code>true</code> if PDF file was changed.
+     */
+    public CompletableFuture<Boolean> updateOutlines(final File pdfFile, final File outlinesFile) {
+        return execute(pdfFile, new Pipeline().updateOutlines(outlinesFile));
+    }
+
+    /**
+     * Save Metadata to the file.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param metadataFile
+     *            File with Metadata in user-frendly format.
+     * @return completion of the job.
+     */
+    public CompletableFuture<Void> saveMetadata(final File pdfFile, final File metadataFile) {
+        return derive(submit(pdfFile, new Pipeline().saveMetadata(metadataFile)), modified -> null);
+    }
+
+    /**
+     * Update Metadata from the file.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param metadataFile
+     *            File with Metadata in user-frendly format.
+     * @return <code>true</code> if PDF file was changed.
+     */
+    public CompletableFuture<Boolean> updateMetadata(final File pdfFile, final File metadataFile) {
+        return execute(pdfFile, new Pipeline().updateMetadata(metadataFile));
+    }
+
+    /**
+     * Save all Attached (embedded) files to the directory.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param outputDir
+     *            Target directory.
+     * @return total size of saved files in bytes.
+     */
+    public CompletableFuture<Long> saveAttachments(final File pdfFile, final File outputDir) {
+        // Size of saved files is reported by the operation as written bytes.
+        final AtomicLong size = new AtomicLong();
+        final Pipeline pipeline = new Pipeline().saveAttachments(outputDir).setMetricsListener((file, phase) -> {
+            if (Pipeline.SAVE_ATTACHMENTS.equals(phase.getName())) {
+                size.set(phase.getBytesWritten());
+            }
+        });
+        return derive(submit(pdfFile, pipeline), modified -> size.get());
+    }
+
+    /**
+     * Add new Attached (embedded) files.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param attachmentFiles
+     *            Files that will be attached (embedded).
+     * @return <code>true</code> if PDF file was changed.
+     */
+    public CompletableFuture<Boolean> addAttachments(final File pdfFile, final List<File> attachmentFiles) {
+        return execute(pdfFile, new Pipeline().addAttachments(attachmentFiles));
+    }
+
+    /**
+     * Remove Attached (embedded) files with names that match any of globs.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param globs
+     *            Names or globs of Attached (embedded) files.
+     * @return <code>true</code> if PDF file was changed.
+     */
+    public CompletableFuture<Boolean> removeAttachments(final File pdfFile, final List<String> globs) {
+        return execute(pdfFile, new Pipeline().removeAttachments(globs));
+    }
+
+    /**
+     * Remove all Attached (embedded) files.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @return <code>true</code> if PDF file was changed.
+     */
+    public CompletableFuture<Boolean> removeAttachments(final File pdfFile) {
+        return removeAttachments(pdfFile, Collections.singletonList("*"));
+    }
+
+    /**
+     * Stop accepting jobs. Jobs that wait in the queue are cancelled, jobs that are executed now are completed.
+     */
+    @Override
+    public void close() {
+        final List<Job> queuedJobs;
+        synchronized (this) {
+            closed = true;
+            queuedJobs = new ArrayList<>(queue);
+            queue.clear();
+        }
+        for (Job job : queuedJobs) {
+            job.future.cancel(false);
+        }
+
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,650 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDComplexFileSpecification;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDEmbeddedFile;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDFileSpecification;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationFileAttachment;
+
+/**
+ * Helper with methods for extract and remove Embedded (attached) files.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class AttachmentHelper {
+
+    protected static final String DEFAULT_FILENAME = "attachment";
+
+    protected static final String DUPLICATE_FILENAME_TEMPLATE = "%s_%d%s";
+
+    // PDFBox 2.0 does not have constant for the file specification of the annotation.
+    protected static final COSName FILE_SPECIFICATION = COSName.getPDFName("FS");
+
+    // Control characters and characters that are not allowed in file names on some file systems.
+    protected static final Pattern INVALID_FILENAME_CHARACTERS = Pattern.compile("[\\x00-\\x1F\\x7F<>:\"|?*]");
+
+    /*
+     * File specifications are read one by one: from the named tree first and then from file attachment annotations of
+     * pages. Only identities of returned file specifications are kept, which are parsed PDF objects anyway.
+     */
+    private static class FileSpecificationIterator implements Iterator<PDComplexFileSpecification> {
+
+        private final Iterator<Map.Entry<String, PDComplexFileSpecification>> embeddedFiles;
+
+        private final Iterator<PDPage> pages;
+
+        private Iterator<PDAnnotation> annotations = Collections.emptyIterator();
+
+        // The same file can be referenced from the named tree and from annotations.
+        private final Set<COSBase> returnedFileSpecs = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private PDComplexFileSpecification next;
+
+        FileSpecificationIterator(final PDDocument document) throws IOException {
+            final PDDocumentNameDictionary documentNameDictionary = new PDDocumentNameDictionary(
+                    document.getDocumentCatalog());
+            this.embeddedFiles = new EmbeddedFilesIterator(documentNameDictionary.getEmbeddedFiles());
+            this.pages = document.getPages().iterator();
+            this.next = findNext();
+        }
+
+        private PDComplexFileSpecification findNext() throws IOException {
+            while (true) {
+                PDComplexFileSpecification fileSpec = null;
+                if (embeddedFiles.hasNext()) {
+                    // Embedded (attached) files from named tree of any depth.
+                    fileSpec = embeddedFiles.next().getValue();
+                } else if (annotations.hasNext()) {
+                    // Embedded (attached) files from annotations.
+                    final PDAnnotation annotation = annotations.next();
+                    if (annotation instanceof PDAnnotationFileAttachment) {
+                        final PDFileSpecification file = ((PDAnnotationFileAttachment) annotation).getFile();
+                        if (file instanceof PDComplexFileSpecification) {
+                            fileSpec = (PDComplexFileSpecification) file;
+                        }
+                    }
+                } else if (pages.hasNext()) {
+                    annotations = pages.next().getAnnotations().iterator();
+                } else {
+                    return null;
+                }
+
+                if (fileSpec != null && returnedFileSpecs.add(fileSpec.getCOSObject())) {
+                    return fileSpec;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public PDComplexFileSpecification next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+
+            final PDComplexFileSpecification result = next;
+            try {
+                next = findNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Iterate file specifications of all Embedded (attached) files: from the named tree first and then from file
+     * attachment annotations of all pages. File specifications are read one by one, the same file specification is
+     * returned only once.
+     * 
+     * @param document
+     *            Source PDF document.
+     * @return file specifications in document order.
+     * @throws IOException
+     * @throws UncheckedIOException
+     *             If annotations of some page can not be read during iteration.
+     */
+    public static Iterator<PDComplexFileSpecification> iterateFileSpecifications(final PDDocument document)
+            throws IOException {
+        return new FileSpecificationIterator(document);
+    }
+
+    /**
+     * Collect file specifications of all Embedded (attached) files, see {@link #iterateFileSpecifications(PDDocument)}.
+     * 
+     * @param document
+     *            Source PDF document.
+     * @return file specifications in document order.
+     * @throws IOException
+     */
+    public static List<PDComplexFileSpecification> getFileSpecifications(final PDDocument document)
+            throws IOException {
+        final List<PDComplexFileSpecification> fileSpecs = new ArrayList<>();
+        try {
+            iterateFileSpecifications(document).forEachRemaining(fileSpecs::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return fileSpecs;
+    }
+
+    /**
+     * Convert name of Embedded (attached) file to the safe file name: path is removed, characters that are not
+     * allowed in file names are replaced.
+     * 
+     * @param filename
+     *            Name of Embedded (attached) file.
+     * @return safe file name.
+     */
+    protected static String cleanFilename(final String filename) {
+        if (filename == null) {
+            return DEFAULT_FILENAME;
+        }
+
+        // Names can contain paths of any platform.
+        final int separatorIndex = Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\'));
+        final String name = INVALID_FILENAME_CHARACTERS.matcher(filename.substring(separatorIndex + 1))
+                .replaceAll("_").trim();
+
+        if (name.isEmpty() || ".".equals(name) || "..".equals(name)) {
+            return DEFAULT_FILENAME;
+        }
+        return name;
+    }
+
+    /**
+     * Assign unique safe file names to Embedded (attached) files one by one. Files with the same name get suffix with
+     * number in document order, names are compared ignoring case. Only used names are kept.
+     * 
+     * @param fileSpecs
+     *            File specifications of Embedded (attached) files.
+     * @return file names with file specifications in document order.
+     */
+    public static Iterator<Map.Entry<String, PDComplexFileSpecification>> iterateFilenames(
+            final Iterator<PDComplexFileSpecification> fileSpecs) {
+        final Set<String> usedFilenames = new HashSet<>();
+        return new Iterator<Map.Entry<String, PDComplexFileSpecification>>() {
+
+            @Override
+            public boolean hasNext() {
+                return fileSpecs.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, PDComplexFileSpecification> next() {
+                final PDComplexFileSpecification fileSpec = fileSpecs.next();
+                final String filename = cleanFilename(fileSpec.getFilename());
+
+                String uniqueFilename = filename;
+                if (!usedFilenames.add(uniqueFilename.toLowerCase(Locale.ROOT))) {
+                    final int extensionIndex = filename.lastIndexOf('.');
+                    final String name = extensionIndex > 0 ? filename.substring(0, extensionIndex) : filename;
+                    final String extension = extensionIndex > 0 ? filename.substring(extensionIndex) : "";
+
+                    int number = 1;
+                    do {
+                        ++number;
+                        uniqueFilename = String.format(DUPLICATE_FILENAME_TEMPLATE, name, number, extension);
+                    } while (!usedFilenames.add(uniqueFilename.toLowerCase(Locale.ROOT)));
+                }
+
+                return new AbstractMap.SimpleImmutableEntry<>(uniqueFilename, fileSpec);
+            }
+        };
+    }
+
+    /**
+     * Assign unique safe file names to Embedded (attached) files, see {@link #iterateFilenames(Iterator)}.
+     * 
+     * @param fileSpecs
+     *            File specifications of Embedded (attached) files.
+     * @return file names mapped to file specifications in document order.
+     */
+    public static Map<String, PDComplexFileSpecification> getFilenames(
+            final List<PDComplexFileSpecification> fileSpecs) {
+        final Map<String, PDComplexFileSpecification> filenames = new LinkedHashMap<>();
+        iterateFilenames(fileSpecs.iterator())
+                .forEachRemaining(entry -> filenames.put(entry.getKey(), entry.getValue()));
+        return filenames;
+    }
+
+    /**
+     * Convert globs to the pattern that matches any of them: <code>*</code> matches any number of characters,
+     * <code>?</code> matches one character, other characters match themselves.
+     * 
+     * @param globs
+     *            Globs, for example <code>*.txt</code>.
+     * @return pattern for the whole name.
+     */
+    public static Pattern globsToPattern(final List<String> globs) {
+        final StringBuilder regex = new StringBuilder();
+        for (String glob : globs) {
+            if (regex.length() > 0) {
+                regex.append('|');
+            }
+
+            regex.append("(?:");
+            final StringBuilder literal = new StringBuilder();
+            for (char c : glob.toCharArray()) {
+                if (c == '*' || c == '?') {
+                    if (literal.length() > 0) {
+                        regex.append(Pattern.quote(literal.toString()));
+                        literal.setLength(0);
+                    }
+                    regex.append(c == '*' ? ".*" : ".");
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (literal.length() > 0) {
+                regex.append(Pattern.quote(literal.toString()));
+            }
+            regex.append(')');
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    // Name in the named tree, file name and safe file name are matched.
+    private static boolean matches(final Pattern pattern, final String name, final COSDictionary fileSpec) {
+        final String filename = new PDComplexFileSpecification(fileSpec).getFilename();
+        //@formatter:off
+        return name != null && pattern.matcher(name).matches()
+                || filename != null && pattern.matcher(filename).matches()
+                || filename != null && pattern.matcher(cleanFilename(filename)).matches();
+        //@formatter:on
+    }
+
+    private static COSBase getLimit(final COSArray kids, final int kidIndex, final int limitIndex) {
+        final COSBase kid = kids.getObject(kidIndex);
+        if (kid instanceof COSDictionary) {
+            final COSBase limits = ((COSDictionary) kid).getDictionaryObject(COSName.LIMITS);
+            if (limits instanceof COSArray && ((COSArray) limits).size() == 2) {
+                return ((COSArray) limits).getObject(limitIndex);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Remove matched names from the node and its kids. Kids that become empty are removed, Limits (the lowest and the
+     * highest names) are recalculated. Returns true if the node is empty.
+     */
+    private static boolean pruneNode(final COSDictionary node, final Pattern pattern, final Set<COSBase> removed,
+            final Set<COSDictionary> visitedNodes) {
+        // Broken PDF files can contain loops in the named tree.
+        if (!visitedNodes.add(node)) {
+            return false;
+        }
+
+        final COSBase namesBase = node.getDictionaryObject(COSName.NAMES);
+        final COSArray names = namesBase instanceof COSArray ? (COSArray) namesBase : new COSArray();
+        for (int i = (names.size() / 2 - 1) * 2; i >= 0; i -= 2) {
+            final COSBase key = names.getObject(i);
+            final COSBase value = names.getObject(i + 1);
+            if (key instanceof COSString && value instanceof COSDictionary
+                    && matches(pattern, ((COSString) key).getString(), (COSDictionary) value)) {
+                removed.add(value);
+                names.remove(i + 1);
+                names.remove(i);
+            }
+        }
+
+        final COSBase kidsBase = node.getDictionaryObject(COSName.KIDS);
+        final COSArray kids = kidsBase instanceof COSArray ? (COSArray) kidsBase : new COSArray();
+        for (int i = kids.size() - 1; i >= 0; --i) {
+            final COSBase kid = kids.getObject(i);
+            if (kid instanceof COSDictionary && pruneNode((COSDictionary) kid, pattern, removed, visitedNodes)) {
+                kids.remove(i);
+            }
+        }
+
+        if (names.size() < 2 && kids.size() == 0) {
+            return true;
+        }
+
+        // Root node does not have Limits.
+        if (node.getDictionaryObject(COSName.LIMITS) instanceof COSArray) {
+            final COSBase lowest = names.size() >= 2 ? names.getObject(0) : getLimit(kids, 0, 0);
+            final COSBase highest = names.size() >= 2 ? names.getObject((names.size() / 2 - 1) * 2)
+                    : getLimit(kids, kids.size() - 1, 1);
+            if (lowest instanceof COSString && highest instanceof COSString) {
+                final COSArray limits = new COSArray();
+                limits.add(lowest);
+                limits.add(highest);
+                node.setItem(COSName.LIMITS, limits);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove Embedded (attached) files with names that match the pattern: entries of the named tree and file
+     * attachment annotations (with their pop-ups). Other names (destinations, JavaScript, etc.) are kept. Name in the
+     * named tree, file name and safe file name (see {@link #cleanFilename(String)}) are matched.
+     * 
+     * Content streams that are not referenced anymore are not written when PDF document is saved as a whole.
+     * 
+     * @param document
+     *            Source PDF document.
+     * @param pattern
+     *            Pattern for names, see {@link #globsToPattern(List)}.
+     * @return number of removed file specifications.
+     * @throws IOException
+     */
+    public static int removeFiles(final PDDocument document, final Pattern pattern) throws IOException {
+        final Set<COSBase> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        // Embedded (attached) files from named tree of any depth.
+        final PDDocumentCatalog catalog = document.getDocumentCatalog();
+        final PDDocumentNameDictionary documentNameDictionary = new PDDocumentNameDictionary(catalog);
+        final PDEmbeddedFilesNameTreeNode embeddedFiles = documentNameDictionary.getEmbeddedFiles();
+        if (embeddedFiles != null && pruneNode(embeddedFiles.getCOSObject(), pattern, removed,
+                Collections.newSetFromMap(new IdentityHashMap<>()))) {
+            documentNameDictionary.setEmbeddedFiles(null);
+            if (documentNameDictionary.getCOSObject().size() == 0) {
+                catalog.setNames(null);
+            }
+        }
+
+        // Embedded (attached) files from annotations.
+        for (PDPage page : document.getPages()) {
+            final COSBase annotsBase = page.getCOSObject().getDictionaryObject(COSName.ANNOTS);
+            if (!(annotsBase instanceof COSArray)) {
+                continue;
+            }
+            final COSArray annots = (COSArray) annotsBase;
+
+            final Set<COSBase> removedAnnots = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int i = annots.size() - 1; i >= 0; --i) {
+                final COSBase annot = annots.getObject(i);
+                if (annot instanceof COSDictionary) {
+                    final COSDictionary annotDictionary = (COSDictionary) annot;
+                    final COSBase fileSpec = annotDictionary.getDictionaryObject(FILE_SPECIFICATION);
+                    if (PDAnnotationFileAttachment.SUB_TYPE.equals(annotDictionary.getNameAsString(COSName.SUBTYPE))
+                            && fileSpec instanceof COSDictionary
+                            && matches(pattern, null, (COSDictionary) fileSpec)) {
+                        removed.add(fileSpec);
+                        removedAnnots.add(annot);
+                        annots.remove(i);
+                    }
+                }
+            }
+
+            // Pop-ups of removed annotations.
+            if (!removedAnnots.isEmpty()) {
+                for (int i = annots.size() - 1; i >= 0; --i) {
+                    final COSBase annot = annots.getObject(i);
+                    if (annot instanceof COSDictionary
+                            && removedAnnots.contains(((COSDictionary) annot).getDictionaryObject(COSName.PARENT))) {
+                        annots.remove(i);
+                    }
+                }
+            }
+        }
+
+        return removed.size();
+    }
+
+    private static PDEmbeddedFile getEmbeddedFile(final PDComplexFileSpecification fileSpec) {
+        // Search for the first available alternative of the Embedded (attached) file.
+        if (fileSpec != null) {
+            //@formatter:off
+            final PDEmbeddedFile[] files = {
+                    fileSpec.getEmbeddedFileUnicode(),
+                    fileSpec.getEmbeddedFileUnix(),
+                    fileSpec.getEmbeddedFileDos(),
+                    fileSpec.getEmbeddedFileMac(),
+                    fileSpec.getEmbeddedFile()
+                };
+            //@formatter:on
+
+            for (PDEmbeddedFile embeddedFile : files) {
+                if (embeddedFile != null) {
+                    return embeddedFile;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /*
+     * PDStream.createInputStream() decodes the whole stream into a buffer before the first byte can be read. Embedded
+     * (attached) files are usually not encoded or encoded only by Flate without parameters: decode them on the fly.
+     */
+    private static InputStream createInputStream(final PDEmbeddedFile embeddedFile) throws IOException {
+        final COSStream stream = embeddedFile.getCOSObject();
+        final List<COSName> filters = embeddedFile.getFilters();
+        final boolean hasDecodeParameters = stream.getDictionaryObject(COSName.DECODE_PARMS, COSName.DP) != null;
+
+        if (filters == null || filters.isEmpty()) {
+            return stream.createRawInputStream();
+        }
+        if (filters.size() == 1 && COSName.FLATE_DECODE.equals(filters.get(0)) && !hasDecodeParameters) {
+            final InputStream input = stream.createRawInputStream();
+            return new InflaterInputStream(input, new Inflater(), IOHelper.COPY_BUFFER_SIZE) {
+
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    inf.end();
+                }
+            };
+        }
+        return embeddedFile.createInputStream();
+    }
+
+    private static int readDecoded(final InputStream input, final byte[] bytes) throws IOException {
+        try {
+            return input.read(bytes);
+        } catch (EOFException | ZipException e) {
+            // Same as PDFBox: keep data that was decoded before broken part of the stream.
+            return -1;
+        }
+    }
+
+    private static long extractFile(final PDEmbeddedFile embeddedFile, final File file) throws IOException {
+        // Copy through fixed-size buffer: memory usage does not depend on size of the file.
+        long size = 0;
+        try (InputStream input = createInputStream(embeddedFile);
+                FileChannel output = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final byte[] bytes = new byte[IOHelper.COPY_BUFFER_SIZE];
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int read;
+            while ((read = readDecoded(input, bytes)) >= 0) {
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    output.write(buffer);
+                }
+                size += read;
+            }
+        }
+        return size;
+    }
+
+    // The same content under other name is copied instead of decoded again.
+    private static long copyFile(final File original, final File file) throws IOException {
+        Files.copy(original.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return Files.size(file.toPath());
+    }
+
+    private static long getResult(final Future<Long> result) throws IOException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Extraction of Embedded (attached) files was interrupted.");
+        }
+    }
+
+    /**
+     * Save Embedded (attached) files to some directory. Files are taken one by one, so only files that are decoded and
+     * written now are in progress. Files are decoded and written concurrently, each content stream is decoded only
+     * once.
+     * 
+     * @param filenames
+     *            File names with file specifications, see {@link #iterateFilenames(Iterator)}.
+     * @param outputDir
+     *            Target directory.
+     * @param threads
+     *            Maximum number of threads that decode and write files; <code>1</code> to use only current thread.
+     * @return total size of saved files in bytes.
+     * @throws IOException
+     */
+    public static long extractFiles(final Iterator<Map.Entry<String, PDComplexFileSpecification>> filenames,
+            final File outputDir, final int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException(String.format("Wrong number of threads: %d!", threads));
+        }
+
+        // The first file of every content: COSStream can not be read by several threads at the same time.
+        final Map<COSStream, File> originalFiles = new IdentityHashMap<>();
+        final Map<COSStream, Future<Long>> originalResults = new IdentityHashMap<>();
+
+        long size = 0;
+        final ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+        try {
+            // Files that are decoded and written now, in order of submission.
+            final Deque<Future<Long>> results = new ArrayDeque<>();
+            while (filenames.hasNext()) {
+                final Map.Entry<String, PDComplexFileSpecification> entry = filenames.next();
+                final PDEmbeddedFile embeddedFile = getEmbeddedFile(entry.getValue());
+                if (embeddedFile == null) {
+                    continue;
+                }
+
+                final File file = new File(outputDir, entry.getKey());
+                final File original = originalFiles.putIfAbsent(embeddedFile.getCOSObject(), file);
+
+                // Decode in current thread.
+                if (executor == null) {
+                    size += original == null ? extractFile(embeddedFile, file) : copyFile(original, file);
+                    continue;
+                }
+
+                // Decode and write concurrently: all PDF objects are already parsed, so only content streams are read.
+                // Tasks are started in order of submission, so the copy waits for the running (or completed) task.
+                if (results.size() >= threads * 2) {
+                    size += getResult(results.poll());
+                }
+                if (original == null) {
+                    final Future<Long> result = executor.submit(() -> extractFile(embeddedFile, file));
+                    originalResults.put(embeddedFile.getCOSObject(), result);
+                    results.add(result);
+                } else {
+                    final Future<Long> originalResult = originalResults.get(embeddedFile.getCOSObject());
+                    results.add(executor.submit(() -> {
+                        getResult(originalResult);
+                        return copyFile(original, file);
+                    }));
+                }
+            }
+
+            while (!results.isEmpty()) {
+                size += getResult(results.poll());
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Save Embedded (attached) files to some directory, see {@link #extractFiles(Iterator, File, int)}.
+     * 
+     * @param filenames
+     *            File names mapped to file specifications.
+     * @param outputDir
+     *            Target directory.
+     * @param threads
+     *            Maximum number of threads that decode and write files; <code>1</code> to use only current thread.
+     * @return total size of saved files in bytes.
+     * @throws IOException
+     */
+    public static long extractFiles(final Map<String, PDComplexFileSpecification> filenames, final File outputDir,
+            final int threads) throws IOException {
+        return extractFiles(filenames.entrySet().iterator(), outputDir, threads);
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Execute the same {@link Pipeline} over many PDF files in parallel.
+ * 
+ * Source of PDF files can be:
+ * <ul>
+ * <li>directory &mdash; all <code>*.pdf</code> files inside of it (recursively);</li>
+ * <li>glob pattern &mdash; for example <code>books/**&#47;*.pdf</code>;</li>
+ * <li>manifest file &mdash; text file with one path to PDF file per line (relative paths are resolved against the
+ * directory of manifest file, empty lines and lines started with <code>#</code> are ignored).</li>
+ * </ul>
+ * 
+ * File names that contain {@link #NAME_PLACEHOLDER} are templates: placeholder is replaced by the name of the PDF file
+ * (without extension). Input templates are resolved next to the PDF file, output templates are resolved next to the PDF
+ * file or under the output directory (keeping the same relative path as the PDF file has inside of the source).
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class Batch {
+
+    public static final String NAME_PLACEHOLDER = "%s";
+
+    protected static final String PDF_EXTENSION = ".pdf";
+
+    protected static final Pattern GLOB_PATTERN = Pattern.compile("[*?\\[\\]{}]");
+
+    protected static final String COMMENT = "#";
+
+    private final Path baseDir;
+
+    private final List<File> pdfFiles;
+
+    private final File outputDir;
+
+    private final int threads;
+
+    private boolean virtualThreads = false;
+
+    /**
+     * @param source
+     *            Directory, glob pattern or manifest file.
+     * @param outputDir
+     *            Root of the target tree for output files. Can be <code>null</code>: output files will be placed next
+     *            to PDF files.
+     * @param threads
+     *            Number of worker threads.
+     * @throws IOException
+     */
+    public Batch(final String source, final File outputDir, final int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException(String.format("Number of threads should be positive: %d!", threads));
+        }
+
+        this.outputDir = outputDir;
+        this.threads = threads;
+
+        final List<Path> paths;
+        final String[] parts = source.split(Pattern.quote(File.separator) + "|/", -1);
+        int firstGlobPart = 0;
+        while (firstGlobPart < parts.length && !GLOB_PATTERN.matcher(parts[firstGlobPart]).find()) {
+            ++firstGlobPart;
+        }
+        if (firstGlobPart < parts.length) {
+            // Glob pattern: walk the longest directory without wildcards.
+            final String base = String.join(File.separator, Arrays.copyOfRange(parts, 0, firstGlobPart));
+            baseDir = Paths.get(base.isEmpty() ? (firstGlobPart > 0 ? File.separator : ".") : base);
+
+            final String glob = String.join("/", Arrays.copyOfRange(parts, firstGlobPart, parts.length));
+            final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+            try (Stream<Path> stream = Files.walk(baseDir)) {
+                paths = stream.filter(Files::isRegularFile).filter(path -> matcher.matches(baseDir.relativize(path)))
+                        .collect(Collectors.toList());
+            }
+        } else {
+            final Path sourcePath = Paths.get(source);
+            if (Files.isDirectory(sourcePath)) {
+                // Directory.
+                baseDir = sourcePath;
+                try (Stream<Path> stream = Files.walk(baseDir)) {
+                    paths = stream.filter(Files::isRegularFile).filter(Batch::isPdf).collect(Collectors.toList());
+                }
+            } else if (isPdf(sourcePath)) {
+                // Single PDF file.
+                baseDir = sourcePath.toAbsolutePath().getParent();
+                paths = Collections.singletonList(sourcePath);
+            } else {
+                // Manifest file.
+                baseDir = sourcePath.toAbsolutePath().getParent();
+                paths = new ArrayList<>();
+                for (String line : Files.readAllLines(sourcePath)) {
+                    final String trimmed = line.trim();
+                    if (!trimmed.isEmpty() && !trimmed.startsWith(COMMENT)) {
+                        paths.add(baseDir.resolve(trimmed));
+                    }
+                }
+            }
+        }
+
+        pdfFiles = paths.stream().sorted().map(Path::toFile).collect(Collectors.toList());
+    }
+
+    private static boolean isPdf(final Path path) {
+        return path.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(PDF_EXTENSION);
+    }
+
+    private static String getBaseName(final File pdfFile) {
+        final String name = pdfFile.getName();
+        final int extensionIndex = name.lastIndexOf('.');
+        return extensionIndex > 0 ? name.substring(0, extensionIndex) : name;
+    }
+
+    /**
+     * @param file
+     *            File name.
+     * @return <code>true</code> if file name contains {@link #NAME_PLACEHOLDER}.
+     */
+    public static boolean isTemplate(final File file) {
+        return file.getPath().contains(NAME_PLACEHOLDER);
+    }
+
+    /**
+     * @return list of PDF files that will be processed.
+     */
+    public List<File> getPdfFiles() {
+        return Collections.unmodifiableList(pdfFiles);
+    }
+
+    /**
+     * Resolve input file (for example, file with Outlines (bookmarks) or Metadata) for specified PDF file.
+     * 
+     * @param template
+     *            Input file name or template.
+     * @param pdfFile
+     *            PDF file.
+     * @return input file.
+     */
+    public File resolveInput(final File template, final File pdfFile) {
+        if (!isTemplate(template)) {
+            return template;
+        }
+
+        final String name = template.getPath().replace(NAME_PLACEHOLDER, getBaseName(pdfFile));
+        return pdfFile.getAbsoluteFile().toPath().resolveSibling(name).toFile();
+    }
+
+    /**
+     * Resolve output file (for example, file with Outlines (bookmarks) or Metadata) for specified PDF file. Parent
+     * directories of the output file are created if they are not exist.
+     * 
+     * @param template
+     *            Output file name or template.
+     * @param pdfFile
+     *            PDF file.
+     * @return output file.
+     */
+    public File resolveOutput(final File template, final File pdfFile) {
+        if (!isTemplate(template)) {
+            return template;
+        }
+        if (outputDir == null) {
+            return resolveInput(template, pdfFile);
+        }
+
+        final String name = template.getPath().replace(NAME_PLACEHOLDER, getBaseName(pdfFile));
+
+        // Keep relative path of PDF file inside of the output directory.
+        final Path pdfPath = pdfFile.getAbsoluteFile().toPath().normalize();
+        final Path basePath = baseDir.toAbsolutePath().normalize();
+        final Path relativeDir = pdfPath.startsWith(basePath) ? basePath.relativize(pdfPath).getParent() : null;
+
+        final Path targetDir = relativeDir == null ? outputDir.toPath() : outputDir.toPath().resolve(relativeDir);
+        targetDir.toFile().mkdirs();
+        return targetDir.resolve(name).toFile();
+    }
+
+    /**
+     * @param virtualThreads
+     *            <code>true</code> to process every PDF file in new virtual thread (if runtime supports them, see
+     *            {@link ExecutorHelper#isVirtualThreadsSupported()}); number of PDF files that are processed at the
+     *            same time is still limited by number of threads.
+     * @return this batch.
+     */
+    public Batch setVirtualThreads(final boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * Execute pipeline over all PDF files.
+     * 
+     * @param pipelineFactory
+     *            Create pipeline for specified PDF file.
+     * @return summary of execution.
+     * @throws InterruptedException
+     */
+    public Summary execute(final Function<File, Pipeline> pipelineFactory) throws InterruptedException {
+        final long startTime = System.nanoTime();
+
+        final Summary summary = new Summary();
+
+        final ExecutorService executor = ExecutorHelper.newExecutor(Math.min(threads, Math.max(1, pdfFiles.size())),
+                virtualThreads);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            final long[] sizes = new long[pdfFiles.size()];
+            for (int i = 0; i < pdfFiles.size(); ++i) {
+                final File pdfFile = pdfFiles.get(i);
+
+                // Remember size before execution: file can be replaced.
+                sizes[i] = pdfFile.length();
+
+                results.add(executor.submit(() -> pipelineFactory.apply(pdfFile).execute(pdfFile)));
+            }
+
+            // Collect results in the same order as PDF files.
+            for (int i = 0; i < pdfFiles.size(); ++i) {
+                final File pdfFile = pdfFiles.get(i);
+                try {
+                    if (results.get(i).get()) {
+                        ++summary.modified;
+                    }
+                    ++summary.successes;
+                    summary.bytes += sizes[i];
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    summary.failures.put(pdfFile, cause.getMessage() != null ? cause.getMessage() : cause.toString());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        summary.elapsedNanos = System.nanoTime() - startTime;
+
+        return summary;
+    }
+
+    /**
+     * Result of batch execution.
+     */
+    public static class Summary {
+
+        private int successes;
+
+        private int modified;
+
+        private final Map<File, String> failures = new LinkedHashMap<>();
+
+        private long bytes;
+
+        private long elapsedNanos;
+
+        /**
+         * @return number of successfully processed PDF files.
+         */
+        public int getSuccesses() {
+            return successes;
+        }
+
+        /**
+         * @return number of modified PDF files.
+         */
+        public int getModified() {
+            return modified;
+        }
+
+        /**
+         * @return number of successfully processed PDF files that were not modified (nothing to change or nothing to
+         *         save).
+         */
+        public int getUnchanged() {
+            return successes - modified;
+        }
+
+        /**
+         * @return failed PDF files with error messages.
+         */
+        public Map<File, String> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        /**
+         * @return total size of successfully processed PDF files in bytes.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return elapsed time in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            final double seconds = Math.max(elapsedNanos, 1) / 1e9;
+            //@formatter:off
+            return String.format(Locale.ROOT, 
+                    "Processed: %d, modified: %d, unchanged: %d, failed: %d, time: %.3f s, throughput: %.2f files/s, "
+                            + "%.2f MB/s",
+                    successes, modified, getUnchanged(), failures.size(), seconds,
+                    (successes + failures.size()) / seconds, bytes / (1024.0 * 1024.0) / seconds);
+            //@formatter:on
+        }
+    }
+}
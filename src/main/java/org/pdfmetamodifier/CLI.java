@@ -20,8 +20,19 @@ package org.pdfmetamodifier;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
 
 import joptsimple.BuiltinHelpFormatter;
 import joptsimple.OptionException;
@@ -41,7 +52,48 @@ public class CLI {
 
     private static final String PROGRAM_VERSION = "2.0.0";
 
+    /**
+     * Exit status if all actions were executed.
+     */
+    public static final int EXIT_SUCCESS = 0;
+
+    /**
+     * Exit status if arguments are wrong or some action (or action for some PDF file of batch) failed.
+     */
+    public static final int EXIT_FAILURE = 1;
+
     public static void main(final String[] args) throws IOException {
+        final int status = run(args, null, System.out, true);
+        if (status != EXIT_SUCCESS) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Execute actions specified by command-line arguments. Server can not be started.
+     * 
+     * @param args
+     *            Command-line arguments.
+     * @param baseDir
+     *            Directory for relative paths; <code>null</code> for current directory of the process.
+     * @param out
+     *            Output for messages.
+     * @return exit status: {@link #EXIT_SUCCESS} or {@link #EXIT_FAILURE}.
+     * @throws IOException
+     */
+    public static int run(final String[] args, final File baseDir, final PrintStream out) throws IOException {
+        return run(args, baseDir, out, false);
+    }
+
+    private static File resolve(final File baseDir, final File file) {
+        if (baseDir == null || file == null || file.isAbsolute()) {
+            return file;
+        }
+        return new File(baseDir, file.getPath());
+    }
+
+    private static int run(final String[] args, final File baseDir, final PrintStream out,
+            final boolean serverAllowed) throws IOException {
         final OptionParser parser = new OptionParser();
 
         // Configure.
@@ -64,11 +116,110 @@ public class CLI {
                 ;
         help.forHelp();
 
+        // Server.
+        final OptionSpec<Integer> server        = parser.accepts(
+                "server", 
+                "Keep running and execute requests of local clients (see pmm.sh). Optional argument is a port, "
+                        + "by default any free port is used. Port and token of the server are written to '"
+                        + Server.DEFAULT_INFO_FILE + "'."
+                )
+                .withOptionalArg()
+                .ofType(Integer.class)
+                .defaultsTo(0)
+                ;
+
+        // Batch of PDF files.
+        final OptionSpec<String> batch          = parser.acceptsAll(
+                Arrays.asList("b",  "batch"     ), 
+                "Process many PDF files in parallel: directory, glob pattern or manifest file (one PDF file per line). "
+                        + "Names of other files can contain '" + Batch.NAME_PLACEHOLDER + "', "
+                        + "it will be replaced by the name of the PDF file."
+                ).availableUnless(server)
+                .withRequiredArg()
+                .ofType(String.class)
+                ;
+        // Output directory for batch.
+        final OptionSpec<File> outputDir        = parser.accepts(
+                "output-dir", 
+                "Root directory for output files of batch (by default output files are placed next to PDF files)."
+                ).availableIf(batch)
+                .withRequiredArg()
+                .ofType(File.class)
+                ;
+        // Index of PDF files.
+        final OptionSpec<File> index            = parser.accepts(
+                "index", 
+                "Index file with Metadata and Outlines (bookmarks) summaries of many PDF files."
+                ).availableUnless(batch, server)
+                .withRequiredArg()
+                .ofType(File.class)
+                ;
+        // Scan PDF files into index.
+        final OptionSpec<String> scan           = parser.accepts(
+                "scan", 
+                "Update index by PDF files from directory, glob pattern or manifest file. Only new and changed PDF "
+                        + "files are parsed, absent PDF files are removed from index."
+                ).availableIf(index)
+                .withRequiredArg()
+                .ofType(String.class)
+                ;
+        // Query index.
+        final OptionSpec<String> query          = parser.accepts(
+                "query", 
+                "Print PDF files from index that match condition (can be repeated): '<key>', '!<key>', "
+                        + "'<key>=<value>', '<key>~<regex>', '<key>><number>' or '<key><<number>'. Keys are Metadata "
+                        + "keys and '" + Index.PAGES + "', '" + Index.OUTLINES + "', '" + Index.DEPTH + "', '"
+                        + Index.SIZE + "', '" + Index.ERROR + "'."
+                ).availableIf(index)
+                .withRequiredArg()
+                .ofType(String.class)
+                ;
+
+        // Number of threads for batch.
+        final OptionSpec<Integer> threads       = parser.accepts(
+                "threads", 
+                "Number of worker threads for batch or scan, or number of requests that server executes at the same "
+                        + "time."
+                ).availableIf(batch, scan, server)
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(Runtime.getRuntime().availableProcessors())
+                ;
+        // Virtual threads for batch.
+        final OptionSpecBuilder virtualThreads  = parser.accepts(
+                "virtual-threads", 
+                "Process every PDF file of batch or scan in new virtual thread (Java 21 and later; platform threads "
+                        + "are used on older Java). Number of PDF files that are processed at the same time is still "
+                        + "limited by --threads."
+                ).availableIf(batch, scan)
+                ;
+
+        // Generate synthetic PDF file.
+        final OptionSpec<File> generate         = parser.accepts(
+                "generate", 
+                "Generate synthetic PDF file for scale and stress testing (see --generate-spec)."
+                ).availableUnless(batch, server)
+                .withRequiredArg()
+                .ofType(File.class)
+                ;
+        // Settings of generated PDF file.
+        final OptionSpec<String> generateSpec   = parser.accepts(
+                "generate-spec", 
+                "Settings of generated PDF file: comma-separated 'seed', 'pages', 'depth' and 'breadth' (of Outline), "
+                        + "'destinations' (named), 'info' (custom Metadata keys), 'attachments' and 'size' (of every "
+                        + "attachment), for example 'pages=100K,depth=3,breadth=20,attachments=2,size=1M'."
+                ).availableIf(generate)
+                .withRequiredArg()
+                .ofType(String.class)
+                .defaultsTo("")
+                ;
+
         // PDF file.
         final OptionSpec<File> pdf              = parser.acceptsAll(
                 Arrays.asList("p",  "pdf"       ), 
                 "Source PDF file."
-                ).requiredUnless(version, help)
+                ).requiredUnless(version, help, batch, server, generate, index)
+                .availableUnless(batch, server, generate, index)
                 .withRequiredArg()
                 .ofType(File.class)
                 ;
@@ -77,7 +228,7 @@ public class CLI {
         final OptionSpec<File> saveOutlines     = parser.accepts(
                 "save-outlines", 
                 "Save Outline (bookmarks) to specified file."
-                ).availableIf(pdf)
+                ).availableIf(pdf, batch)
                 .withRequiredArg()
                 .ofType(File.class)
                 ;
@@ -85,7 +236,7 @@ public class CLI {
         final OptionSpec<File> updateOutlines   = parser.accepts(
                 "update-outlines", 
                 "Update Outline (bookmarks) from specified file."
-                ).availableIf(pdf)
+                ).availableIf(pdf, batch)
                 .withRequiredArg()
                 .ofType(File.class)
                 ;
@@ -94,7 +245,7 @@ public class CLI {
         final OptionSpec<File> saveMetadata     = parser.accepts(
                 "save-metadata", 
                 "Save Metadata to specified file."
-                ).availableIf(pdf)
+                ).availableIf(pdf, batch)
                 .withRequiredArg()
                 .ofType(File.class)
                 ;
@@ -102,7 +253,24 @@ public class CLI {
         final OptionSpec<File> updateMetadata   = parser.accepts(
                 "update-metadata", 
                 "Update Metadata from specified file."
-                ).availableIf(pdf)
+                ).availableIf(pdf, batch)
+                .withRequiredArg()
+                .ofType(File.class)
+                ;
+
+        // Save XMP Metadata.
+        final OptionSpec<File> saveXmp          = parser.accepts(
+                "save-xmp", 
+                "Save XMP Metadata to specified file."
+                ).availableIf(pdf, batch)
+                .withRequiredArg()
+                .ofType(File.class)
+                ;
+        // Update XMP Metadata.
+        final OptionSpec<File> updateXmp        = parser.accepts(
+                "update-xmp", 
+                "Update XMP Metadata (and Metadata) from specified file."
+                ).availableIf(pdf, batch)
                 .withRequiredArg()
                 .ofType(File.class)
                 ;
@@ -111,87 +279,350 @@ public class CLI {
         final OptionSpec<File> saveEmbedded     = parser.accepts(
                 "save-embedded", 
                 "Save Embedded (attached) files to specified directory."
-                ).availableIf(pdf)
+                ).availableIf(pdf, batch)
                 .withRequiredArg()
                 .ofType(File.class)
                 ;
+        // Number of threads for save Embedded (attached) files.
+        final OptionSpec<Integer> embeddedThreads = parser.accepts(
+                "embedded-threads", 
+                "Number of threads that decode and write saved Embedded (attached) files."
+                ).availableIf(saveEmbedded)
+                .withRequiredArg()
+                .ofType(Integer.class)
+                .defaultsTo(1)
+                ;
         // Remove Embedded (attached) files.
-        final OptionSpecBuilder removeEmbedded  = parser.accepts(
+        final OptionSpec<String> removeEmbedded = parser.accepts(
                 "remove-embedded", 
-                "Remove Embedded (attached) files from PDF file."
-                ).availableIf(pdf)
+                "Remove Embedded (attached) files from PDF file: all or only files with specified name or glob (can "
+                        + "be repeated), for example '*.txt'. PDF file is rewritten as a whole."
+                ).availableIf(pdf, batch)
+                .withOptionalArg()
+                .ofType(String.class)
                 ;
         // Add Embedded (attached) files.
         final OptionSpec<File> addEmbedded      = parser.accepts(
                 "add-embedded", 
                 "Add Embedded (attached) files from specified file."
-                ).availableIf(pdf)
+                ).availableIf(pdf, batch)
+                .withRequiredArg()
+                .ofType(File.class)
+                ;
+        // Compression of Embedded (attached) files.
+        final OptionSpec<IOHelper.Compression> embeddedCompression = parser.accepts(
+                "embedded-compression", 
+                "Compression of added Embedded (attached) files: AUTO (compress files that are not compressed yet), "
+                        + "FLATE or NONE."
+                ).availableIf(addEmbedded)
+                .withRequiredArg()
+                .ofType(IOHelper.Compression.class)
+                .defaultsTo(IOHelper.Compression.AUTO)
+                ;
+
+        // Incremental update.
+        final OptionSpecBuilder incremental     = parser.accepts(
+                "incremental", 
+                "Append changes to the end of PDF file (incremental update) instead of rewriting the whole file."
+                ).availableIf(pdf, batch)
+                ;
+
+        // Memory usage.
+        final OptionSpec<String> memory         = parser.accepts(
+                "memory", 
+                "Where parsed PDF file is kept: 'main[:<size>]' (main memory only), 'temp[:<size>]' (temporary file "
+                        + "only) or 'mixed:<size>' (main memory up to size, then temporary file). "
+                        + "Size can have K, M or G suffix. For batch the size is shared by all threads."
+                ).availableIf(pdf, batch, generate, scan)
                 .withRequiredArg()
+                .ofType(String.class)
+                .defaultsTo("main")
+                ;
+
+        // Statistics.
+        final OptionSpec<File> stats            = parser.accepts(
+                "stats", 
+                "Print time, read and written bytes and allocated heap of every phase (load, operations, save, move) "
+                        + "in JSON format. Statistics is written to the file if it is specified as '--stats=<file>'."
+                ).availableIf(pdf, batch)
+                .withOptionalArg()
                 .ofType(File.class)
                 ;
         //@formatter:on
 
         // Parse.
+        int status = EXIT_SUCCESS;
         try {
             final OptionSet options = parser.parse(args);
 
             // Print help.
             if (options.has(help)) {
-                parser.printHelpOn(System.out);
+                parser.printHelpOn(out);
             }
 
             // Print version.
             if (options.has(version)) {
-                System.out.println(String.format("%s ver. %s", PROGRAM_NAME, PROGRAM_VERSION));
+                out.println(String.format("%s ver. %s", PROGRAM_NAME, PROGRAM_VERSION));
             }
 
-            // Execute action.
-            final File pdfFile = options.valueOf(pdf);
+            // Virtual threads are optional.
+            if (options.has(virtualThreads) && !ExecutorHelper.isVirtualThreadsSupported()) {
+                out.println(String.format("Virtual threads are not supported by Java %s: platform threads are used.",
+                        System.getProperty("java.version")));
+            }
 
-            if (pdfFile != null) {
-                // Save Outline (bookmarks).
-                final File saveOutlinesFile = options.valueOf(saveOutlines);
-                if (saveOutlinesFile != null) {
-                    IOHelper.saveOutlines(pdfFile, saveOutlinesFile);
-                }
-                // Update Outline (bookmarks).
-                final File updateOutlinesFile = options.valueOf(updateOutlines);
-                if (updateOutlinesFile != null) {
-                    IOHelper.updateOutlines(pdfFile, updateOutlinesFile);
+            // Start server.
+            if (options.has(server)) {
+                if (!serverAllowed) {
+                    throw new IllegalArgumentException("Server can be started only from command line!");
                 }
 
-                // Save Metadata.
-                final File saveMetadataFile = options.valueOf(saveMetadata);
-                if (saveMetadataFile != null) {
-                    IOHelper.saveMetadata(pdfFile, saveMetadataFile);
+                // Server is stopped only with JVM, so it is closed only by the shutdown hook.
+                final Server pdfServer = new Server(options.valueOf(server), options.valueOf(threads));
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        pdfServer.close();
+                    } catch (IOException e) {
+                        // Nothing to do: JVM is stopped.
+                    }
+                }));
+                pdfServer.writeInfo(Server.DEFAULT_INFO_FILE);
+
+                out.println(String.format("Server is listening on port %d.", pdfServer.getPort()));
+                pdfServer.serve();
+                return EXIT_SUCCESS;
+            }
+
+            // Generate synthetic PDF file.
+            final File generateFile = resolve(baseDir, options.valueOf(generate));
+            if (generateFile != null) {
+                final PdfGenerator generator = PdfGenerator.parse(options.valueOf(generateSpec));
+                generator.setMemoryUsageSetting(IOHelper.parseMemoryUsageSetting(options.valueOf(memory)));
+                generator.generate(generateFile);
+            }
+
+            // Index of PDF files.
+            final File indexFile = resolve(baseDir, options.valueOf(index));
+            if (indexFile != null) {
+                final Index pdfIndex = new Index(indexFile);
+
+                // Scan PDF files.
+                final String scanSource = options.valueOf(scan);
+                if (scanSource != null) {
+                    final Batch scanBatch = new Batch(resolve(baseDir, new File(scanSource)).getPath(), null,
+                            options.valueOf(threads));
+                    pdfIndex.setMemoryUsageSetting(IOHelper.parseMemoryUsageSetting(options.valueOf(memory))
+                            .getPartitionedCopy(options.valueOf(threads)));
+                    pdfIndex.setVirtualThreads(options.has(virtualThreads));
+
+                    final Index.Summary summary = pdfIndex.scan(scanBatch.getPdfFiles(), options.valueOf(threads));
+                    pdfIndex.save();
+                    for (Map.Entry<File, String> failure : summary.getFailures().entrySet()) {
+                        out.println(String.format("%s: %s", failure.getKey(), failure.getValue()));
+                        status = EXIT_FAILURE;
+                    }
+                    out.println(summary);
                 }
-                // Update Metadata.
-                final File updateMetadataFile = options.valueOf(updateMetadata);
-                if (updateMetadataFile != null) {
-                    IOHelper.updateMetadata(pdfFile, updateMetadataFile);
+
+                // Query index.
+                if (options.has(query)) {
+                    for (Index.Entry entry : pdfIndex.query(options.valuesOf(query))) {
+                        out.println(entry.getPath());
+                    }
                 }
+            }
+
+            // Execute action.
+            final File pdfFile = resolve(baseDir, options.valueOf(pdf));
+            final String batchSource = options.valueOf(batch) != null
+                    ? resolve(baseDir, new File(options.valueOf(batch))).getPath()
+                    : null;
+            if (pdfFile != null || batchSource != null) {
+                //@formatter:off
+                final Batch pdfBatch = batchSource != null
+                        ? new Batch(batchSource, resolve(baseDir, options.valueOf(outputDir)), options.valueOf(threads))
+                                .setVirtualThreads(options.has(virtualThreads))
+                        : null;
+
+                // Resolve names of input and output files for the PDF file: templates are relative to PDF file.
+                final BiFunction<File, File, File> input  = pdfBatch != null 
+                        ? (file, currentPdfFile) -> pdfBatch.resolveInput(
+                                Batch.isTemplate(file) ? file : resolve(baseDir, file), currentPdfFile) 
+                        : (file, currentPdfFile) -> resolve(baseDir, file);
+                final BiFunction<File, File, File> output = pdfBatch != null 
+                        ? (file, currentPdfFile) -> pdfBatch.resolveOutput(
+                                Batch.isTemplate(file) ? file : resolve(baseDir, file), currentPdfFile) 
+                        : (file, currentPdfFile) -> resolve(baseDir, file);
+                //@formatter:on
+
+                // Limits of memory usage are shared by all threads of batch.
+                final MemoryUsageSetting memoryUsageSetting = pdfBatch != null
+                        ? IOHelper.parseMemoryUsageSetting(options.valueOf(memory))
+                                .getPartitionedCopy(options.valueOf(threads))
+                        : IOHelper.parseMemoryUsageSetting(options.valueOf(memory));
+
+                // Statistics is collected from all PDF files.
+                final Stats pdfStats = options.has(stats) ? new Stats() : null;
+
+                // Only totals are kept for throughput of extraction of Embedded (attached) files.
+                final AtomicLong savedBytes = new AtomicLong();
+                final AtomicLong savedNanos = new AtomicLong();
+                final MetricsListener metricsListener = pdfStats == null && !options.has(saveEmbedded) ? null
+                        : (currentPdfFile, phase) -> {
+                            if (Pipeline.SAVE_ATTACHMENTS.equals(phase.getName())) {
+                                savedBytes.addAndGet(phase.getBytesWritten());
+                                savedNanos.addAndGet(phase.getNanos());
+                            }
+                            if (pdfStats != null) {
+                                pdfStats.phaseCompleted(currentPdfFile, phase);
+                            }
+                        };
+
+                // All actions are executed over single loaded PDF file.
+                final Function<File, Pipeline> pipelineFactory = currentPdfFile -> {
+                    final Pipeline pipeline = new Pipeline();
+                    pipeline.setIncremental(options.has(incremental));
+                    pipeline.setMemoryUsageSetting(memoryUsageSetting);
+                    pipeline.setMetricsListener(metricsListener);
+
+                    // Save Outline (bookmarks).
+                    final File saveOutlinesFile = options.valueOf(saveOutlines);
+                    if (saveOutlinesFile != null) {
+                        pipeline.saveOutlines(output.apply(saveOutlinesFile, currentPdfFile));
+                    }
+                    // Update Outline (bookmarks).
+                    final File updateOutlinesFile = options.valueOf(updateOutlines);
+                    if (updateOutlinesFile != null) {
+                        pipeline.updateOutlines(input.apply(updateOutlinesFile, currentPdfFile));
+                    }
 
-                // Save Embedded (attached) files.
-                final File saveEmbeddedFiles = options.valueOf(saveEmbedded);
-                if (saveEmbeddedFiles != null) {
-                    IOHelper.saveAttachments(pdfFile, saveEmbeddedFiles);
+                    // Save Metadata.
+                    final File saveMetadataFile = options.valueOf(saveMetadata);
+                    if (saveMetadataFile != null) {
+                        pipeline.saveMetadata(output.apply(saveMetadataFile, currentPdfFile));
+                    }
+                    // Update Metadata.
+                    final File updateMetadataFile = options.valueOf(updateMetadata);
+                    if (updateMetadataFile != null) {
+                        pipeline.updateMetadata(input.apply(updateMetadataFile, currentPdfFile));
+                    }
+
+                    // Save XMP Metadata.
+                    final File saveXmpFile = options.valueOf(saveXmp);
+                    if (saveXmpFile != null) {
+                        pipeline.saveXmp(output.apply(saveXmpFile, currentPdfFile));
+                    }
+                    // Update XMP Metadata.
+                    final File updateXmpFile = options.valueOf(updateXmp);
+                    if (updateXmpFile != null) {
+                        pipeline.updateXmp(input.apply(updateXmpFile, currentPdfFile));
+                    }
+
+                    // Save Embedded (attached) files.
+                    final File saveEmbeddedFiles = options.valueOf(saveEmbedded);
+                    if (saveEmbeddedFiles != null) {
+                        pipeline.saveAttachments(output.apply(saveEmbeddedFiles, currentPdfFile),
+                                options.valueOf(embeddedThreads));
+                    }
+                    // Remove Embedded (attached) files.
+                    if (options.has(removeEmbedded)) {
+                        final List<String> globs = options.valuesOf(removeEmbedded);
+                        if (globs.isEmpty()) {
+                            pipeline.removeAttachments();
+                        } else {
+                            pipeline.removeAttachments(globs);
+                        }
+                    }
+                    // Add Embedded (attached) files.
+                    final List<File> addEmbeddedFiles = new ArrayList<>();
+                    for (File file : options.valuesOf(addEmbedded)) {
+                        addEmbeddedFiles.add(input.apply(file, currentPdfFile));
+                    }
+                    if (!addEmbeddedFiles.isEmpty()) {
+                        pipeline.addAttachments(addEmbeddedFiles, options.valueOf(embeddedCompression));
+                    }
+
+                    return pipeline;
+                };
+
+                final long elapsedNanos;
+                if (pdfBatch == null) {
+                    // Execute actions.
+                    final Pipeline pipeline = pipelineFactory.apply(pdfFile);
+                    if (!pipeline.isEmpty()) {
+                        final boolean modified = pipeline.execute(pdfFile);
+
+                        // Requested updates are already in PDF file: it is not rewritten.
+                        final boolean update = options.has(updateOutlines) || options.has(updateMetadata)
+                                || options.has(updateXmp) || options.has(removeEmbedded) || options.has(addEmbedded);
+                        if (update && !modified) {
+                            out.println(String.format("PDF file is not changed: %s", pdfFile));
+                        }
+                    }
+                    elapsedNanos = savedNanos.get();
+                } else {
+                    // Output files should be different for every PDF file.
+                    final List<OptionSpec<File>> outputSpecs = Arrays.asList(saveOutlines, saveMetadata, saveXmp,
+                            saveEmbedded);
+                    for (OptionSpec<File> outputSpec : outputSpecs) {
+                        final File outputFile = options.valueOf(outputSpec);
+                        if (outputFile != null && !Batch.isTemplate(outputFile)) {
+                            throw new IOException(
+                                    String.format("Name of output file for batch should contain '%s': '%s'!",
+                                            Batch.NAME_PLACEHOLDER, outputFile));
+                        }
+                    }
+
+                    // Every PDF file would be parsed for nothing.
+                    final List<File> pdfFiles = pdfBatch.getPdfFiles();
+                    if (!pdfFiles.isEmpty() && pipelineFactory.apply(pdfFiles.get(0)).isEmpty()) {
+                        throw new IllegalArgumentException("No actions are specified for batch!");
+                    }
+
+                    // Execute actions for all PDF files.
+                    final Batch.Summary summary = pdfBatch.execute(pipelineFactory);
+                    for (Map.Entry<File, String> failure : summary.getFailures().entrySet()) {
+                        out.println(String.format("%s: %s", failure.getKey(), failure.getValue()));
+                        status = EXIT_FAILURE;
+                    }
+                    out.println(summary);
+
+                    // Files are saved by many threads: throughput is measured by time of the whole batch.
+                    elapsedNanos = summary.getElapsedNanos();
                 }
-                // Remove Embedded (attached) files.
-                if (options.has(removeEmbedded)) {
-                    IOHelper.removeAttachments(pdfFile);
+
+                // Print throughput of extraction of Embedded (attached) files.
+                if (options.has(saveEmbedded)) {
+                    final double seconds = Math.max(elapsedNanos, 1) / 1e9;
+                    final double megabytes = savedBytes.get() / (1024.0 * 1024.0);
+                    out.println(String.format(Locale.ROOT,
+                            "Embedded (attached) files: %.2f MB saved in %.3f s (%.2f MB/s)", megabytes, seconds,
+                            megabytes / seconds));
                 }
-                // Add Embedded (attached) files.
-                final List<File> addEmbeddedFile = options.valuesOf(addEmbedded);
-                if (addEmbeddedFile != null) {
-                    IOHelper.addAttachments(pdfFile, addEmbeddedFile);
+
+                // Print statistics.
+                if (options.has(stats)) {
+                    final File statsFile = resolve(baseDir, options.valueOf(stats));
+                    if (statsFile != null) {
+                        Files.write(statsFile.toPath(), pdfStats.toJson().getBytes(StandardCharsets.UTF_8));
+                    } else {
+                        out.println(pdfStats.toJson());
+                    }
                 }
             }
         } catch (OptionException e) {
-            System.out.println(e.getMessage()); // Print info about problem with parameters.
-            System.out.println(); // Separator.
-            parser.printHelpOn(System.out); // Print help.
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
+            out.println(e.getMessage()); // Print info about problem with parameters.
+            out.println(); // Separator.
+            parser.printHelpOn(out); // Print help.
+            status = EXIT_FAILURE;
+        } catch (IOException | IllegalArgumentException e) {
+            out.println(e.getMessage());
+            status = EXIT_FAILURE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            out.println("Interrupted.");
+            status = EXIT_FAILURE;
         }
+        return status;
     }
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDComplexFileSpecification;
+
+/**
+ * Depth-first iterator over Embedded (attached) files named tree of any depth. Names are read directly from the
+ * named tree nodes one by one, in the same order as they are stored in the PDF file.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class EmbeddedFilesIterator implements Iterator<Map.Entry<String, PDComplexFileSpecification>> {
+
+    // Named tree nodes that are not visited yet.
+    private final Deque<COSDictionary> nodes = new ArrayDeque<>();
+
+    // Broken PDF files can contain loops in the named tree.
+    private final Set<COSDictionary> visitedNodes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private COSArray names;
+
+    private int namesIndex;
+
+    private Map.Entry<String, PDComplexFileSpecification> next;
+
+    /**
+     * @param root
+     *            Root of Embedded (attached) files named tree; can be <code>null</code>.
+     */
+    public EmbeddedFilesIterator(final PDEmbeddedFilesNameTreeNode root) {
+        if (root != null) {
+            nodes.push(root.getCOSObject());
+        }
+        next = findNext();
+    }
+
+    private Map.Entry<String, PDComplexFileSpecification> findNext() {
+        while (true) {
+            // Names of current node.
+            while (names != null && namesIndex + 1 < names.size()) {
+                final COSBase key = names.getObject(namesIndex);
+                final COSBase value = names.getObject(namesIndex + 1);
+                namesIndex += 2;
+
+                if (key instanceof COSString && value instanceof COSDictionary) {
+                    return new AbstractMap.SimpleImmutableEntry<>(((COSString) key).getString(),
+                            new PDComplexFileSpecification((COSDictionary) value));
+                }
+            }
+
+            // Next node.
+            if (nodes.isEmpty()) {
+                return null;
+            }
+            final COSDictionary node = nodes.pop();
+            if (!visitedNodes.add(node)) {
+                names = null;
+                continue;
+            }
+
+            final COSBase namesBase = node.getDictionaryObject(COSName.NAMES);
+            names = namesBase instanceof COSArray ? (COSArray) namesBase : null;
+            namesIndex = 0;
+
+            // Kids are visited after names of the node, in the same order as they are stored.
+            final COSBase kidsBase = node.getDictionaryObject(COSName.KIDS);
+            if (kidsBase instanceof COSArray) {
+                final COSArray kids = (COSArray) kidsBase;
+                for (int i = kids.size() - 1; i >= 0; --i) {
+                    final COSBase kid = kids.getObject(i);
+                    if (kid instanceof COSDictionary) {
+                        nodes.push((COSDictionary) kid);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Map.Entry<String, PDComplexFileSpecification> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+
+        final Map.Entry<String, PDComplexFileSpecification> result = next;
+        next = findNext();
+        return result;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helper with methods for create executors of per-document work.
+ * 
+ * <p>
+ * Work with PDF files is mostly blocking I/O (especially on network file systems), so on Java 21 and later it can be
+ * executed by virtual threads: blocked thread does not occupy thread of the operating system. Virtual threads are
+ * created through reflection, so the same JAR file works on Java 8; older runtimes use pool of platform threads.
+ * </p>
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class ExecutorHelper {
+
+    // Executors.newVirtualThreadPerTaskExecutor() of Java 21; null on older runtimes.
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+
+    private static Method findVirtualThreadExecutor() {
+        try {
+            final Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+
+            // Java 19 and 20 have virtual threads only as preview feature.
+            ((ExecutorService) method.invoke(null)).shutdown();
+            return method;
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if current runtime supports virtual threads.
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * Create executor that executes at most specified number of tasks at the same time.
+     * 
+     * @param threads
+     *            Number of tasks that are executed at the same time.
+     * @param virtualThreads
+     *            <code>true</code> to use new virtual thread for every task if runtime supports them (see
+     *            {@link #isVirtualThreadsSupported()}); otherwise fixed pool of platform threads is used.
+     * @return executor.
+     */
+    public static ExecutorService newExecutor(final int threads, final boolean virtualThreads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException(String.format("Number of threads should be positive: %d!", threads));
+        }
+
+        if (virtualThreads && isVirtualThreadsSupported()) {
+            try {
+                return new BoundedExecutor((ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null), threads);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                // Ignore: use platform threads.
+            }
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    /*
+     * Virtual threads are not limited, but number of opened PDF files and used memory should be: task waits for the
+     * permit in its own (virtual) thread.
+     */
+    private static class BoundedExecutor extends AbstractExecutorService {
+
+        private final ExecutorService executor;
+
+        private final Semaphore permits;
+
+        BoundedExecutor(final ExecutorService executor, final int threads) {
+            this.executor = executor;
+            this.permits = new Semaphore(threads);
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            executor.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    // Executor is shut down: task is not started.
+                    if (command instanceof Future) {
+                        ((Future<?>) command).cancel(false);
+                    }
+                    return;
+                }
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return executor.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+            return executor.awaitTermination(timeout, unit);
+        }
+    }
+}
@@ -18,29 +18,41 @@
  */
 package org.pdfmetamodifier;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDestinationNameTreeNode;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
 import org.apache.pdfbox.pdmodel.PDDocumentInformation;
 import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
 import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
-import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageTree;
-import org.apache.pdfbox.pdmodel.common.PDNameTreeNode;
+import org.apache.pdfbox.pdmodel.common.PDMetadata;
 import org.apache.pdfbox.pdmodel.common.filespecification.PDComplexFileSpecification;
 import org.apache.pdfbox.pdmodel.common.filespecification.PDEmbeddedFile;
-import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
-import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationFileAttachment;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
 
 /**
@@ -50,14 +62,134 @@ import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocume
  */
 public class IOHelper {
 
-    protected static final File TEMP_PDF = new File(
-            System.getProperty("java.io.tmpdir") + File.separatorChar + "TEMP.pdf");
+    protected static final int COPY_BUFFER_SIZE = 64 * 1024;
 
+    //@formatter:off
     /**
-     * Save Outlines (bookmarks).
+     * Extensions of files that are already compressed: there is no sense to compress them again.
+     */
+    protected static final Set<String> COMPRESSED_EXTENSIONS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "zip", "gz", "tgz", "bz2", "tbz2", "xz", "txz", "7z", "rar", "jar", "war", "apk", "epub",
+            "docx", "xlsx", "pptx", "odt", "ods", "odp",
+            "jpg", "jpeg", "png", "gif", "webp", "jp2", "heic",
+            "mp3", "aac", "m4a", "ogg", "opus", "flac",
+            "mp4", "m4v", "mkv", "mov", "avi", "webm"
+        )));
+    //@formatter:on
+
+    /**
+     * Compression of Attached (embedded) files.
+     */
+    public enum Compression {
+        /**
+         * Compress by Flate, except files that are already compressed (archives, images, audio, video).
+         */
+        AUTO,
+        /**
+         * Always compress by Flate.
+         */
+        FLATE,
+        /**
+         * Store files as is.
+         */
+        NONE
+    }
+
+    protected static final String SIZE_UNITS = "KMG";
+
+    protected static final Pattern MEMORY_USAGE_PATTERN = Pattern
+            .compile("(?<mode>main|temp|mixed)(:(?<size>\\d+)(?<unit>[KMG]?))?", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Parse memory usage setting for loading of PDF files.
+     * 
+     * Format is <code>&lt;mode&gt;[:&lt;size&gt;[K|M|G]]</code>, where mode is:
+     * <ul>
+     * <li><code>main</code> &mdash; use main memory only (size is the maximum of main memory);</li>
+     * <li><code>temp</code> &mdash; use temporary file only (size is the maximum of temporary file);</li>
+     * <li><code>mixed</code> &mdash; use main memory up to specified size (required), then temporary file.</li>
+     * </ul>
+     * 
+     * @param value
+     *            Memory usage setting in text format, for example <code>mixed:64M</code>.
+     * @return memory usage setting.
+     */
+    public static MemoryUsageSetting parseMemoryUsageSetting(final String value) {
+        final Matcher matcher = MEMORY_USAGE_PATTERN.matcher(value.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(String.format("Memory usage setting have a wrong format: '%s'!", value));
+        }
+
+        final String mode = matcher.group("mode").toLowerCase(Locale.ROOT);
+        final String size = matcher.group("size");
+        if (size == null) {
+            switch (mode) {
+            case "main":
+                return MemoryUsageSetting.setupMainMemoryOnly();
+            case "temp":
+                return MemoryUsageSetting.setupTempFileOnly();
+            default:
+                throw new IllegalArgumentException(String.format("Size is required for '%s' memory usage!", mode));
+            }
+        }
+
+        final long bytes = parseSize(size, matcher.group("unit"));
+        switch (mode) {
+        case "main":
+            return MemoryUsageSetting.setupMainMemoryOnly(bytes);
+        case "temp":
+            return MemoryUsageSetting.setupTempFileOnly(bytes);
+        default:
+            return MemoryUsageSetting.setupMixed(bytes);
+        }
+    }
+
+    /**
+     * Parse size in bytes.
+     * 
+     * @param size
+     *            Number of units.
+     * @param unit
+     *            Unit: <code>K</code>, <code>M</code>, <code>G</code> or empty for bytes.
+     * @return size in bytes.
+     * @throws IllegalArgumentException
+     *             If size does not fit into <code>long</code>.
+     */
+    protected static long parseSize(final String size, final String unit) {
+        // Every unit is 1024 times bigger than the previous one.
+        final int power = unit.isEmpty() ? 0 : SIZE_UNITS.indexOf(unit.toUpperCase(Locale.ROOT)) + 1;
+        try {
+            return Math.multiplyExact(Long.parseLong(size), 1L << 10 * power);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(String.format("Size is too big: '%s%s'!", size, unit));
+        }
+    }
+
+    /**
+     * Load PDF file.
      * 
      * @param pdfFile
      *            Source PDF file.
+     * @param memoryUsageSetting
+     *            Where parsed PDF document is kept: in main memory, in temporary file or both.
+     * @return loaded PDF document.
+     * @throws IOException
+     */
+    public static PDDocument load(final File pdfFile, final MemoryUsageSetting memoryUsageSetting)
+            throws IOException {
+        final PDDocument document = PDDocument.load(pdfFile, memoryUsageSetting);
+        if (document.isEncrypted()) {
+            document.close();
+            throw new IOException("Document is encrypted.");
+        }
+        return document;
+    }
+
+    /**
+     * Save Outlines (bookmarks).
+     * 
+     * @param document
+     *            Source PDF document.
      * @param outlinesFile
      *            File with Outlines (bookmarks) in user-frendly format.
      * @throws IOException
@@ -66,39 +198,26 @@ public class IOHelper {
      * See:
      *      https://svn.apache.org/viewvc/pdfbox/trunk/examples/src/main/java/org/apache/pdfbox/examples/pdmodel/PrintBookmarks.java?view=markup
      */
-    public static void saveOutlines(final File pdfFile, final File outlinesFile) throws IOException {
-        PDDocument document = null;
-        try {
-            // Read PDF file.
-            document = PDDocument.load(pdfFile);
-            if (document.isEncrypted()) {
-                throw new IOException("Document is encrypted.");
-            }
-
-            // Get data from PDF file.
-            final PDDocumentCatalog catalog = document.getDocumentCatalog();
+    public static void saveOutlines(final PDDocument document, final File outlinesFile) throws IOException {
+        // Get data from PDF file.
+        final PDDocumentCatalog catalog = document.getDocumentCatalog();
 
-            final PDDocumentOutline outlines = catalog.getDocumentOutline();
+        final PDDocumentOutline outlines = catalog.getDocumentOutline();
 
-            final PDPageTree pages = catalog.getPages();
+        final PDPageTree pages = catalog.getPages();
 
-            final PDDocumentNameDictionary namesDictionary = new PDDocumentNameDictionary(catalog);
-            final PDDestinationNameTreeNode destinations = namesDictionary.getDests();
+        final PDDocumentNameDictionary namesDictionary = new PDDocumentNameDictionary(catalog);
+        final PDDestinationNameTreeNode destinations = namesDictionary.getDests();
 
-            // Convert.
-            final List<String> lines = OutlineHelper.outlinesToLineList(outlines, pages, destinations);
+        // Convert.
+        final List<String> lines = OutlineHelper.outlinesToLineList(outlines, pages, destinations);
 
-            // Write line list into the text file.
-            Files.write(outlinesFile.toPath(), lines);
-        } finally {
-            if (document != null) {
-                document.close();
-            }
-        }
+        // Write line list into the text file.
+        Files.write(outlinesFile.toPath(), lines);
     }
 
     /**
-     * Update Outlines (bookmarks).
+     * Save Outlines (bookmarks).
      * 
      * @param pdfFile
      *            Source PDF file.
@@ -106,56 +225,68 @@ public class IOHelper {
      *            File with Outlines (bookmarks) in user-frendly format.
      * @throws IOException
      */
+    public static void saveOutlines(final File pdfFile, final File outlinesFile) throws IOException {
+        new Pipeline().saveOutlines(outlinesFile).execute(pdfFile);
+    }
+
+    /**
+     * Update Outlines (bookmarks).
+     * 
+     * @param document
+     *            Source PDF document.
+     * @param outlinesFile
+     *            File with Outlines (bookmarks) in user-frendly format.
+     * @return <code>true</code> if Outlines (bookmarks) were changed; <code>false</code> if PDF document already has
+     *         the same Outlines (bookmarks).
+     * @throws IOException
+     */
     /*
      * See:
      *      https://svn.apache.org/viewvc/pdfbox/trunk/examples/src/main/java/org/apache/pdfbox/examples/pdmodel/CreateBookmarks.java?view=markup
      */
-    public static void updateOutlines(final File pdfFile, final File outlinesFile) throws IOException {
+    public static boolean updateOutlines(final PDDocument document, final File outlinesFile) throws IOException {
         // Read bookmark list from text file.
         final List<String> lines = Files.readAllLines(outlinesFile.toPath());
 
-        PDDocument document = null;
-        try {
-            // Open PDF file.
-            document = PDDocument.load(pdfFile);
-            if (document.isEncrypted()) {
-                throw new IOException("Document is encrypted.");
-            }
+        // Get data from PDF file.
+        final PDDocumentCatalog catalog = document.getDocumentCatalog();
 
-            // Get data from PDF file.
-            final PDDocumentCatalog catalog = document.getDocumentCatalog();
+        final PDPageTree pages = catalog.getPages();
 
-            final PDPageTree pages = catalog.getPages();
-
-            // Convert.
-            final PDDocumentOutline outlines = OutlineHelper.lineListToOutlines(pages, lines);
+        // Change only Outlines (bookmarks) that differ, so incremental update contains only changed objects.
+        final PDDocumentOutline currentOutlines = catalog.getDocumentOutline();
+        final PDDocumentOutline outlines = currentOutlines != null ? currentOutlines : new PDDocumentOutline();
+        final PDDocumentNameDictionary namesDictionary = new PDDocumentNameDictionary(catalog);
+        if (OutlineHelper.updateOutlines(outlines, pages, namesDictionary.getDests(), lines) == 0) {
+            return false;
+        }
 
-            // Set outlines.
+        // Set outlines.
+        if (currentOutlines == null) {
             catalog.setDocumentOutline(outlines);
-
-            // Create temporary PDF file for result.
-            if (TEMP_PDF.exists()) {
-                TEMP_PDF.delete();
-            }
-
-            // Save result to temporary PDF file.
-            document.save(TEMP_PDF);
-        } finally {
-            if (document != null) {
-                document.close();
-            }
         }
-
-        // Replace original PDF file.
-        pdfFile.delete();
-        Files.move(Paths.get(TEMP_PDF.toURI()), Paths.get(pdfFile.toURI()));
+        return true;
     }
 
     /**
-     * Save Metadata.
+     * Update Outlines (bookmarks).
      * 
      * @param pdfFile
      *            Source PDF file.
+     * @param outlinesFile
+     *            File with Outlines (bookmarks) in user-frendly format.
+     * @return <code>true</code> if PDF file was changed.
+     * @throws IOException
+     */
+    public static boolean updateOutlines(final File pdfFile, final File outlinesFile) throws IOException {
+        return new Pipeline().updateOutlines(outlinesFile).execute(pdfFile);
+    }
+
+    /**
+     * Save Metadata.
+     * 
+     * @param document
+     *            Source PDF document.
      * @param metadataFile
      *            File with Metadata in user-frendly format.
      * @throws IOException
@@ -164,32 +295,19 @@ public class IOHelper {
      * See:
      *      https://svn.apache.org/viewvc/pdfbox/trunk/examples/src/main/java/org/apache/pdfbox/examples/pdmodel/ExtractMetadata.java?view=markup
      */
-    public static void saveMetadata(final File pdfFile, final File metadataFile) throws IOException {
-        PDDocument document = null;
-        try {
-            // Read PDF file.
-            document = PDDocument.load(pdfFile);
-            if (document.isEncrypted()) {
-                throw new IOException("Document is encrypted.");
-            }
+    public static void saveMetadata(final PDDocument document, final File metadataFile) throws IOException {
+        // Get data from PDF file.
+        final PDDocumentInformation information = document.getDocumentInformation();
 
-            // Get data from PDF file.
-            final PDDocumentInformation information = document.getDocumentInformation();
+        // Convert.
+        final List<String> lines = MetadataHelper.metadataToLineList(information);
 
-            // Convert.
-            final List<String> lines = MetadataHelper.metadataToLineList(information);
-
-            // Write line list into the text file.
-            Files.write(metadataFile.toPath(), lines);
-        } finally {
-            if (document != null) {
-                document.close();
-            }
-        }
+        // Write line list into the text file.
+        Files.write(metadataFile.toPath(), lines);
     }
 
     /**
-     * Update Metadata.
+     * Save Metadata.
      * 
      * @param pdfFile
      *            Source PDF file.
@@ -197,138 +315,295 @@ public class IOHelper {
      *            File with Metadata in user-frendly format.
      * @throws IOException
      */
+    public static void saveMetadata(final File pdfFile, final File metadataFile) throws IOException {
+        new Pipeline().saveMetadata(metadataFile).execute(pdfFile);
+    }
+
+    /**
+     * Update Metadata.
+     * 
+     * @param document
+     *            Source PDF document.
+     * @param metadataFile
+     *            File with Metadata in user-frendly format.
+     * @return <code>true</code> if Metadata was changed; <code>false</code> if PDF document already has the same
+     *         Metadata.
+     * @throws IOException
+     */
     /*
      * See:
      *      https://svn.apache.org/viewvc/pdfbox/trunk/examples/src/main/java/org/apache/pdfbox/examples/pdmodel/ExtractMetadata.java?view=markup
      */
-    public static void updateMetadata(final File pdfFile, final File metadataFile) throws IOException {
+    public static boolean updateMetadata(final PDDocument document, final File metadataFile) throws IOException {
         // Read bookmark list from text file.
         final List<String> lines = Files.readAllLines(metadataFile.toPath());
 
-        PDDocument document = null;
-        try {
-            // Open PDF file.
-            document = PDDocument.load(pdfFile);
-            if (document.isEncrypted()) {
-                throw new IOException("Document is encrypted.");
-            }
+        // Convert.
+        final PDDocumentInformation information = MetadataHelper.stringListToMetadata(lines);
 
-            // Convert.
-            final PDDocumentInformation information = MetadataHelper.stringListToMetadata(lines);
+        // Compare in user-frendly format: order of lines does not matter.
+        if (MetadataHelper.metadataToLineList(document.getDocumentInformation())
+                .equals(MetadataHelper.metadataToLineList(information))) {
+            return false;
+        }
 
-            // Set Metadata.
-            document.setDocumentInformation(information);
+        // Set Metadata.
+        document.setDocumentInformation(information);
 
-            // Create temporary PDF file for result.
-            if (TEMP_PDF.exists()) {
-                TEMP_PDF.delete();
+        // Keep XMP Metadata in sync.
+        final PDMetadata xmpMetadata = document.getDocumentCatalog().getMetadata();
+        if (xmpMetadata != null) {
+            final PDMetadata updatedXmpMetadata = new PDMetadata(document);
+            try (InputStream input = xmpMetadata.createInputStream();
+                    OutputStream output = updatedXmpMetadata.createOutputStream()) {
+                XmpHelper.updateXmp(input, output, information);
             }
+            document.getDocumentCatalog().setMetadata(updatedXmpMetadata);
+        }
+        return true;
+    }
 
-            // Save result to temporary PDF file.
-            document.save(TEMP_PDF);
-        } finally {
-            if (document != null) {
-                document.close();
-            }
+    /**
+     * Update Metadata.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param metadataFile
+     *            File with Metadata in user-frendly format.
+     * @return <code>true</code> if PDF file was changed.
+     * @throws IOException
+     */
+    public static boolean updateMetadata(final File pdfFile, final File metadataFile) throws IOException {
+        return new Pipeline().updateMetadata(metadataFile).execute(pdfFile);
+    }
+
+    /**
+     * Save XMP Metadata. XMP packet is copied as is; empty file is created if PDF document does not have XMP
+     * Metadata.
+     * 
+     * @param document
+     *            Source PDF document.
+     * @param xmpFile
+     *            File with XMP packet.
+     * @throws IOException
+     */
+    public static void saveXmp(final PDDocument document, final File xmpFile) throws IOException {
+        final PDMetadata xmpMetadata = document.getDocumentCatalog().getMetadata();
+        if (xmpMetadata == null) {
+            Files.write(xmpFile.toPath(), new byte[0]);
+            return;
         }
 
-        // Replace original PDF file.
-        pdfFile.delete();
-        Files.move(Paths.get(TEMP_PDF.toURI()), Paths.get(pdfFile.toURI()));
+        try (InputStream input = xmpMetadata.createInputStream()) {
+            Files.copy(input, xmpFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
-    private static void extractFile(final File outputDir, final PDComplexFileSpecification fileSpec)
-            throws IOException {
-        final File file = new File(outputDir.getAbsolutePath() + File.separatorChar + fileSpec.getFilename());
-        final PDEmbeddedFile embeddedFile = getEmbeddedFile(fileSpec);
-        Files.write(file.toPath(), embeddedFile.toByteArray());
+    /**
+     * Save XMP Metadata.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param xmpFile
+     *            File with XMP packet.
+     * @throws IOException
+     */
+    public static void saveXmp(final File pdfFile, final File xmpFile) throws IOException {
+        new Pipeline().saveXmp(xmpFile).execute(pdfFile);
     }
 
-    private static void extractFiles(final File outputDir, final Map<String, PDComplexFileSpecification> names)
-            throws IOException {
-        if (names != null) {
-            for (PDComplexFileSpecification fileSpec : names.values()) {
-                extractFile(outputDir, fileSpec);
-            }
+    // Read bytes until the buffer is full or the end of the stream is reached.
+    private static int readFully(final InputStream input, final byte[] buffer) throws IOException {
+        int count = 0;
+        int read;
+        while (count < buffer.length && (read = input.read(buffer, count, buffer.length - count)) >= 0) {
+            count += read;
         }
+        return count;
     }
 
-    private static PDEmbeddedFile getEmbeddedFile(final PDComplexFileSpecification fileSpec) {
-        // Search for the first available alternative of the Embedded (attached) file.
-        if (fileSpec != null) {
-            //@formatter:off
-            final PDEmbeddedFile[] files = {
-                    fileSpec.getEmbeddedFileUnicode(), 
-                    fileSpec.getEmbeddedFileUnix(), 
-                    fileSpec.getEmbeddedFileDos(), 
-                    fileSpec.getEmbeddedFileMac(), 
-                    fileSpec.getEmbeddedFile()
-                };
-            //@formatter:on
-
-            for (PDEmbeddedFile embeddedFile : files) {
-                if (embeddedFile != null) {
-                    return embeddedFile;
+    /*
+     * Compare XMP packet with the file chunk by chunk, so neither of them is loaded into memory as a whole. Length of
+     * not encoded stream is known without reading it.
+     */
+    private static boolean contentEquals(final PDMetadata xmpMetadata, final File file) throws IOException {
+        final List<COSName> filters = xmpMetadata.getFilters();
+        if ((filters == null || filters.isEmpty()) && xmpMetadata.getCOSObject().getLength() != file.length()) {
+            return false;
+        }
+
+        try (InputStream input1 = xmpMetadata.createInputStream();
+                InputStream input2 = Files.newInputStream(file.toPath())) {
+            final byte[] buffer1 = new byte[COPY_BUFFER_SIZE];
+            final byte[] buffer2 = new byte[COPY_BUFFER_SIZE];
+            while (true) {
+                final int read1 = readFully(input1, buffer1);
+                final int read2 = readFully(input2, buffer2);
+                if (read1 != read2) {
+                    return false;
+                }
+                for (int i = 0; i < read1; ++i) {
+                    if (buffer1[i] != buffer2[i]) {
+                        return false;
+                    }
+                }
+                if (read1 < buffer1.length) {
+                    return true;
                 }
             }
         }
+    }
 
-        return null;
+    /**
+     * Update XMP Metadata. XMP packet is copied as is (without compression, so it can be found by tools that do not
+     * parse PDF). Metadata (Document Information) entries that have the same meaning as XMP properties (title, author,
+     * dates, etc.) are updated by values from XMP packet.
+     * 
+     * @param document
+     *            Source PDF document.
+     * @param xmpFile
+     *            File with XMP packet.
+     * @return <code>true</code> if XMP Metadata or Metadata were changed; <code>false</code> if PDF document already
+     *         has the same XMP packet and Metadata.
+     * @throws IOException
+     */
+    public static boolean updateXmp(final PDDocument document, final File xmpFile) throws IOException {
+        boolean changed = false;
+
+        // Copy XMP packet.
+        final PDMetadata currentXmpMetadata = document.getDocumentCatalog().getMetadata();
+        if (currentXmpMetadata == null || !contentEquals(currentXmpMetadata, xmpFile)) {
+            final PDMetadata xmpMetadata = new PDMetadata(document);
+            try (OutputStream output = xmpMetadata.createOutputStream()) {
+                Files.copy(xmpFile.toPath(), output);
+            }
+            document.getDocumentCatalog().setMetadata(xmpMetadata);
+            changed = true;
+        }
+
+        // Keep Metadata (Document Information) in sync.
+        final PDDocumentInformation xmpInformation;
+        try (InputStream input = Files.newInputStream(xmpFile.toPath())) {
+            xmpInformation = XmpHelper.xmpToInformation(input);
+        }
+        final PDDocumentInformation information = document.getDocumentInformation();
+        final List<String> currentLines = MetadataHelper.metadataToLineList(information);
+        for (COSName key : XmpHelper.PROPERTIES.values()) {
+            final COSBase value = xmpInformation.getCOSObject().getItem(key);
+            if (value != null) {
+                information.getCOSObject().setItem(key, value);
+            } else {
+                information.getCOSObject().removeItem(key);
+            }
+        }
+        if (!currentLines.equals(MetadataHelper.metadataToLineList(information))) {
+            information.getCOSObject().setNeedToBeUpdated(true);
+            document.setDocumentInformation(information);
+            changed = true;
+        }
+
+        return changed;
     }
 
     /**
-     * Save all Attached (embedded) files to some directory.
+     * Update XMP Metadata.
      * 
      * @param pdfFile
      *            Source PDF file.
+     * @param xmpFile
+     *            File with XMP packet.
+     * @return <code>true</code> if PDF file was changed.
+     * @throws IOException
+     */
+    public static boolean updateXmp(final File pdfFile, final File xmpFile) throws IOException {
+        return new Pipeline().updateXmp(xmpFile).execute(pdfFile);
+    }
+
+    /**
+     * Save all Attached (embedded) files to some directory. Files with the same name are saved with number suffix.
+     * 
+     * @param document
+     *            Source PDF document.
      * @param outputDir
      *            Target directory.
+     * @param threads
+     *            Maximum number of threads that decode and write files.
+     * @return total size of saved files in bytes.
      * @throws IOException
      */
     /*
      * See:
      *      https://svn.apache.org/viewvc/pdfbox/trunk/examples/src/main/java/org/apache/pdfbox/examples/pdmodel/ExtractEmbeddedFiles.java?view=markup
      */
-    public static void saveAttachments(final File pdfFile, final File outputDir) throws IOException {
-        PDDocument document = null;
+    public static long saveAttachments(final PDDocument document, final File outputDir, final int threads)
+            throws IOException {
+        // Create target directory if it is not exists.
+        Files.createDirectories(outputDir.toPath());
+
+        // Files are taken one by one; names are assigned in document order, so result does not depend on number of
+        // threads.
         try {
-            // Read PDF file.
-            document = PDDocument.load(pdfFile);
-            if (document.isEncrypted()) {
-                throw new IOException("Document is encrypted.");
-            }
+            return AttachmentHelper.extractFiles(
+                    AttachmentHelper.iterateFilenames(AttachmentHelper.iterateFileSpecifications(document)), outputDir,
+                    threads);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 
-            // Extract Embedded (attached) files.
-            final PDDocumentNameDictionary documentNameDictionary = new PDDocumentNameDictionary(
-                    document.getDocumentCatalog());
-            final PDEmbeddedFilesNameTreeNode embeddedFilesNameTree = documentNameDictionary.getEmbeddedFiles();
-            if (embeddedFilesNameTree != null) {
-                extractFiles(outputDir, embeddedFilesNameTree.getNames());
-
-                final List<PDNameTreeNode<PDComplexFileSpecification>> kids = embeddedFilesNameTree.getKids();
-                if (kids != null) {
-                    for (PDNameTreeNode<PDComplexFileSpecification> nameTreeNode : kids) {
-                        extractFiles(outputDir, nameTreeNode.getNames());
-                    }
-                }
-            }
+    /**
+     * Save all Attached (embedded) files to some directory. Files with the same name are saved with number suffix.
+     * 
+     * @param document
+     *            Source PDF document.
+     * @param outputDir
+     *            Target directory.
+     * @return total size of saved files in bytes.
+     * @throws IOException
+     */
+    public static long saveAttachments(final PDDocument document, final File outputDir) throws IOException {
+        return saveAttachments(document, outputDir, 1);
+    }
 
-            // Extract Embedded (attached) from annotations.
-            for (PDPage page : document.getPages()) {
-                for (PDAnnotation annotation : page.getAnnotations()) {
-                    if (annotation instanceof PDAnnotationFileAttachment) {
-                        final PDAnnotationFileAttachment fileAttach = (PDAnnotationFileAttachment) annotation;
+    /**
+     * Save all Attached (embedded) files to some directory.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param outputDir
+     *            Target directory.
+     * @throws IOException
+     */
+    public static void saveAttachments(final File pdfFile, final File outputDir) throws IOException {
+        new Pipeline().saveAttachments(outputDir).execute(pdfFile);
+    }
 
-                        final PDComplexFileSpecification fileSpec = (PDComplexFileSpecification) fileAttach.getFile();
-                        extractFile(outputDir, fileSpec);
-                    }
-                }
-            }
-        } finally {
-            if (document != null) {
-                document.close();
-            }
-        }
+    /**
+     * Remove all Attached (embedded) files. Other names (destinations, JavaScript, etc.) are kept.
+     * 
+     * @param document
+     *            Source PDF document.
+     * @return <code>true</code> if Attached (embedded) files were removed; <code>false</code> if PDF document does not
+     *         have them.
+     * @throws IOException
+     */
+    public static boolean removeAttachments(final PDDocument document) throws IOException {
+        return removeAttachments(document, Collections.singletonList("*"));
+    }
+
+    /**
+     * Remove Attached (embedded) files with names that match any of globs (<code>*</code> and <code>?</code> are
+     * supported). Content of removed files is not written when PDF document is saved as a whole.
+     * 
+     * @param document
+     *            Source PDF document.
+     * @param globs
+     *            Names or globs of Attached (embedded) files.
+     * @return <code>true</code> if Attached (embedded) files were removed; <code>false</code> if nothing matches.
+     * @throws IOException
+     */
+    public static boolean removeAttachments(final PDDocument document, final List<String> globs) throws IOException {
+        return AttachmentHelper.removeFiles(document, AttachmentHelper.globsToPattern(globs)) > 0;
     }
 
     /**
@@ -336,107 +611,168 @@ public class IOHelper {
      * 
      * @param pdfFile
      *            Source PDF file.
+     * @return <code>true</code> if PDF file was changed.
      * @throws IOException
      */
-    public static void removeAttachments(final File pdfFile) throws IOException {
-        PDDocument document = null;
-        try {
-            // Read PDF file.
-            document = PDDocument.load(pdfFile);
-            if (document.isEncrypted()) {
-                throw new IOException("Document is encrypted.");
-            }
+    public static boolean removeAttachments(final File pdfFile) throws IOException {
+        return new Pipeline().removeAttachments().execute(pdfFile);
+    }
 
-            // Clean the tree to the document catalog.
-            document.getDocumentCatalog().setNames(null);
+    /**
+     * Remove Attached (embedded) files with names that match any of globs.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param globs
+     *            Names or globs of Attached (embedded) files.
+     * @return <code>true</code> if PDF file was changed.
+     * @throws IOException
+     */
+    public static boolean removeAttachments(final File pdfFile, final List<String> globs) throws IOException {
+        return new Pipeline().removeAttachments(globs).execute(pdfFile);
+    }
 
-            // Create temporary PDF file for result.
-            if (TEMP_PDF.exists()) {
-                TEMP_PDF.delete();
-            }
+    private static boolean isCompressionRequired(final File file, final Compression compression) {
+        switch (compression) {
+        case FLATE:
+            return true;
+        case NONE:
+            return false;
+        default:
+            final String name = file.getName();
+            final int extensionIndex = name.lastIndexOf('.');
+            final String extension = extensionIndex >= 0 ? name.substring(extensionIndex + 1) : "";
+            return !COMPRESSED_EXTENSIONS.contains(extension.toLowerCase(Locale.ROOT));
+        }
+    }
 
-            // Save result to temporary PDF file.
-            document.save(TEMP_PDF);
-        } finally {
-            if (document != null) {
-                document.close();
+    /*
+     * PDStream(PDDocument, InputStream, COSName) keeps the whole file in memory and encodes it only when it is closed:
+     * copy the content into the stream and compress it on the fly instead.
+     */
+    protected static PDEmbeddedFile createEmbeddedFile(final PDDocument document, final InputStream input,
+            final boolean compress) throws IOException {
+        final PDEmbeddedFile embeddedFile = new PDEmbeddedFile(document);
+        final COSStream stream = embeddedFile.getCOSObject();
+
+        long size = 0;
+        try (OutputStream output = compress ? createDeflaterOutputStream(stream.createRawOutputStream())
+                : stream.createRawOutputStream()) {
+            final byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, read);
+                size += read;
             }
         }
+        if (compress) {
+            stream.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+        }
+
+        // Parameters of Embedded (attached) file.
+        if (size <= Integer.MAX_VALUE) {
+            embeddedFile.setSize((int) size);
+        }
+
+        return embeddedFile;
+    }
+
+    private static PDEmbeddedFile createEmbeddedFile(final PDDocument document, final File file,
+            final Compression compression) throws IOException {
+        final PDEmbeddedFile embeddedFile;
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            embeddedFile = createEmbeddedFile(document, input, isCompressionRequired(file, compression));
+        }
 
-        // Replace original PDF file.
-        pdfFile.delete();
-        Files.move(Paths.get(TEMP_PDF.toURI()), Paths.get(pdfFile.toURI()));
+        final Calendar modificationDate = Calendar.getInstance();
+        modificationDate.setTimeInMillis(file.lastModified());
+        embeddedFile.setModDate(modificationDate);
+
+        return embeddedFile;
+    }
+
+    private static OutputStream createDeflaterOutputStream(final OutputStream output) {
+        return new DeflaterOutputStream(output, new Deflater(), COPY_BUFFER_SIZE) {
+
+            @Override
+            public void close() throws IOException {
+                super.close();
+                def.end();
+            }
+        };
     }
 
     /**
-     * Add new Attached (embedded) files.
+     * Add new Attached (embedded) files. Existing Attached (embedded) files are kept, named tree is kept sorted and
+     * balanced (see {@link NameTreeHelper}).
      * 
-     * @param pdfFile
-     *            Source PDF file.
+     * @param document
+     *            Source PDF document.
      * @param attachmentFiles
      *            Files that will be attached (embedded).
+     * @param compression
+     *            Compression of attached (embedded) files.
      * @throws IOException
      */
     /*
      * See:
      *      https://svn.apache.org/viewvc/pdfbox/trunk/examples/src/main/java/org/apache/pdfbox/examples/pdmodel/EmbeddedFiles.java?view=markup
      */
-    public static void addAttachments(final File pdfFile, final List<File> attachmentFiles) throws IOException {
-        PDDocument document = null;
-        try {
-            // Read PDF file.
-            document = PDDocument.load(pdfFile);
-            if (document.isEncrypted()) {
-                throw new IOException("Document is encrypted.");
-            }
-
-            // Embedded (attached) files are stored in a named tree.
-            final PDEmbeddedFilesNameTreeNode root = new PDEmbeddedFilesNameTreeNode();
-            final List<PDEmbeddedFilesNameTreeNode> kids = new ArrayList<PDEmbeddedFilesNameTreeNode>();
-            root.setKids(kids);
-
+    public static void addAttachments(final PDDocument document, final List<File> attachmentFiles,
+            final Compression compression) throws IOException {
+        // Embedded (attached) files are stored in a named tree: existing files are kept.
+        final PDDocumentNameDictionary namesDictionary = new PDDocumentNameDictionary(
+                document.getDocumentCatalog());
+        PDEmbeddedFilesNameTreeNode root = namesDictionary.getEmbeddedFiles();
+        if (root == null) {
             // Add the tree to the document catalog.
-            final PDDocumentNameDictionary namesDictionary = new PDDocumentNameDictionary(
-                    document.getDocumentCatalog());
+            root = new PDEmbeddedFilesNameTreeNode();
             namesDictionary.setEmbeddedFiles(root);
+            namesDictionary.getCOSObject().setNeedToBeUpdated(true);
             document.getDocumentCatalog().setNames(namesDictionary);
+        }
 
-            // For all Embedded (attached) files.
-            for (File file : attachmentFiles) {
-                final String filename = file.getName();
-
-                // First create the file specification, which holds the Embedded (attached) file.
-                final PDComplexFileSpecification complexFileSpecification = new PDComplexFileSpecification();
-                complexFileSpecification.setFile(filename);
-
-                // Create a dummy file stream, this would probably normally be a FileInputStream.
-                final ByteArrayInputStream fileStream = new ByteArrayInputStream(Files.readAllBytes(file.toPath()));
-                final PDEmbeddedFile embededFile = new PDEmbeddedFile(document, fileStream);
-                complexFileSpecification.setEmbeddedFile(embededFile);
-
-                // Create a new tree node and add the Embedded (attached) file.
-                final PDEmbeddedFilesNameTreeNode embeddedFilesNameTree = new PDEmbeddedFilesNameTreeNode();
-                embeddedFilesNameTree.setNames(Collections.singletonMap(filename, complexFileSpecification));
+        // For all Embedded (attached) files.
+        for (File file : attachmentFiles) {
+            final String filename = file.getName();
 
-                // Add the new node as kid to the root node.
-                kids.add(embeddedFilesNameTree);
-            }
+            // First create the file specification, which holds the Embedded (attached) file.
+            final PDComplexFileSpecification complexFileSpecification = new PDComplexFileSpecification();
+            complexFileSpecification.setFile(filename);
 
-            // Create temporary PDF file for result.
-            if (TEMP_PDF.exists()) {
-                TEMP_PDF.delete();
-            }
+            // Copy content of the file.
+            final PDEmbeddedFile embededFile = createEmbeddedFile(document, file, compression);
+            complexFileSpecification.setEmbeddedFile(embededFile);
 
-            // Save result to temporary PDF file.
-            document.save(TEMP_PDF);
-        } finally {
-            if (document != null) {
-                document.close();
-            }
+            // Add the Embedded (attached) file to the balanced tree: only nodes on the path to it are changed.
+            NameTreeHelper.add(root.getCOSObject(), new COSString(filename), complexFileSpecification.getCOSObject());
         }
+    }
+
+    /**
+     * Add new Attached (embedded) files. Files are compressed if they are not compressed already.
+     * 
+     * @param document
+     *            Source PDF document.
+     * @param attachmentFiles
+     *            Files that will be attached (embedded).
+     * @throws IOException
+     */
+    public static void addAttachments(final PDDocument document, final List<File> attachmentFiles)
+            throws IOException {
+        addAttachments(document, attachmentFiles, Compression.AUTO);
+    }
 
-        // Replace original PDF file.
-        pdfFile.delete();
-        Files.move(Paths.get(TEMP_PDF.toURI()), Paths.get(pdfFile.toURI()));
+    /**
+     * Add new Attached (embedded) files.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @param attachmentFiles
+     *            Files that will be attached (embedded).
+     * @throws IOException
+     */
+    public static void addAttachments(final File pdfFile, final List<File> attachmentFiles) throws IOException {
+        new Pipeline().addAttachments(attachmentFiles).execute(pdfFile);
     }
 }
@@ -0,0 +1,814 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+
+/**
+ * On-disk index of Metadata and Outlines (bookmarks) summaries of many PDF files.
+ * 
+ * Index file is a log of records with checksums: save appends only summaries of PDF files that were added, changed or
+ * removed since the previous save, so time of save depends on the number of changes, not on the size of the index.
+ * The log is compacted (rewritten atomically) when it has much more records than the index has PDF files. Record that
+ * is not completely written (process is killed during save) is ignored. Summaries of all PDF files (Metadata and few
+ * numbers) are kept in memory, so queries are answered without reading of the index file and PDF files.
+ * 
+ * Scan reparses only PDF files that are new or whose content was changed: if size and modification time of PDF file
+ * are the same as in the index, file is not read at all; otherwise content hash is compared.
+ * 
+ * Query condition can be:
+ * <ul>
+ * <li><code>&lt;key&gt;</code> &mdash; property is present and not empty;</li>
+ * <li><code>!&lt;key&gt;</code> &mdash; property is absent or empty;</li>
+ * <li><code>&lt;key&gt;=&lt;value&gt;</code> &mdash; property is equal to value;</li>
+ * <li><code>&lt;key&gt;~&lt;regex&gt;</code> &mdash; property contains regular expression;</li>
+ * <li><code>&lt;key&gt;&gt;&lt;number&gt;</code>, <code>&lt;key&gt;&lt;&lt;number&gt;</code> &mdash; numeric property
+ * is greater or less than number.</li>
+ * </ul>
+ * Properties are Metadata (Document Information) keys (<code>Title</code>, <code>Author</code>, etc.) and summaries of
+ * PDF file: {@link #PAGES}, {@link #OUTLINES}, {@link #DEPTH}, {@link #SIZE} and {@link #ERROR} (summaries that are
+ * equal to zero are absent).
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class Index {
+
+    /**
+     * Number of pages.
+     */
+    public static final String PAGES = "pages";
+
+    /**
+     * Number of Outlines (bookmarks).
+     */
+    public static final String OUTLINES = "outlines";
+
+    /**
+     * Maximal depth of Outlines (bookmarks).
+     */
+    public static final String DEPTH = "depth";
+
+    /**
+     * Size of PDF file in bytes.
+     */
+    public static final String SIZE = "size";
+
+    /**
+     * Error of PDF file parsing.
+     */
+    public static final String ERROR = "error";
+
+    protected static final int MAGIC = 0x504D4D49; // "PMMI"
+
+    protected static final int VERSION = 2;
+
+    protected static final int HEADER_SIZE = 8;
+
+    protected static final byte PUT_RECORD = 1;
+
+    protected static final byte REMOVE_RECORD = 2;
+
+    // Log is compacted if it has more records than this number or twice the number of PDF files.
+    protected static final int MIN_COMPACTION_RECORDS = 1024;
+
+    protected static final String HASH_ALGORITHM = "SHA-256";
+
+    protected static final Pattern CONDITION_PATTERN = Pattern
+            .compile("^(?<not>!)?(?<key>[^=~<>!]+)((?<operator>[=~<>])(?<value>.*))?$");
+
+    private final File indexFile;
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    // Paths of PDF files that are changed or removed since the last save.
+    private final Set<String> changedPaths = new HashSet<>();
+
+    // Number of records and length of valid part of the index file.
+    private int records;
+
+    private long validLength;
+
+    private MemoryUsageSetting memoryUsageSetting = MemoryUsageSetting.setupMainMemoryOnly();
+
+    private boolean virtualThreads = false;
+
+    /**
+     * Summary of single PDF file.
+     */
+    public static class Entry {
+
+        private final String path;
+
+        private final long size;
+
+        private final long lastModified;
+
+        private final String hash;
+
+        private final Map<String, String> metadata;
+
+        private final int pages;
+
+        private final int outlines;
+
+        private final int depth;
+
+        private final String error;
+
+        Entry(final String path, final long size, final long lastModified, final String hash,
+                final Map<String, String> metadata, final int pages, final int outlines, final int depth,
+                final String error) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.metadata = metadata;
+            this.pages = pages;
+            this.outlines = outlines;
+            this.depth = depth;
+            this.error = error;
+        }
+
+        // The same content with new size or modification time.
+        private Entry touch(final long size, final long lastModified) {
+            return new Entry(path, size, lastModified, hash, metadata, pages, outlines, depth, error);
+        }
+
+        /**
+         * @return absolute path of PDF file.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return size of PDF file in bytes.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return modification time of PDF file in milliseconds.
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * @return hash of content of PDF file.
+         */
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * @return Metadata (Document Information).
+         */
+        public Map<String, String> getMetadata() {
+            return Collections.unmodifiableMap(metadata);
+        }
+
+        /**
+         * @return number of pages.
+         */
+        public int getPages() {
+            return pages;
+        }
+
+        /**
+         * @return number of Outlines (bookmarks).
+         */
+        public int getOutlines() {
+            return outlines;
+        }
+
+        /**
+         * @return maximal depth of Outlines (bookmarks).
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return error of PDF file parsing or <code>null</code>.
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * @return Metadata (Document Information) and summaries of PDF file that can be queried.
+         */
+        public Map<String, String> getProperties() {
+            final Map<String, String> properties = new LinkedHashMap<>(metadata);
+            putPositive(properties, PAGES, pages);
+            putPositive(properties, OUTLINES, outlines);
+            putPositive(properties, DEPTH, depth);
+            putPositive(properties, SIZE, size);
+            if (error != null) {
+                properties.put(ERROR, error);
+            }
+            return properties;
+        }
+
+        private static void putPositive(final Map<String, String> properties, final String key, final long value) {
+            if (value > 0) {
+                properties.put(key, Long.toString(value));
+            }
+        }
+    }
+
+    /**
+     * @param indexFile
+     *            Index file. Existing index is loaded.
+     * @throws IOException
+     */
+    public Index(final File indexFile) throws IOException {
+        this.indexFile = indexFile;
+
+        if (indexFile.exists()) {
+            load();
+        }
+    }
+
+    /**
+     * @param memoryUsageSetting
+     *            Where scanned PDF files are kept during parsing.
+     * @return this index.
+     */
+    public Index setMemoryUsageSetting(final MemoryUsageSetting memoryUsageSetting) {
+        this.memoryUsageSetting = memoryUsageSetting;
+        return this;
+    }
+
+    /**
+     * @param virtualThreads
+     *            <code>true</code> to scan PDF files by virtual threads, see
+     *            {@link ExecutorHelper#newExecutor(int, boolean)}.
+     * @return this index.
+     */
+    public Index setVirtualThreads(final boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * @return summaries of PDF files ordered by path.
+     */
+    public Collection<Entry> getEntries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static int checksum(final byte[] bytes) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private void apply(final byte[] record) throws IOException {
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+        final byte type = input.readByte();
+        final String path = readString(input);
+        if (type == REMOVE_RECORD) {
+            entries.remove(path);
+            return;
+        }
+        if (type != PUT_RECORD) {
+            throw new IOException(String.format("Index file have a wrong format: '%s'!", indexFile));
+        }
+
+        final long size = input.readLong();
+        final long lastModified = input.readLong();
+        final String hash = readString(input);
+
+        final Map<String, String> metadata = new LinkedHashMap<>();
+        final int metadataCount = input.readInt();
+        for (int j = 0; j < metadataCount; ++j) {
+            final String key = readString(input);
+            metadata.put(key, readString(input));
+        }
+
+        final int pages = input.readInt();
+        final int outlines = input.readInt();
+        final int depth = input.readInt();
+        final String error = readString(input);
+
+        entries.put(path, new Entry(path, size, lastModified, hash, metadata, pages, outlines, depth, error));
+    }
+
+    private void load() throws IOException {
+        final long fileLength = indexFile.length();
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(indexFile.toPath()), IOHelper.COPY_BUFFER_SIZE))) {
+            if (fileLength < HEADER_SIZE || input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(String.format("Index file have a wrong format: '%s'!", indexFile));
+            }
+            validLength = HEADER_SIZE;
+
+            // Records: length, content and checksum. The last record can be written partially.
+            while (fileLength - validLength >= 8) {
+                final int length = input.readInt();
+                if (length < 0 || length > fileLength - validLength - 8) {
+                    break;
+                }
+                final byte[] record = new byte[length];
+                input.readFully(record);
+                if (input.readInt() != checksum(record)) {
+                    break;
+                }
+
+                apply(record);
+                ++records;
+                validLength += length + 8;
+            }
+        }
+    }
+
+    private static byte[] createRecord(final String path, final Entry entry) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        if (entry == null) {
+            output.writeByte(REMOVE_RECORD);
+            writeString(output, path);
+            return bytes.toByteArray();
+        }
+
+        output.writeByte(PUT_RECORD);
+        writeString(output, entry.path);
+        output.writeLong(entry.size);
+        output.writeLong(entry.lastModified);
+        writeString(output, entry.hash);
+
+        output.writeInt(entry.metadata.size());
+        for (Map.Entry<String, String> metadata : entry.metadata.entrySet()) {
+            writeString(output, metadata.getKey());
+            writeString(output, metadata.getValue());
+        }
+
+        output.writeInt(entry.pages);
+        output.writeInt(entry.outlines);
+        output.writeInt(entry.depth);
+        writeString(output, entry.error);
+        return bytes.toByteArray();
+    }
+
+    // Records of changed (or all) PDF files; returns number of written records.
+    private int writeRecords(final FileChannel channel, final Collection<String> paths) throws IOException {
+        final DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), IOHelper.COPY_BUFFER_SIZE));
+        for (String path : paths) {
+            final byte[] record = createRecord(path, entries.get(path));
+            output.writeInt(record.length);
+            output.write(record);
+            output.writeInt(checksum(record));
+        }
+        output.flush();
+
+        // Records are on the disk before the index file is used again.
+        channel.force(false);
+        return paths.size();
+    }
+
+    private void compact() throws IOException {
+        final Path indexPath = indexFile.getAbsoluteFile().toPath();
+
+        final Path tempPath = Files.createTempFile(indexPath.getParent(), "." + indexPath.getFileName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                records = writeRecords(channel, entries.keySet());
+                validLength = channel.size();
+            }
+
+            try {
+                Files.move(tempPath, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * Save index: records of PDF files that were added, changed or removed since the previous save are appended to the
+     * index file. If the index file does not exist or has too many records, it is rewritten and replaced atomically.
+     * Index file is not damaged if process is stopped.
+     * 
+     * @throws IOException
+     */
+    public void save() throws IOException {
+        final long maxRecords = Math.max(MIN_COMPACTION_RECORDS, 2L * entries.size());
+        if (!indexFile.exists() || validLength == 0 || records + changedPaths.size() > maxRecords) {
+            compact();
+        } else if (!changedPaths.isEmpty()) {
+            try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.WRITE)) {
+                // Remove record that was written partially.
+                channel.truncate(validLength);
+                channel.position(validLength);
+                records += writeRecords(channel, new TreeSet<>(changedPaths));
+                validLength = channel.size();
+            }
+        }
+        changedPaths.clear();
+    }
+
+    /**
+     * @param pdfFile
+     *            Source PDF file.
+     * @return hexadecimal hash of content of the file.
+     * @throws IOException
+     */
+    public static String hash(final File pdfFile) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (InputStream input = Files.newInputStream(pdfFile.toPath())) {
+            final byte[] buffer = new byte[IOHelper.COPY_BUFFER_SIZE];
+            int length;
+            while ((length = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, length);
+            }
+        }
+
+        final StringBuilder hash = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hash.append(String.format("%02x", b));
+        }
+        return hash.toString();
+    }
+
+    private static int getDepth(final PDOutlineItem outlineItem, final int depth, final int[] count) {
+        ++count[0];
+
+        int maxDepth = depth;
+        for (PDOutlineItem child : outlineItem.children()) {
+            maxDepth = Math.max(maxDepth, getDepth(child, depth + 1, count));
+        }
+        return maxDepth;
+    }
+
+    private Entry parse(final String path, final File pdfFile, final long size, final long lastModified,
+            final String hash) {
+        final Map<String, String> metadata = new LinkedHashMap<>();
+        final int[] summary = new int[3];
+        try {
+            new Pipeline().setMemoryUsageSetting(memoryUsageSetting).add("index", document -> {
+                // Metadata: the same values as saved Metadata has.
+                final PDDocumentInformation information = document.getDocumentInformation();
+                final List<String> keys = new ArrayList<>(information.getMetadataKeys());
+                Collections.sort(keys);
+                for (String key : keys) {
+                    final String value = information.getCustomMetadataValue(key);
+                    if (value != null) {
+                        metadata.put(key, value);
+                    }
+                }
+
+                // Pages and Outlines (bookmarks).
+                summary[0] = document.getNumberOfPages();
+                final PDDocumentOutline outline = document.getDocumentCatalog().getDocumentOutline();
+                if (outline != null) {
+                    final int[] count = new int[1];
+                    for (PDOutlineItem outlineItem : outline.children()) {
+                        summary[2] = Math.max(summary[2], getDepth(outlineItem, 1, count));
+                    }
+                    summary[1] = count[0];
+                }
+                return false;
+            }).execute(pdfFile);
+        } catch (IOException | RuntimeException e) {
+            return new Entry(path, size, lastModified, hash, Collections.emptyMap(), 0, 0, 0,
+                    e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        return new Entry(path, size, lastModified, hash, metadata, summary[0], summary[1], summary[2], null);
+    }
+
+    /*
+     * Size and modification time are checked first: content hash requires reading of the whole file, so it is computed
+     * only for changed or new files.
+     */
+    private Entry update(final Entry entry, final File pdfFile, final String path) throws IOException {
+        final long size = pdfFile.length();
+        final long lastModified = pdfFile.lastModified();
+        if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+            return entry;
+        }
+
+        final String hash = hash(pdfFile);
+        if (entry != null && hash.equals(entry.hash)) {
+            return entry.touch(size, lastModified);
+        }
+
+        return parse(path, pdfFile, size, lastModified, hash);
+    }
+
+    /**
+     * Scan PDF files and update the index: new and changed files are parsed, files that are absent in the list are
+     * removed from the index. Summaries of files that can not be read are kept. Index is not saved.
+     * 
+     * @param pdfFiles
+     *            All PDF files of the index.
+     * @param threads
+     *            Number of worker threads.
+     * @return summary of scan.
+     * @throws InterruptedException
+     */
+    public Summary scan(final List<File> pdfFiles, final int threads) throws InterruptedException {
+        if (threads < 1) {
+            throw new IllegalArgumentException(String.format("Number of threads should be positive: %d!", threads));
+        }
+
+        final long startTime = System.nanoTime();
+
+        final Summary summary = new Summary();
+
+        final Map<String, Entry> oldEntries = new TreeMap<>(entries);
+        entries.clear();
+
+        final ExecutorService executor = ExecutorHelper.newExecutor(Math.min(threads, Math.max(1, pdfFiles.size())),
+                virtualThreads);
+        try {
+            final List<String> paths = new ArrayList<>();
+            final List<Future<Entry>> results = new ArrayList<>();
+            for (File pdfFile : pdfFiles) {
+                final String path = pdfFile.getAbsoluteFile().toPath().normalize().toString();
+                final Entry entry = oldEntries.get(path);
+
+                paths.add(path);
+                results.add(executor.submit(() -> update(entry, pdfFile, path)));
+            }
+
+            // Collect results in the same order as PDF files.
+            for (int i = 0; i < paths.size(); ++i) {
+                final String path = paths.get(i);
+                final Entry oldEntry = oldEntries.remove(path);
+                try {
+                    final Entry entry = results.get(i).get();
+                    entries.put(path, entry);
+                    if (entry != oldEntry) {
+                        changedPaths.add(path);
+                    }
+
+                    if (oldEntry != null && oldEntry.hash.equals(entry.hash)) {
+                        ++summary.unchanged;
+                    } else {
+                        ++summary.parsed;
+                        if (entry.error != null) {
+                            summary.failures.put(new File(path), entry.error);
+                        }
+                    }
+                } catch (ExecutionException e) {
+                    // PDF file can not be read now (for example, because of I/O error): previous summary is kept.
+                    if (oldEntry != null) {
+                        entries.put(path, oldEntry);
+                    }
+                    final Throwable cause = e.getCause();
+                    summary.failures.put(new File(path), cause.getMessage() != null ? cause.getMessage()
+                            : cause.toString());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        summary.removed = oldEntries.size();
+        changedPaths.addAll(oldEntries.keySet());
+
+        summary.elapsedNanos = System.nanoTime() - startTime;
+
+        return summary;
+    }
+
+    /**
+     * Create predicate for query condition (see {@link Index}).
+     * 
+     * @param condition
+     *            Query condition.
+     * @return predicate over summaries of PDF files.
+     */
+    public static Predicate<Entry> parseCondition(final String condition) {
+        final Matcher matcher = CONDITION_PATTERN.matcher(condition);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException(String.format("Query condition have a wrong format: '%s'!", condition));
+        }
+
+        final String key = matcher.group("key");
+        final String operator = matcher.group("operator");
+        final String value = matcher.group("value");
+        if (matcher.group("not") != null) {
+            if (operator != null) {
+                throw new IllegalArgumentException(
+                        String.format("Query condition have a wrong format: '%s'!", condition));
+            }
+            return entry -> {
+                final String property = entry.getProperties().get(key);
+                return property == null || property.isEmpty();
+            };
+        }
+        if (operator == null) {
+            return entry -> {
+                final String property = entry.getProperties().get(key);
+                return property != null && !property.isEmpty();
+            };
+        }
+
+        switch (operator) {
+        case "=":
+            return entry -> value.equals(entry.getProperties().get(key));
+        case "~":
+            final Pattern pattern = Pattern.compile(value);
+            return entry -> {
+                final String property = entry.getProperties().get(key);
+                return property != null && pattern.matcher(property).find();
+            };
+        default:
+            final long number;
+            try {
+                number = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Wrong number in query condition: '%s'!", condition));
+            }
+            final boolean greater = ">".equals(operator);
+            return entry -> {
+                final String property = entry.getProperties().get(key);
+                final long propertyNumber;
+                try {
+                    propertyNumber = property != null ? Long.parseLong(property) : 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+                return greater ? propertyNumber > number : propertyNumber < number;
+            };
+        }
+    }
+
+    /**
+     * Find PDF files that match all conditions. PDF files are not read.
+     * 
+     * @param conditions
+     *            Query conditions (see {@link Index}).
+     * @return summaries of matched PDF files ordered by path.
+     */
+    public List<Entry> query(final List<String> conditions) {
+        Predicate<Entry> predicate = entry -> true;
+        for (String condition : conditions) {
+            predicate = predicate.and(parseCondition(condition));
+        }
+
+        final List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (predicate.test(entry)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Result of scan.
+     */
+    public static class Summary {
+
+        private int parsed;
+
+        private int unchanged;
+
+        private int removed;
+
+        private final Map<File, String> failures = new LinkedHashMap<>();
+
+        private long elapsedNanos;
+
+        /**
+         * @return number of new or changed PDF files that were parsed.
+         */
+        public int getParsed() {
+            return parsed;
+        }
+
+        /**
+         * @return number of PDF files that were not changed since the previous scan.
+         */
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * @return number of PDF files that were removed since the previous scan.
+         */
+        public int getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return PDF files that can not be read with error messages.
+         */
+        public Map<File, String> getFailures() {
+            return Collections.unmodifiableMap(failures);
+        }
+
+        /**
+         * @return elapsed time in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            final double seconds = Math.max(elapsedNanos, 1) / 1e9;
+            //@formatter:off
+            return String.format(Locale.ROOT, 
+                    "Parsed: %d, unchanged: %d, removed: %d, failed: %d, time: %.3f s",
+                    parsed, unchanged, removed, failures.size(), seconds);
+            //@formatter:on
+        }
+    }
+}
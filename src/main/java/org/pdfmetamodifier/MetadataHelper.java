@@ -18,12 +18,15 @@
  */
 package org.pdfmetamodifier;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentInformation;
 
 /**
@@ -63,6 +66,20 @@ public class MetadataHelper {
         return lineList;
     }
 
+    /**
+     * Convert Metadata of PDF file to list of lines. Only Metadata is parsed, see {@link MetadataReader}.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @return list of lines with Metadata representation.
+     * @throws IOException
+     */
+    public static List<String> metadataToLineList(final File pdfFile) throws IOException {
+        try (PDDocument document = MetadataReader.load(pdfFile)) {
+            return metadataToLineList(document.getDocumentInformation());
+        }
+    }
+
     /**
      * Convert list of lines to Metadata object.
      * 
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.COSParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * Fast reader of Metadata (Document Information).
+ * 
+ * {@link PDDocument#load(File)} parses all objects that are reachable from the catalog (page tree, Outlines
+ * (bookmarks), names, etc.). This reader parses only header, cross-reference tables, trailer, Document Information
+ * dictionary, catalog and XMP Metadata stream, so time of reading does not depend on size of the document.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class MetadataReader extends COSParser {
+
+    private MetadataReader(final RandomAccessRead source) throws IOException {
+        super(source);
+        fileLen = source.length();
+        document = new COSDocument(ScratchFile.getMainMemoryOnlyInstance());
+    }
+
+    private void parseInformation() throws IOException {
+        if (!parsePDFHeader()) {
+            throw new IOException("Header does not contain version info!");
+        }
+
+        final COSDictionary trailer = retrieveTrailer();
+
+        // Strings of encrypted document can not be read without decryption.
+        final COSBase encrypt = trailer.getItem(COSName.ENCRYPT);
+        if (encrypt != null && !(encrypt instanceof COSNull)) {
+            throw new IOException("Document is encrypted.");
+        }
+
+        // Parse Document Information dictionary and all objects inside of it.
+        final COSBase info = trailer.getItem(COSName.INFO);
+        if (info instanceof COSObject) {
+            parseObjectDynamically((COSObject) info, false);
+        }
+        final COSBase infoBase = trailer.getDictionaryObject(COSName.INFO);
+        if (infoBase instanceof COSDictionary) {
+            parseDictObjects((COSDictionary) infoBase, (COSName[]) null);
+        }
+
+        // Parse catalog (without objects inside of it) and XMP Metadata stream.
+        final COSBase root = trailer.getItem(COSName.ROOT);
+        if (root instanceof COSObject) {
+            parseObjectDynamically((COSObject) root, false);
+        }
+        final COSBase rootBase = trailer.getDictionaryObject(COSName.ROOT);
+        if (rootBase instanceof COSDictionary) {
+            final COSBase metadata = ((COSDictionary) rootBase).getItem(COSName.METADATA);
+            if (metadata instanceof COSObject) {
+                parseObjectDynamically((COSObject) metadata, false);
+            }
+        }
+
+        initialParseDone = true;
+    }
+
+    private static PDDocument load(final File pdfFile, final boolean lenient) throws IOException {
+        final RandomAccessRead source = new RandomAccessBufferedFileInputStream(pdfFile);
+        try {
+            final MetadataReader reader = new MetadataReader(source);
+            reader.setLenient(lenient);
+            try {
+                reader.parseInformation();
+            } catch (IOException | RuntimeException e) {
+                reader.getDocument().close();
+                throw e;
+            }
+            return new PDDocument(reader.getDocument(), source);
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Load PDF file with Metadata (Document Information) and XMP Metadata only. Objects that are referenced from
+     * catalog (except XMP Metadata) are not parsed, so the document can be used only to read Metadata and should not
+     * be saved.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @return loaded PDF document.
+     * @throws IOException
+     */
+    /*
+     * Lenient parser checks offsets of all objects from cross-reference tables (so it reads the whole file). Damaged
+     * files are rare: try strict parser first and repair them only if it is required.
+     */
+    public static PDDocument load(final File pdfFile) throws IOException {
+        try {
+            return load(pdfFile, false);
+        } catch (IOException e) {
+            return load(pdfFile, true);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.File;
+
+/**
+ * Listener of metrics that are measured while {@link Pipeline} is executed. It can be used to forward time (as
+ * histogram) and number of bytes (as counters) into monitoring system.
+ * 
+ * Listener is called from the thread that executes pipeline, so it should be thread-safe if the same listener is used
+ * by pipelines that are executed in parallel (for example, by {@link Batch}).
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public interface MetricsListener {
+
+    /**
+     * Phase of pipeline execution is completed.
+     * 
+     * @param pdfFile
+     *            Processed PDF file.
+     * @param phase
+     *            Metrics of the phase.
+     */
+    void phaseCompleted(File pdfFile, Stats.Phase phase);
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+
+/**
+ * Helper with methods for modify named trees (Embedded (attached) files, named destinations, etc.).
+ * 
+ * Named tree is kept as balanced B-tree: names are sorted, every node except the root has Limits (the lowest and the
+ * highest names), all leaves have the same depth and every node has at most {@link #MAX_NODE_SIZE} names or kids. So
+ * name is found by the path from the root to the leaf, and adding of the name changes only nodes of this path. Every
+ * name is kept only once, as viewers (and PDFBox) read the named tree as a map.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class NameTreeHelper {
+
+    /**
+     * Maximum number of names in the leaf and kids in the intermediate node.
+     */
+    public static final int MAX_NODE_SIZE = 64;
+
+    /**
+     * Compare names of named tree: lexical order of bytes, as required by PDF specification.
+     * 
+     * @param name1
+     *            First name.
+     * @param name2
+     *            Second name.
+     * @return negative number, zero or positive number if the first name is less, equal or greater than the second.
+     */
+    public static int compare(final COSString name1, final COSString name2) {
+        final byte[] bytes1 = name1.getBytes();
+        final byte[] bytes2 = name2.getBytes();
+        for (int i = 0; i < Math.min(bytes1.length, bytes2.length); ++i) {
+            final int result = (bytes1[i] & 0xFF) - (bytes2[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return bytes1.length - bytes2.length;
+    }
+
+    private static COSArray getArray(final COSDictionary node, final COSName key) {
+        final COSBase array = node.getDictionaryObject(key);
+        return array instanceof COSArray ? (COSArray) array : null;
+    }
+
+    private static COSString getLimit(final COSDictionary node, final int index) {
+        final COSArray limits = getArray(node, COSName.LIMITS);
+        if (limits != null && limits.size() == 2 && limits.getObject(index) instanceof COSString) {
+            return (COSString) limits.getObject(index);
+        }
+        return null;
+    }
+
+    private static void setLimits(final COSDictionary node) {
+        final COSArray names = getArray(node, COSName.NAMES);
+        final COSArray kids = getArray(node, COSName.KIDS);
+
+        final COSArray limits = new COSArray();
+        if (names != null) {
+            limits.add(names.getObject(0));
+            limits.add(names.getObject(names.size() - 2));
+        } else {
+            limits.add(getLimit((COSDictionary) kids.getObject(0), 0));
+            limits.add(getLimit((COSDictionary) kids.getObject(kids.size() - 1), 1));
+        }
+        node.setItem(COSName.LIMITS, limits);
+    }
+
+    /*
+     * Node can be modified by B-tree operations only if it has names or kids (not both), no more than MAX_NODE_SIZE of
+     * them, names are sorted without duplicates and kids have Limits in the same order.
+     */
+    private static boolean isValid(final COSDictionary node) {
+        final COSArray names = getArray(node, COSName.NAMES);
+        final COSArray kids = getArray(node, COSName.KIDS);
+
+        if (names != null && kids == null) {
+            if (names.size() % 2 != 0 || names.size() / 2 > MAX_NODE_SIZE) {
+                return false;
+            }
+            for (int i = 0; i < names.size(); i += 2) {
+                if (!(names.getObject(i) instanceof COSString)
+                        || i > 0 && compare((COSString) names.getObject(i - 2), (COSString) names.getObject(i)) >= 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (kids != null && names == null) {
+            if (kids.size() == 0 || kids.size() > MAX_NODE_SIZE) {
+                return false;
+            }
+            COSString previous = null;
+            for (int i = 0; i < kids.size(); ++i) {
+                if (!(kids.getObject(i) instanceof COSDictionary)) {
+                    return false;
+                }
+                final COSDictionary kid = (COSDictionary) kids.getObject(i);
+                final COSString lowest = getLimit(kid, 0);
+                final COSString highest = getLimit(kid, 1);
+                if (lowest == null || highest == null || compare(lowest, highest) > 0
+                        || previous != null && compare(previous, lowest) >= 0) {
+                    return false;
+                }
+                previous = highest;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /*
+     * Whole tree is checked, as wrong Limits of any node (not only on the path) break lookup of names. Only size and
+     * Limits of leaves are checked here: sorting of names is checked by isValid() for the leaf on the path. Returns
+     * height of the node (0 for the leaf) or -1 if the tree is not a balanced B-tree.
+     */
+    private static int getHeight(final COSDictionary node, final boolean root, final Set<COSDictionary> visitedNodes) {
+        // Loops and nodes with several parents.
+        if (!visitedNodes.add(node)) {
+            return -1;
+        }
+
+        final COSArray names = getArray(node, COSName.NAMES);
+        final COSArray kids = getArray(node, COSName.KIDS);
+
+        final int height;
+        final COSBase lowest;
+        final COSBase highest;
+        if (names != null && kids == null) {
+            if (names.size() % 2 != 0 || names.size() / 2 > MAX_NODE_SIZE) {
+                return -1;
+            }
+            if (root) {
+                return 0;
+            }
+            if (names.size() == 0) {
+                return -1;
+            }
+            height = 0;
+            lowest = names.getObject(0);
+            highest = names.getObject(names.size() - 2);
+        } else {
+            if (!isValid(node)) {
+                return -1;
+            }
+            int kidsHeight = -1;
+            for (int i = 0; i < kids.size(); ++i) {
+                final int kidHeight = getHeight((COSDictionary) kids.getObject(i), false, visitedNodes);
+                if (kidHeight < 0 || i > 0 && kidHeight != kidsHeight) {
+                    return -1;
+                }
+                kidsHeight = kidHeight;
+            }
+            if (root) {
+                return kidsHeight + 1;
+            }
+            height = kidsHeight + 1;
+            lowest = getLimit((COSDictionary) kids.getObject(0), 0);
+            highest = getLimit((COSDictionary) kids.getObject(kids.size() - 1), 1);
+        }
+
+        final COSString lowestLimit = getLimit(node, 0);
+        final COSString highestLimit = getLimit(node, 1);
+        if (lowestLimit == null || highestLimit == null || !(lowest instanceof COSString)
+                || !(highest instanceof COSString) || compare(lowestLimit, (COSString) lowest) != 0
+                || compare(highestLimit, (COSString) highest) != 0) {
+            return -1;
+        }
+        return height;
+    }
+
+    // Entries are collected in stored order; values are not resolved, so indirect objects stay indirect.
+    private static void collect(final COSDictionary node, final List<Map.Entry<COSString, COSBase>> entries,
+            final Set<COSDictionary> visitedNodes) {
+        // Broken PDF files can contain loops in the named tree.
+        if (!visitedNodes.add(node)) {
+            return;
+        }
+
+        final COSArray names = getArray(node, COSName.NAMES);
+        if (names != null) {
+            for (int i = 0; i + 1 < names.size(); i += 2) {
+                if (names.getObject(i) instanceof COSString) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>((COSString) names.getObject(i),
+                            names.get(i + 1)));
+                }
+            }
+        }
+
+        final COSArray kids = getArray(node, COSName.KIDS);
+        if (kids != null) {
+            for (int i = 0; i < kids.size(); ++i) {
+                if (kids.getObject(i) instanceof COSDictionary) {
+                    collect((COSDictionary) kids.getObject(i), entries, visitedNodes);
+                }
+            }
+        }
+    }
+
+    private static COSDictionary createNode(final COSName key, final COSArray items) {
+        final COSDictionary node = new COSDictionary();
+        node.setItem(key, items);
+        setLimits(node);
+        return node;
+    }
+
+    // Split items into groups of the same size (no more than MAX_NODE_SIZE of items in every group).
+    private static List<COSArray> split(final List<COSBase> items, final int itemSize) {
+        final int count = items.size() / itemSize;
+        final int groups = (count + MAX_NODE_SIZE - 1) / MAX_NODE_SIZE;
+
+        final List<COSArray> result = new ArrayList<>();
+        for (int group = 0; group < groups; ++group) {
+            final COSArray array = new COSArray();
+            final int from = (int) ((long) count * group / groups) * itemSize;
+            final int to = (int) ((long) count * (group + 1) / groups) * itemSize;
+            array.addAll(items.subList(from, to));
+            result.add(array);
+        }
+        return result;
+    }
+
+    /**
+     * Rebuild named tree as balanced B-tree: names are sorted, leaves and intermediate nodes are filled evenly. Of
+     * names that are equal only the last one (in stored order) is kept, as it is done by viewers. Root node is kept, so
+     * references to it stay valid.
+     * 
+     * @param root
+     *            Root of the named tree.
+     */
+    public static void rebuild(final COSDictionary root) {
+        final List<Map.Entry<COSString, COSBase>> entries = new ArrayList<>();
+        collect(root, entries, Collections.newSetFromMap(new IdentityHashMap<>()));
+        entries.sort((entry1, entry2) -> compare(entry1.getKey(), entry2.getKey()));
+
+        // Sort is stable: the last of equal names replaces the previous ones.
+        final List<COSBase> names = new ArrayList<>();
+        for (Map.Entry<COSString, COSBase> entry : entries) {
+            if (!names.isEmpty() && compare((COSString) names.get(names.size() - 2), entry.getKey()) == 0) {
+                names.set(names.size() - 1, entry.getValue());
+            } else {
+                names.add(entry.getKey());
+                names.add(entry.getValue());
+            }
+        }
+
+        root.removeItem(COSName.NAMES);
+        root.removeItem(COSName.KIDS);
+        root.removeItem(COSName.LIMITS);
+        root.setNeedToBeUpdated(true);
+        if (names.size() / 2 <= MAX_NODE_SIZE) {
+            final COSArray rootNames = new COSArray();
+            rootNames.addAll(names);
+            root.setItem(COSName.NAMES, rootNames);
+            return;
+        }
+
+        // Leaves and then levels of intermediate nodes up to the root.
+        List<COSBase> level = new ArrayList<>();
+        for (COSArray leafNames : split(names, 2)) {
+            level.add(createNode(COSName.NAMES, leafNames));
+        }
+        while (level.size() > MAX_NODE_SIZE) {
+            final List<COSBase> parents = new ArrayList<>();
+            for (COSArray kids : split(level, 1)) {
+                parents.add(createNode(COSName.KIDS, kids));
+            }
+            level = parents;
+        }
+        final COSArray rootKids = new COSArray();
+        rootKids.addAll(level);
+        root.setItem(COSName.KIDS, rootKids);
+    }
+
+    // Move the second half of items of the node to the new node.
+    private static COSDictionary splitNode(final COSDictionary node, final COSName key, final int itemSize) {
+        final COSArray items = getArray(node, key);
+        final int from = items.size() / itemSize / 2 * itemSize;
+
+        final COSArray secondHalf = new COSArray();
+        for (int i = from; i < items.size(); ++i) {
+            secondHalf.add(items.get(i));
+        }
+        while (items.size() > from) {
+            items.remove(items.size() - 1);
+        }
+        return createNode(key, secondHalf);
+    }
+
+    /**
+     * Add name to the named tree or replace value of the existing name. Only nodes on the path from the root to the
+     * leaf are changed (and marked for incremental update); full nodes are split. Named tree that is not a balanced
+     * B-tree (for example flat tree or tree with missing or wrong Limits in any node) is rebuilt first.
+     * 
+     * @param root
+     *            Root of the named tree.
+     * @param name
+     *            Name.
+     * @param value
+     *            Value for the name.
+     */
+    public static void add(final COSDictionary root, final COSString name, final COSBase value) {
+        if (getArray(root, COSName.NAMES) == null && getArray(root, COSName.KIDS) == null) {
+            root.setItem(COSName.NAMES, new COSArray());
+        }
+        if (getHeight(root, true, Collections.newSetFromMap(new IdentityHashMap<>())) < 0) {
+            rebuild(root);
+        }
+
+        // Path from the root to the leaf: the last kid with the lowest name that is not greater than added one.
+        final List<COSDictionary> path = new ArrayList<>();
+        final List<Integer> kidIndexes = new ArrayList<>();
+        COSDictionary node = root;
+        while (true) {
+            if (!isValid(node)) {
+                rebuild(root);
+                add(root, name, value);
+                return;
+            }
+            path.add(node);
+
+            final COSArray kids = getArray(node, COSName.KIDS);
+            if (kids == null) {
+                break;
+            }
+            int index = 0;
+            while (index + 1 < kids.size()
+                    && compare(getLimit((COSDictionary) kids.getObject(index + 1), 0), name) <= 0) {
+                ++index;
+            }
+            kidIndexes.add(index);
+            node = (COSDictionary) kids.getObject(index);
+        }
+
+        // Replace value of the equal name: Limits are not changed.
+        final COSArray names = getArray(node, COSName.NAMES);
+        int index = names.size();
+        while (index > 0 && compare((COSString) names.getObject(index - 2), name) > 0) {
+            index -= 2;
+        }
+        if (index > 0 && compare((COSString) names.getObject(index - 2), name) == 0) {
+            names.set(index - 1, value);
+            node.setNeedToBeUpdated(true);
+            return;
+        }
+
+        // Insert into the leaf.
+        names.add(index, name);
+        names.add(index + 1, value);
+
+        // Split full nodes from the leaf to the root and update Limits.
+        for (int level = path.size() - 1; level >= 0; --level) {
+            final COSDictionary current = path.get(level);
+            current.setNeedToBeUpdated(true);
+
+            final COSName key = level == path.size() - 1 ? COSName.NAMES : COSName.KIDS;
+            final int itemSize = key == COSName.NAMES ? 2 : 1;
+            final boolean full = getArray(current, key).size() / itemSize > MAX_NODE_SIZE;
+            if (level == 0) {
+                if (full) {
+                    // Root keeps its place: both halves are moved to the new kids.
+                    final COSDictionary second = splitNode(current, key, itemSize);
+                    final COSDictionary first = createNode(key, getArray(current, key));
+                    current.removeItem(key);
+
+                    final COSArray rootKids = new COSArray();
+                    rootKids.add(first);
+                    rootKids.add(second);
+                    current.setItem(COSName.KIDS, rootKids);
+                }
+            } else {
+                setLimits(current);
+                if (full) {
+                    final COSDictionary second = splitNode(current, key, itemSize);
+                    setLimits(current);
+                    getArray(path.get(level - 1), COSName.KIDS).add(kidIndexes.get(level - 1) + 1, second);
+                }
+            }
+        }
+    }
+}
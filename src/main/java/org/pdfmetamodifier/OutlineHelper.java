@@ -19,14 +19,23 @@
 package org.pdfmetamodifier;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDDestinationNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageTree;
 import org.apache.pdfbox.pdmodel.interactive.action.PDAction;
 import org.apache.pdfbox.pdmodel.interactive.action.PDActionGoTo;
@@ -36,6 +45,7 @@ import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPa
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageXYZDestination;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineNode;
 
 /**
  * Helper with methods for modify PDF Outlines (bookmarks).
@@ -63,49 +73,55 @@ public class OutlineHelper {
      * @return clean title.
      */
     protected static String cleanTitle(final String title) {
-        //@formatter:off
-        final String cleanLine = title
-            .trim()
-            .replaceAll("`",                "'"     )
-            .replaceAll("‘",                "'"     )
-            .replaceAll("’",                "'"     )
-            .replaceAll("”",                "\""    )
-            .replaceAll("“",                "\""    )
-            .replaceAll("''",               "\""    )
-            .replaceAll(" - ",              " – "   )
-            .replaceAll("(?<=\\S)–(?=\\S)", " – "   )
-            .replaceAll("…",                "..."   )
-            .replaceAll("\\. \\. \\.",      "..."   )
-            .replaceAll(" ,",               ","     )
-            .replaceAll(" \\.",             "."     )
-            .replaceAll("\t",               SHIFT   )
-            .replaceAll("\\s{2,}",          " "     )
-            ;
-        //@formatter:on
+        final String cleanLine = TitleNormalizer.DEFAULT.normalize(title);
         if (cleanLine.isEmpty()) {
             throw new IllegalArgumentException("Line is empty!");
         }
         return cleanLine;
     }
 
-    private static Integer getOutlinesPageNumber(final PDPageDestination pageDestination, final PDPageTree pages) {
-        return pages.indexOf(pageDestination.getPage()) + 1;
+    /*
+     * PDPageTree.indexOf() walks the page tree for every call, so page indexes are collected once per document.
+     */
+    protected static Map<COSDictionary, Integer> createPageIndex(final PDPageTree pages) {
+        final Map<COSDictionary, Integer> pageIndex = new IdentityHashMap<>();
+
+        int index = 0;
+        for (PDPage page : pages) {
+            pageIndex.putIfAbsent(page.getCOSObject(), index);
+            ++index;
+        }
+
+        return pageIndex;
     }
 
-    private static Integer getDestinationPageNumber(final PDDestination destination, final PDPageTree pages,
-            final PDDestinationNameTreeNode destinations) throws IOException {
+    private static Integer getOutlinesPageNumber(final PDPageDestination pageDestination,
+            final Map<COSDictionary, Integer> pageIndex) {
+        final PDPage page = pageDestination.getPage();
+        if (page == null) {
+            // Destination contains page number instead of page object.
+            return pageDestination.getPageNumber() + 1;
+        }
+
+        final Integer index = pageIndex.get(page.getCOSObject());
+        return (index == null ? -1 : index) + 1;
+    }
+
+    private static Integer getDestinationPageNumber(final PDDestination destination,
+            final Map<COSDictionary, Integer> pageIndex, final PDDestinationNameTreeNode destinations)
+            throws IOException {
         if (destination != null) {
             if (destination instanceof PDPageDestination) {
                 final PDPageDestination pageDestination = (PDPageDestination) destination;
 
-                return getOutlinesPageNumber(pageDestination, pages);
+                return getOutlinesPageNumber(pageDestination, pageIndex);
             }
 
             if (destination instanceof PDNamedDestination) {
                 final PDNamedDestination namedDestination = (PDNamedDestination) destination;
 
                 final PDPageDestination pageDestination = destinations.getValue(namedDestination.getNamedDestination());
-                return getOutlinesPageNumber(pageDestination, pages);
+                return getOutlinesPageNumber(pageDestination, pageIndex);
             }
 
             // Should not happens.
@@ -116,23 +132,24 @@ public class OutlineHelper {
         return null;
     }
 
-    private static Integer getOutlinePageNumber(final PDOutlineItem outlineItem, final PDPageTree pages,
-            final PDDestinationNameTreeNode destinations) throws IOException {
+    private static Integer getOutlinePageNumber(final PDOutlineItem outlineItem,
+            final Map<COSDictionary, Integer> pageIndex, final PDDestinationNameTreeNode destinations)
+            throws IOException {
         final PDAction action = outlineItem.getAction();
         if (action != null) {
             if (action instanceof PDActionGoTo) {
                 final PDActionGoTo actionGoTo = (PDActionGoTo) action;
 
-                return getDestinationPageNumber(actionGoTo.getDestination(), pages, destinations);
+                return getDestinationPageNumber(actionGoTo.getDestination(), pageIndex, destinations);
             }
 
             // Ignore other actions.
         }
 
-        return getDestinationPageNumber(outlineItem.getDestination(), pages, destinations);
+        return getDestinationPageNumber(outlineItem.getDestination(), pageIndex, destinations);
     }
 
-    private static String outlineToLine(final PDOutlineItem outlineItem, final PDPageTree pages,
+    private static String outlineToLine(final PDOutlineItem outlineItem, final Map<COSDictionary, Integer> pageIndex,
             final PDDestinationNameTreeNode destinations, final int shift) throws IOException {
         // Shift.
         final StringBuilder bm = new StringBuilder();
@@ -144,7 +161,7 @@ public class OutlineHelper {
         final String title = outlineItem.getTitle();
 
         // Page number.
-        final Integer pageNumber = getOutlinePageNumber(outlineItem, pages, destinations);
+        final Integer pageNumber = getOutlinePageNumber(outlineItem, pageIndex, destinations);
 
         // Convert Outline (bookmark) to line.
         if (pageNumber == null) {
@@ -154,16 +171,17 @@ public class OutlineHelper {
         }
     }
 
-    private static List<String> outlinesToLineList(final PDOutlineItem outlineItem, final PDPageTree pages,
-            final PDDestinationNameTreeNode destinations, final int shift) throws IOException {
+    private static List<String> outlinesToLineList(final PDOutlineItem outlineItem,
+            final Map<COSDictionary, Integer> pageIndex, final PDDestinationNameTreeNode destinations,
+            final int shift) throws IOException {
         final List<String> lines = new ArrayList<>();
 
         // Add Outline (bookmark) line.
-        lines.add(outlineToLine(outlineItem, pages, destinations, shift));
+        lines.add(outlineToLine(outlineItem, pageIndex, destinations, shift));
 
         // Add lines for children Outlines (bookmarks).
         for (PDOutlineItem child : outlineItem.children()) {
-            lines.addAll(outlinesToLineList(child, pages, destinations, shift + 1));
+            lines.addAll(outlinesToLineList(child, pageIndex, destinations, shift + 1));
         }
 
         return lines;
@@ -186,8 +204,10 @@ public class OutlineHelper {
         final List<String> lines = new ArrayList<>();
 
         if (document != null) {
+            final Map<COSDictionary, Integer> pageIndex = createPageIndex(pages);
+
             for (PDOutlineItem outlineItem : document.children()) {
-                lines.addAll(outlinesToLineList(outlineItem, pages, destinations, 0));
+                lines.addAll(outlinesToLineList(outlineItem, pageIndex, destinations, 0));
             }
         }
 
@@ -201,34 +221,50 @@ public class OutlineHelper {
         return outlineItem;
     }
 
-    private static PDOutlineItem createOutlineItem(final String title, final int pageNumber, final PDPageTree pages) {
-        final PDOutlineItem outlineItem = createOutlineItem(title);
-
+    private static PDPageXYZDestination createDestination(final int pageNumber, final PDPageTree pages) {
         final PDPageXYZDestination destination = new PDPageXYZDestination();
         destination.setPage(pages.get(pageNumber - 1));
+        return destination;
+    }
+
+    private static PDOutlineItem createOutlineItem(final String title, final int pageNumber, final PDPageTree pages) {
+        final PDOutlineItem outlineItem = createOutlineItem(title);
 
-        outlineItem.setDestination(destination);
+        outlineItem.setDestination(createDestination(pageNumber, pages));
 
         return outlineItem;
     }
 
-    /**
-     * Convert list of lines to Outlines (bookmarks) object.
-     * 
-     * @param lineList
-     *            Source list of lines with Outlines (bookmarks) representation.
-     * @return Outlines (bookmarks) object.
+    /*
+     * Outline (bookmark) that is read from the text file.
      */
-    public static PDDocumentOutline lineListToOutlines(final PDPageTree pages, final List<String> lineList) {
-        final PDDocumentOutline outlines = new PDDocumentOutline();
+    private static class OutlineLine {
 
-        if (lineList != null) {
-            final List<Integer> shifts = new ArrayList<>();
-            final Map<String, PDOutlineItem> linesToBookmarks = new HashMap<>();
+        private final String title;
+
+        private final Integer pageNumber;
 
-            for (int i = 0; i < lineList.size(); ++i) {
-                final String line = lineList.get(i);
+        private final List<OutlineLine> children = new ArrayList<>();
 
+        OutlineLine(final String title, final Integer pageNumber) {
+            this.title = title;
+            this.pageNumber = pageNumber;
+        }
+
+        String getKey() {
+            return pageNumber == null ? title : title + SEPARATOR + pageNumber;
+        }
+    }
+
+    private static List<OutlineLine> parseLineList(final List<String> lineList) {
+        final List<OutlineLine> outlineLines = new ArrayList<>();
+
+        if (lineList != null) {
+            // Current branch of the tree: parent of the next Outline (bookmark) is the last one with smaller shift.
+            final Deque<Integer> shifts = new ArrayDeque<>();
+            final Deque<OutlineLine> parents = new ArrayDeque<>();
+
+            for (String line : lineList) {
                 // Parse string.
                 final Matcher matcher = OUTLINE_LINE_PATTERN.matcher(line);
                 if (matcher.matches()) {
@@ -236,50 +272,295 @@ public class OutlineHelper {
 
                     final String title = matcher.group("title");
 
-                    PDOutlineItem outlineItem = null;
+                    OutlineLine outlineLine = null;
                     final int separatorLastIndex = title.lastIndexOf("|");
                     if (separatorLastIndex >= 0) {
                         try {
-                            // Set title.
-                            final String correctTitle = title.substring(0, separatorLastIndex);
-
-                            // Set page destination.
-                            final int pageNumber = Integer.parseInt(title.substring(separatorLastIndex + 1));
-
-                            // Create Outline (bookmark) with page number.
-                            outlineItem = createOutlineItem(correctTitle, pageNumber, pages);
+                            // Outline (bookmark) with page number.
+                            outlineLine = new OutlineLine(title.substring(0, separatorLastIndex),
+                                    Integer.parseInt(title.substring(separatorLastIndex + 1)));
                         } catch (NumberFormatException e) {
                             // Ignore: we have Outline (bookmark) without page number.
                         }
                     }
-                    if (outlineItem == null) {
-                        // Create Outline (bookmark) without page number.
-                        outlineItem = createOutlineItem(title);
+                    if (outlineLine == null) {
+                        // Outline (bookmark) without page number.
+                        outlineLine = new OutlineLine(title, null);
                     }
-                    // Map lines to generated Outline (bookmark).
-                    linesToBookmarks.put(line, outlineItem);
-                    // Remember level of Outline (bookmark).
-                    shifts.add(shift);
-                    // Find parent position.
-                    int parentPosition = i - 1;
-                    while (parentPosition >= 0 && shifts.get(parentPosition) >= shift) {
-                        --parentPosition;
+                    // Find parent: remove Outlines (bookmarks) with the same or bigger level.
+                    while (!shifts.isEmpty() && shifts.peek() >= shift) {
+                        shifts.pop();
+                        parents.pop();
                     }
-                    if (parentPosition >= 0) {
-                        final String parentLine = lineList.get(parentPosition);
-                        final PDOutlineItem parentBookmark = linesToBookmarks.get(parentLine);
-                        parentBookmark.addLast(outlineItem);
+                    if (!parents.isEmpty()) {
+                        parents.peek().children.add(outlineLine);
                     } else {
-                        outlines.addLast(outlineItem);
+                        outlineLines.add(outlineLine);
                     }
+                    // Remember level of Outline (bookmark).
+                    shifts.push(shift);
+                    parents.push(outlineLine);
                 } else {
-                    shifts.add(Integer.MAX_VALUE);
                     // Ignore wrong Outline (bookmark) lines, but print error message into console.
                     System.err.println(String.format("Outline (bookmark) have a wrong format: '%s'!", line));
                 }
             }
         }
 
+        return outlineLines;
+    }
+
+    private static PDOutlineItem createOutlineItem(final OutlineLine outlineLine, final PDPageTree pages) {
+        if (outlineLine.pageNumber == null) {
+            return createOutlineItem(outlineLine.title);
+        } else {
+            return createOutlineItem(outlineLine.title, outlineLine.pageNumber, pages);
+        }
+    }
+
+    private static PDOutlineItem createOutlineTree(final OutlineLine outlineLine, final PDPageTree pages) {
+        final PDOutlineItem outlineItem = createOutlineItem(outlineLine, pages);
+        for (OutlineLine child : outlineLine.children) {
+            outlineItem.addLast(createOutlineTree(child, pages));
+        }
+        return outlineItem;
+    }
+
+    /**
+     * Convert list of lines to Outlines (bookmarks) object.
+     * 
+     * @param lineList
+     *            Source list of lines with Outlines (bookmarks) representation.
+     * @return Outlines (bookmarks) object.
+     */
+    public static PDDocumentOutline lineListToOutlines(final PDPageTree pages, final List<String> lineList) {
+        final PDDocumentOutline outlines = new PDDocumentOutline();
+
+        for (OutlineLine outlineLine : parseLineList(lineList)) {
+            outlines.addLast(createOutlineTree(outlineLine, pages));
+        }
+
         return outlines;
     }
+
+    /*
+     * State of the update: existing Outlines (bookmarks) that are reused for lines and changed objects.
+     */
+    private static class OutlinesDiff {
+
+        private final PDPageTree pages;
+
+        // Page numbers of existing Outlines (bookmarks).
+        private final Map<COSDictionary, Integer> pageNumbers = new IdentityHashMap<>();
+
+        // Existing Outlines (bookmarks) by title and page number in document order.
+        private final Map<String, Deque<PDOutlineItem>> items = new HashMap<>();
+
+        private final Map<OutlineLine, PDOutlineItem> matched = new IdentityHashMap<>();
+
+        private final Set<COSDictionary> used = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private final Set<COSDictionary> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        // Nodes with changed list of children: their Count should be recalculated.
+        private final Set<COSDictionary> restructured = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        OutlinesDiff(final PDPageTree pages) {
+            this.pages = pages;
+        }
+
+        void collect(final PDOutlineNode node, final Map<COSDictionary, Integer> pageIndex,
+                final PDDestinationNameTreeNode destinations) throws IOException {
+            for (PDOutlineItem outlineItem : node.children()) {
+                final Integer pageNumber = getOutlinePageNumber(outlineItem, pageIndex, destinations);
+                pageNumbers.put(outlineItem.getCOSObject(), pageNumber);
+
+                final String key = new OutlineLine(outlineItem.getTitle(), pageNumber).getKey();
+                items.computeIfAbsent(key, k -> new ArrayDeque<>()).add(outlineItem);
+
+                collect(outlineItem, pageIndex, destinations);
+            }
+        }
+
+        void use(final OutlineLine outlineLine, final PDOutlineItem outlineItem) {
+            matched.put(outlineLine, outlineItem);
+            used.add(outlineItem.getCOSObject());
+        }
+
+        // Keep Outlines (bookmarks) with the same title and page number (even if they are moved).
+        void matchByKey(final List<OutlineLine> outlineLines) {
+            for (OutlineLine outlineLine : outlineLines) {
+                final Deque<PDOutlineItem> sameItems = items.get(outlineLine.getKey());
+                if (sameItems != null && !sameItems.isEmpty()) {
+                    use(outlineLine, sameItems.poll());
+                }
+                matchByKey(outlineLine.children);
+            }
+        }
+
+        // Reuse Outlines (bookmarks) from the same place for changed lines (retitle or change of page).
+        void matchByPlace(final List<OutlineLine> outlineLines, final PDOutlineNode parent) {
+            PDOutlineItem previous = null;
+            for (OutlineLine outlineLine : outlineLines) {
+                PDOutlineItem outlineItem = matched.get(outlineLine);
+                if (outlineItem == null && parent != null) {
+                    final PDOutlineItem candidate = previous != null ? previous.getNextSibling()
+                            : parent.getFirstChild();
+                    if (candidate != null && !used.contains(candidate.getCOSObject())) {
+                        use(outlineLine, candidate);
+                        outlineItem = candidate;
+                    }
+                }
+                if (outlineItem != null) {
+                    previous = outlineItem;
+                }
+                matchByPlace(outlineLine.children, outlineItem);
+            }
+        }
+
+        PDOutlineItem getOutlineItem(final OutlineLine outlineLine) {
+            final PDOutlineItem outlineItem = matched.get(outlineLine);
+            if (outlineItem == null) {
+                final PDOutlineItem newItem = createOutlineItem(outlineLine, pages);
+                changed.add(newItem.getCOSObject());
+                return newItem;
+            }
+
+            final COSDictionary dictionary = outlineItem.getCOSObject();
+            if (!outlineLine.title.equals(outlineItem.getTitle())) {
+                outlineItem.setTitle(outlineLine.title);
+                changed.add(dictionary);
+            }
+            if (!Objects.equals(outlineLine.pageNumber, pageNumbers.get(dictionary))) {
+                dictionary.removeItem(COSName.A);
+                dictionary.removeItem(COSName.DEST);
+                if (outlineLine.pageNumber != null) {
+                    outlineItem.setDestination(createDestination(outlineLine.pageNumber, pages));
+                }
+                changed.add(dictionary);
+            }
+            return outlineItem;
+        }
+
+        void setReference(final COSDictionary dictionary, final COSName key, final COSDictionary value,
+                final COSDictionary node) {
+            if (dictionary.getDictionaryObject(key) != value) {
+                if (value == null) {
+                    dictionary.removeItem(key);
+                } else {
+                    dictionary.setItem(key, value);
+                }
+                changed.add(dictionary);
+                restructured.add(node);
+            }
+        }
+
+        void update(final PDOutlineNode node, final List<OutlineLine> outlineLines) throws IOException {
+            final List<PDOutlineItem> children = new ArrayList<>();
+            for (OutlineLine outlineLine : outlineLines) {
+                children.add(getOutlineItem(outlineLine));
+            }
+
+            // Link children.
+            final COSDictionary dictionary = node.getCOSObject();
+            setReference(dictionary, COSName.FIRST, children.isEmpty() ? null : children.get(0).getCOSObject(),
+                    dictionary);
+            setReference(dictionary, COSName.LAST,
+                    children.isEmpty() ? null : children.get(children.size() - 1).getCOSObject(), dictionary);
+            for (int i = 0; i < children.size(); ++i) {
+                final COSDictionary child = children.get(i).getCOSObject();
+                setReference(child, COSName.PARENT, dictionary, dictionary);
+                setReference(child, COSName.PREV, i > 0 ? children.get(i - 1).getCOSObject() : null, dictionary);
+                setReference(child, COSName.NEXT,
+                        i < children.size() - 1 ? children.get(i + 1).getCOSObject() : null, dictionary);
+            }
+
+            for (int i = 0; i < children.size(); ++i) {
+                update(children.get(i), outlineLines.get(i).children);
+            }
+        }
+
+        // Count of visible descendants depends on children only: recalculate it from the deepest changed nodes.
+        void updateCounts(final PDDocumentOutline outlines) {
+            final Map<COSDictionary, Integer> depths = new IdentityHashMap<>();
+            for (COSDictionary node : restructured) {
+                COSDictionary current = node;
+                while (current != null && !depths.containsKey(current)) {
+                    depths.put(current, 0);
+                    current = current == outlines.getCOSObject() ? null
+                            : (COSDictionary) current.getDictionaryObject(COSName.PARENT);
+                }
+            }
+            for (COSDictionary node : depths.keySet()) {
+                int depth = 0;
+                for (COSDictionary current = node; current != outlines.getCOSObject(); ++depth) {
+                    current = (COSDictionary) current.getDictionaryObject(COSName.PARENT);
+                }
+                depths.put(node, depth);
+            }
+
+            final List<COSDictionary> nodes = new ArrayList<>(depths.keySet());
+            nodes.sort((node1, node2) -> Integer.compare(depths.get(node2), depths.get(node1)));
+            for (COSDictionary node : nodes) {
+                int visible = 0;
+                for (COSDictionary child = (COSDictionary) node.getDictionaryObject(COSName.FIRST); child != null;
+                        child = (COSDictionary) child.getDictionaryObject(COSName.NEXT)) {
+                    final int childCount = child.getInt(COSName.COUNT, 0);
+                    visible += 1 + Math.max(childCount, 0);
+                }
+
+                final int count = node.getInt(COSName.COUNT, 0);
+                final boolean open = node == outlines.getCOSObject() || count > 0;
+                final int newCount = open ? visible : -visible;
+                if (count != newCount) {
+                    if (newCount == 0) {
+                        node.removeItem(COSName.COUNT);
+                    } else {
+                        node.setInt(COSName.COUNT, newCount);
+                    }
+                    changed.add(node);
+                }
+            }
+        }
+
+        // Only marked objects are written into incremental update.
+        void markChanged() {
+            for (COSDictionary dictionary : changed) {
+                dictionary.setNeedToBeUpdated(true);
+            }
+        }
+    }
+
+    /**
+     * Update existing Outlines (bookmarks) by list of lines. Only Outlines (bookmarks) that differ are changed:
+     * Outlines (bookmarks) with the same title and page number are kept (and moved if it is required), Outlines
+     * (bookmarks) on the same place are retitled or get new page, the rest are added or removed. Changed objects are
+     * marked for incremental update.
+     * 
+     * @param outlines
+     *            Existing Outlines (bookmarks) object.
+     * @param pages
+     *            Pages of PDF file.
+     * @param destinations
+     *            Named destinations of PDF file. Can be <code>null</code>.
+     * @param lineList
+     *            Source list of lines with Outlines (bookmarks) representation.
+     * @return number of changed objects; <code>0</code> if Outlines (bookmarks) already match the list of lines.
+     * @throws IOException
+     */
+    public static int updateOutlines(final PDDocumentOutline outlines, final PDPageTree pages,
+            final PDDestinationNameTreeNode destinations, final List<String> lineList) throws IOException {
+        final List<OutlineLine> outlineLines = parseLineList(lineList);
+
+        final OutlinesDiff diff = new OutlinesDiff(pages);
+        diff.collect(outlines, createPageIndex(pages), destinations);
+        diff.matchByKey(outlineLines);
+        diff.matchByPlace(outlineLines, outlines);
+
+        diff.update(outlines, outlineLines);
+        diff.updateCounts(outlines);
+        diff.markChanged();
+
+        return diff.changed.size();
+    }
 }
@@ -0,0 +1,497 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDestinationNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDComplexFileSpecification;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDNamedDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageXYZDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineNode;
+
+/**
+ * Generator of synthetic PDF files for scale and stress testing. The same settings (including seed) give the same PDF
+ * file byte by byte.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class PdfGenerator {
+
+    protected static final int MAX_OUTLINES = 1000000;
+
+    // Symbols that are replaced by TitleNormalizer are included.
+    protected static final String TITLE_ALPHABET = "abcdefghijklmnopqrstuvwxyz      .,-–'`‘’”“…";
+
+    protected static final String DESTINATION_TEMPLATE = "dest-%d";
+
+    protected static final String INFO_KEY_TEMPLATE = "Key%05d";
+
+    protected static final String ATTACHMENT_TEMPLATE = "attachment-%d.txt";
+
+    protected static final String PAGE_CONTENT = "BT /F1 24 Tf 72 720 Td (PdfMetaModifier) Tj ET";
+
+    protected static final Pattern SPEC_PATTERN = Pattern
+            .compile("(?<key>[a-z]+)=(?<size>\\d+)(?<unit>[KMG]?)", Pattern.CASE_INSENSITIVE);
+
+    private long seed = 0;
+
+    private int pages = 10;
+
+    private int outlineDepth = 2;
+
+    private int outlineBreadth = 5;
+
+    private int destinations = 0;
+
+    private int infoKeys = 0;
+
+    private int attachments = 0;
+
+    private long attachmentSize = 1024;
+
+    private MemoryUsageSetting memoryUsageSetting = MemoryUsageSetting.setupMainMemoryOnly();
+
+    private static int checkNotNegative(final long value, final String name) {
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Wrong %s: %d!", name, value));
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parse settings of generator.
+     * 
+     * Format is comma-separated list of <code>&lt;key&gt;=&lt;value&gt;[K|M|G]</code>, where key is <code>seed</code>,
+     * <code>pages</code>, <code>depth</code>, <code>breadth</code>, <code>destinations</code>, <code>info</code>,
+     * <code>attachments</code> or <code>size</code> (size of every attachment). Keys that are not specified keep
+     * default values.
+     * 
+     * @param spec
+     *            Settings in text format, for example <code>pages=100K,depth=3,breadth=20,attachments=2,size=1M</code>.
+     * @return configured generator.
+     */
+    public static PdfGenerator parse(final String spec) {
+        final PdfGenerator generator = new PdfGenerator();
+        for (String entry : spec.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+
+            final Matcher matcher = SPEC_PATTERN.matcher(entry.trim());
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException(
+                        String.format("Generator setting have a wrong format: '%s'!", entry));
+            }
+
+            final long value = IOHelper.parseSize(matcher.group("size"), matcher.group("unit"));
+            final String key = matcher.group("key").toLowerCase(Locale.ROOT);
+            switch (key) {
+            case "seed":
+                generator.setSeed(value);
+                break;
+            case "pages":
+                generator.setPages(checkNotNegative(value, key));
+                break;
+            case "depth":
+                generator.setOutlineDepth(checkNotNegative(value, key));
+                break;
+            case "breadth":
+                generator.setOutlineBreadth(checkNotNegative(value, key));
+                break;
+            case "destinations":
+                generator.setDestinations(checkNotNegative(value, key));
+                break;
+            case "info":
+                generator.setInfoKeys(checkNotNegative(value, key));
+                break;
+            case "attachments":
+                generator.setAttachments(checkNotNegative(value, key));
+                break;
+            case "size":
+                generator.setAttachmentSize(value);
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Unknown generator setting: '%s'!", key));
+            }
+        }
+        return generator;
+    }
+
+    /**
+     * @param seed
+     *            Seed of random numbers.
+     * @return this generator.
+     */
+    public PdfGenerator setSeed(final long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param pages
+     *            Number of pages, should be positive.
+     * @return this generator.
+     */
+    public PdfGenerator setPages(final int pages) {
+        if (pages < 1) {
+            throw new IllegalArgumentException(String.format("Number of pages should be positive: %d!", pages));
+        }
+        this.pages = pages;
+        return this;
+    }
+
+    /**
+     * @param outlineDepth
+     *            Number of levels of Outlines (bookmarks); <code>0</code> for PDF file without Outlines (bookmarks).
+     * @return this generator.
+     */
+    public PdfGenerator setOutlineDepth(final int outlineDepth) {
+        this.outlineDepth = checkNotNegative(outlineDepth, "depth of Outlines (bookmarks)");
+        return this;
+    }
+
+    /**
+     * @param outlineBreadth
+     *            Number of children of every Outline (bookmark) except the last level.
+     * @return this generator.
+     */
+    public PdfGenerator setOutlineBreadth(final int outlineBreadth) {
+        this.outlineBreadth = checkNotNegative(outlineBreadth, "breadth of Outlines (bookmarks)");
+        return this;
+    }
+
+    /**
+     * @param destinations
+     *            Number of named destinations. Outlines (bookmarks) refer to them in turn with direct page
+     *            destinations.
+     * @return this generator.
+     */
+    public PdfGenerator setDestinations(final int destinations) {
+        this.destinations = checkNotNegative(destinations, "number of named destinations");
+        return this;
+    }
+
+    /**
+     * @param infoKeys
+     *            Number of custom Metadata keys in addition to standard ones.
+     * @return this generator.
+     */
+    public PdfGenerator setInfoKeys(final int infoKeys) {
+        this.infoKeys = checkNotNegative(infoKeys, "number of Metadata keys");
+        return this;
+    }
+
+    /**
+     * @param attachments
+     *            Number of Embedded (attached) files.
+     * @return this generator.
+     */
+    public PdfGenerator setAttachments(final int attachments) {
+        this.attachments = checkNotNegative(attachments, "number of Embedded (attached) files");
+        return this;
+    }
+
+    /**
+     * @param attachmentSize
+     *            Size of every Embedded (attached) file in bytes.
+     * @return this generator.
+     */
+    public PdfGenerator setAttachmentSize(final long attachmentSize) {
+        if (attachmentSize < 0) {
+            throw new IllegalArgumentException(
+                    String.format("Size of Embedded (attached) file should not be negative: %d!", attachmentSize));
+        }
+        this.attachmentSize = attachmentSize;
+        return this;
+    }
+
+    /**
+     * Set where generated PDF document is kept. By default main memory is used without restrictions.
+     * 
+     * @param memoryUsageSetting
+     *            Memory usage setting, see {@link IOHelper#parseMemoryUsageSetting(String)}.
+     * @return this generator.
+     */
+    public PdfGenerator setMemoryUsageSetting(final MemoryUsageSetting memoryUsageSetting) {
+        this.memoryUsageSetting = memoryUsageSetting;
+        return this;
+    }
+
+    /**
+     * @return number of Outlines (bookmarks) that will be generated.
+     */
+    public long getOutlines() {
+        long outlines = 0;
+        long levelOutlines = 1;
+        for (int level = 0; level < outlineDepth && outlineBreadth > 0; ++level) {
+            levelOutlines *= outlineBreadth;
+            outlines += levelOutlines;
+            if (outlines > MAX_OUTLINES) {
+                break;
+            }
+        }
+        return outlines;
+    }
+
+    /**
+     * Create random title.
+     * 
+     * @param random
+     *            Source of random numbers.
+     * @return title.
+     */
+    public static String createTitle(final Random random) {
+        final StringBuilder title = new StringBuilder("Chapter ");
+        final int length = 8 + random.nextInt(40);
+        for (int i = 0; i < length; ++i) {
+            title.append(TITLE_ALPHABET.charAt(random.nextInt(TITLE_ALPHABET.length())));
+        }
+        return title.toString().trim();
+    }
+
+    private static List<PDPage> addPages(final PDDocument document, final int pages) throws IOException {
+        // Font is shared by all pages. Standard font does not require font files, so it is created without PDFBox
+        // font classes: they look for system fonts on the first use.
+        final COSDictionary font = new COSDictionary();
+        font.setItem(COSName.TYPE, COSName.FONT);
+        font.setItem(COSName.SUBTYPE, COSName.TYPE1);
+        font.setName(COSName.BASE_FONT, "Helvetica");
+        final COSDictionary fonts = new COSDictionary();
+        fonts.setItem(COSName.getPDFName("F1"), font);
+        final PDResources resources = new PDResources();
+        resources.getCOSObject().setItem(COSName.FONT, fonts);
+
+        // Content is shared by all pages too: every stream keeps a page of scratch buffer in main memory, so separate
+        // streams do not allow to generate 100K pages.
+        final PDStream content = new PDStream(document);
+        try (OutputStream output = content.createOutputStream(COSName.FLATE_DECODE)) {
+            output.write(PAGE_CONTENT.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        final List<PDPage> pageList = new ArrayList<>(pages);
+        for (int i = 0; i < pages; ++i) {
+            final PDPage page = new PDPage();
+            page.setResources(resources);
+            page.setContents(content);
+            document.addPage(page);
+            pageList.add(page);
+        }
+        return pageList;
+    }
+
+    private static PDPageDestination createDestination(final PDPage page) {
+        final PDPageXYZDestination destination = new PDPageXYZDestination();
+        destination.setPage(page);
+        return destination;
+    }
+
+    private int addOutlines(final PDOutlineNode parent, final String number, final int level, int index,
+            final long outlines, final Random random, final List<PDPage> pageList) {
+        for (int i = 1; i <= outlineBreadth; ++i) {
+            final String itemNumber = number.isEmpty() ? Integer.toString(i) : number + "." + i;
+
+            final PDOutlineItem outlineItem = new PDOutlineItem();
+            outlineItem.setTitle(itemNumber + " " + createTitle(random));
+            if (destinations > 0 && index % 2 == 1) {
+                outlineItem.setDestination(
+                        new PDNamedDestination(String.format(DESTINATION_TEMPLATE, index / 2 % destinations)));
+            } else {
+                // Pages are increased from the first Outline (bookmark) to the last one.
+                outlineItem.setDestination(
+                        createDestination(pageList.get((int) ((long) index * pageList.size() / outlines))));
+            }
+            outlineItem.closeNode();
+            parent.addLast(outlineItem);
+            ++index;
+
+            if (level + 1 < outlineDepth) {
+                index = addOutlines(outlineItem, itemNumber, level + 1, index, outlines, random, pageList);
+            }
+        }
+        return index;
+    }
+
+    private static Calendar createDate(final Random random) {
+        // Dates are in 2000-2019 years.
+        final Calendar date = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.ROOT);
+        date.clear();
+        date.set(2000, Calendar.JANUARY, 1);
+        date.add(Calendar.SECOND, random.nextInt(20 * 365 * 24 * 60 * 60));
+        return date;
+    }
+
+    /*
+     * Content of Embedded (attached) file is a random text, so it is not kept in memory and can be compressed.
+     */
+    private static InputStream createContent(final Random random, final long size) {
+        return new InputStream() {
+
+            private long remaining = size;
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                --remaining;
+                return TITLE_ALPHABET.charAt(random.nextInt(26 + 6));
+            }
+
+            @Override
+            public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                final int count = (int) Math.min(length, remaining);
+                for (int i = 0; i < count; ++i) {
+                    buffer[offset + i] = (byte) TITLE_ALPHABET.charAt(random.nextInt(26 + 6));
+                }
+                remaining -= count;
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Create PDF document.
+     * 
+     * @return new PDF document that should be closed by caller.
+     * @throws IOException
+     */
+    public PDDocument create() throws IOException {
+        final long outlines = getOutlines();
+        if (outlines > MAX_OUTLINES) {
+            throw new IllegalArgumentException(String.format("Too many Outlines (bookmarks): more than %d!",
+                    MAX_OUTLINES));
+        }
+
+        final Random random = new Random(seed);
+        final PDDocument document = new PDDocument(memoryUsageSetting);
+        try {
+            // ID of the document is calculated from this value.
+            document.setDocumentId(seed);
+
+            // Pages.
+            final List<PDPage> pageList = addPages(document, pages);
+
+            // Named destinations are spread over all pages.
+            final PDDocumentNameDictionary namesDictionary = new PDDocumentNameDictionary(
+                    document.getDocumentCatalog());
+            if (destinations > 0) {
+                final Map<String, PDPageDestination> destinationMap = new LinkedHashMap<>();
+                for (int i = 0; i < destinations; ++i) {
+                    destinationMap.put(String.format(DESTINATION_TEMPLATE, i),
+                            createDestination(pageList.get((int) ((long) i * pages / destinations))));
+                }
+                final PDDestinationNameTreeNode destinationTree = new PDDestinationNameTreeNode();
+                destinationTree.setNames(destinationMap);
+                namesDictionary.setDests(destinationTree);
+            }
+
+            // Outlines (bookmarks).
+            if (outlines > 0) {
+                final PDDocumentOutline documentOutline = new PDDocumentOutline();
+                addOutlines(documentOutline, "", 0, 0, outlines, random, pageList);
+                document.getDocumentCatalog().setDocumentOutline(documentOutline);
+            }
+
+            // Metadata.
+            final PDDocumentInformation info = document.getDocumentInformation();
+            info.setTitle(createTitle(random));
+            info.setAuthor("PdfMetaModifier");
+            info.setSubject(createTitle(random));
+            info.setKeywords(createTitle(random));
+            info.setCreator(PdfGenerator.class.getName());
+            info.setProducer(PdfGenerator.class.getName());
+            info.setCreationDate(createDate(random));
+            info.setModificationDate(createDate(random));
+            for (int i = 0; i < infoKeys; ++i) {
+                info.setCustomMetadataValue(String.format(INFO_KEY_TEMPLATE, i), createTitle(random));
+            }
+
+            // Embedded (attached) files: balanced tree, as they are added by IOHelper.
+            if (attachments > 0) {
+                final PDEmbeddedFilesNameTreeNode root = new PDEmbeddedFilesNameTreeNode();
+                for (int i = 0; i < attachments; ++i) {
+                    final String filename = String.format(ATTACHMENT_TEMPLATE, i);
+
+                    final PDComplexFileSpecification complexFileSpecification = new PDComplexFileSpecification();
+                    complexFileSpecification.setFile(filename);
+                    complexFileSpecification.setEmbeddedFile(
+                            IOHelper.createEmbeddedFile(document, createContent(random, attachmentSize), true));
+
+                    NameTreeHelper.add(root.getCOSObject(), new COSString(filename),
+                            complexFileSpecification.getCOSObject());
+                }
+                namesDictionary.setEmbeddedFiles(root);
+            }
+
+            if (destinations > 0 || attachments > 0) {
+                document.getDocumentCatalog().setNames(namesDictionary);
+            }
+
+            return document;
+        } catch (IOException | RuntimeException e) {
+            document.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Generate PDF file.
+     * 
+     * @param pdfFile
+     *            Target PDF file.
+     * @throws IOException
+     */
+    public void generate(final File pdfFile) throws IOException {
+        try (PDDocument document = create()) {
+            document.save(pdfFile);
+        }
+    }
+}
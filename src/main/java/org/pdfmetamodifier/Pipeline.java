@@ -0,0 +1,727 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSUpdateInfo;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdfwriter.COSWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * Sequence of {@link Operation}s that are executed over single loaded PDF document.
+ * 
+ * PDF file is parsed only once and saved only once (if at least one operation modify it), regardless of how many
+ * operations were added.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class Pipeline {
+
+    protected static final String OPERATION = "operation";
+
+    /**
+     * Name of save all Attached (embedded) files operation; number of written bytes of it is a size of saved files.
+     */
+    public static final String SAVE_ATTACHMENTS = "saveAttachments";
+
+    private final List<Step> steps = new ArrayList<>();
+
+    private boolean incremental = false;
+
+    private MemoryUsageSetting memoryUsageSetting = MemoryUsageSetting.setupMainMemoryOnly();
+
+    private MetricsListener metricsListener = null;
+
+    private BooleanSupplier cancellation = () -> false;
+
+    /*
+     * Operation with name and number of read and written bytes (they are requested after execution of operation).
+     */
+    private static class Step {
+
+        private final String name;
+
+        private final Operation operation;
+
+        private final LongSupplier bytesRead;
+
+        private final LongSupplier bytesWritten;
+
+        // Operation reads Metadata only.
+        private final boolean metadataOnly;
+
+        // Changes of the operation can not be saved as incremental update.
+        private final boolean rewrite;
+
+        Step(final String name, final Operation operation, final LongSupplier bytesRead,
+                final LongSupplier bytesWritten, final boolean metadataOnly, final boolean rewrite) {
+            this.name = name;
+            this.operation = operation;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.metadataOnly = metadataOnly;
+            this.rewrite = rewrite;
+        }
+    }
+
+    /**
+     * Add operation to the end of pipeline.
+     * 
+     * @param name
+     *            Name of the operation for {@link MetricsListener}.
+     * @param operation
+     *            Operation over PDF document.
+     * @param bytesRead
+     *            Number of bytes that were read by the operation (requested after execution).
+     * @param bytesWritten
+     *            Number of bytes that were written by the operation (requested after execution).
+     * @return this pipeline.
+     */
+    protected Pipeline add(final String name, final Operation operation, final LongSupplier bytesRead,
+            final LongSupplier bytesWritten) {
+        steps.add(new Step(name, operation, bytesRead, bytesWritten, false, false));
+        return this;
+    }
+
+    /**
+     * Add operation to the end of pipeline.
+     * 
+     * @param name
+     *            Name of the operation for {@link MetricsListener}.
+     * @param operation
+     *            Operation over PDF document.
+     * @return this pipeline.
+     */
+    public Pipeline add(final String name, final Operation operation) {
+        return add(name, operation, () -> 0, () -> 0);
+    }
+
+    /**
+     * Add operation to the end of pipeline.
+     * 
+     * @param operation
+     *            Operation over PDF document.
+     * @return this pipeline.
+     */
+    public Pipeline add(final Operation operation) {
+        return add(OPERATION, operation);
+    }
+
+    /**
+     * Add save Outlines (bookmarks) operation.
+     * 
+     * @param outlinesFile
+     *            File with Outlines (bookmarks) in user-frendly format.
+     * @return this pipeline.
+     */
+    public Pipeline saveOutlines(final File outlinesFile) {
+        return add("saveOutlines", document -> {
+            IOHelper.saveOutlines(document, outlinesFile);
+            return false;
+        }, () -> 0, outlinesFile::length);
+    }
+
+    /**
+     * Add update Outlines (bookmarks) operation.
+     * 
+     * @param outlinesFile
+     *            File with Outlines (bookmarks) in user-frendly format.
+     * @return this pipeline.
+     */
+    public Pipeline updateOutlines(final File outlinesFile) {
+        return add("updateOutlines", document -> IOHelper.updateOutlines(document, outlinesFile),
+                outlinesFile::length, () -> 0);
+    }
+
+    /**
+     * Add save Metadata operation.
+     * 
+     * @param metadataFile
+     *            File with Metadata in user-frendly format.
+     * @return this pipeline.
+     */
+    public Pipeline saveMetadata(final File metadataFile) {
+        steps.add(new Step("saveMetadata", document -> {
+            IOHelper.saveMetadata(document, metadataFile);
+            return false;
+        }, () -> 0, metadataFile::length, true, false));
+        return this;
+    }
+
+    /**
+     * Add update Metadata operation.
+     * 
+     * @param metadataFile
+     *            File with Metadata in user-frendly format.
+     * @return this pipeline.
+     */
+    public Pipeline updateMetadata(final File metadataFile) {
+        return add("updateMetadata", document -> IOHelper.updateMetadata(document, metadataFile),
+                metadataFile::length, () -> 0);
+    }
+
+    /**
+     * Add save XMP Metadata operation.
+     * 
+     * @param xmpFile
+     *            File with XMP packet.
+     * @return this pipeline.
+     */
+    public Pipeline saveXmp(final File xmpFile) {
+        steps.add(new Step("saveXmp", document -> {
+            IOHelper.saveXmp(document, xmpFile);
+            return false;
+        }, () -> 0, xmpFile::length, true, false));
+        return this;
+    }
+
+    /**
+     * Add update XMP Metadata operation. Metadata (Document Information) is updated too.
+     * 
+     * @param xmpFile
+     *            File with XMP packet.
+     * @return this pipeline.
+     */
+    public Pipeline updateXmp(final File xmpFile) {
+        return add("updateXmp", document -> IOHelper.updateXmp(document, xmpFile), xmpFile::length, () -> 0);
+    }
+
+    /**
+     * Add save all Attached (embedded) files operation.
+     * 
+     * @param outputDir
+     *            Target directory.
+     * @return this pipeline.
+     */
+    public Pipeline saveAttachments(final File outputDir) {
+        return saveAttachments(outputDir, 1);
+    }
+
+    /**
+     * Add save Attached (embedded) files operation.
+     * 
+     * @param outputDir
+     *            Target directory.
+     * @param threads
+     *            Maximum number of threads that decode and write files.
+     * @return this pipeline.
+     */
+    public Pipeline saveAttachments(final File outputDir, final int threads) {
+        final AtomicLong size = new AtomicLong();
+        return add(SAVE_ATTACHMENTS, document -> {
+            size.set(IOHelper.saveAttachments(document, outputDir, threads));
+            return false;
+        }, () -> 0, size::get);
+    }
+
+    /**
+     * Add remove all Attached (embedded) files operation.
+     * 
+     * @return this pipeline.
+     */
+    public Pipeline removeAttachments() {
+        return removeAttachments(Collections.singletonList("*"));
+    }
+
+    /**
+     * Add remove Attached (embedded) files operation. PDF file is rewritten as a whole even if incremental update is
+     * set, so content of removed files is not kept in PDF file.
+     * 
+     * @param globs
+     *            Names or globs of Attached (embedded) files.
+     * @return this pipeline.
+     */
+    public Pipeline removeAttachments(final List<String> globs) {
+        final List<String> patterns = Collections.unmodifiableList(new ArrayList<>(globs));
+        steps.add(new Step("removeAttachments", document -> IOHelper.removeAttachments(document, patterns), () -> 0,
+                () -> 0, false, true));
+        return this;
+    }
+
+    /**
+     * Add new Attached (embedded) files operation.
+     * 
+     * @param attachmentFiles
+     *            Files that will be attached (embedded).
+     * @return this pipeline.
+     */
+    public Pipeline addAttachments(final List<File> attachmentFiles) {
+        return addAttachments(attachmentFiles, IOHelper.Compression.AUTO);
+    }
+
+    /**
+     * Add new Attached (embedded) files operation.
+     * 
+     * @param attachmentFiles
+     *            Files that will be attached (embedded).
+     * @param compression
+     *            Compression of attached (embedded) files.
+     * @return this pipeline.
+     */
+    public Pipeline addAttachments(final List<File> attachmentFiles, final IOHelper.Compression compression) {
+        final List<File> files = Collections.unmodifiableList(new ArrayList<>(attachmentFiles));
+        return add("addAttachments", document -> {
+            IOHelper.addAttachments(document, files, compression);
+            return true;
+        }, () -> files.stream().mapToLong(File::length).sum(), () -> 0);
+    }
+
+    /**
+     * Save modifications as incremental update: changed objects are appended to the end of original PDF file instead
+     * of rewriting the whole file, so original content is kept byte for byte and PDFBox does not serialize unchanged
+     * objects. Original content is neither read nor copied, so cost of the save depends only on the size of the update;
+     * if the update can not be written, PDF file is truncated back. Operations that remove content (see
+     * {@link #removeAttachments(List)}) rewrite the whole file anyway.
+     * 
+     * @param incremental
+     *            <code>true</code> to append incremental update, <code>false</code> to rewrite whole PDF file.
+     * @return this pipeline.
+     */
+    public Pipeline setIncremental(final boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    /**
+     * Set where parsed PDF document is kept. By default main memory is used without restrictions.
+     * 
+     * @param memoryUsageSetting
+     *            Memory usage setting, see {@link IOHelper#parseMemoryUsageSetting(String)}.
+     * @return this pipeline.
+     */
+    public Pipeline setMemoryUsageSetting(final MemoryUsageSetting memoryUsageSetting) {
+        this.memoryUsageSetting = memoryUsageSetting;
+        return this;
+    }
+
+    /**
+     * Set listener of time, read and written bytes and allocated heap of every phase of execution. By default metrics
+     * are not measured.
+     * 
+     * @param metricsListener
+     *            Listener of metrics, for example {@link Stats}. Can be <code>null</code>.
+     * @return this pipeline.
+     */
+    public Pipeline setMetricsListener(final MetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    /**
+     * Set check of cancellation. It is called before PDF file is loaded, after every operation and before PDF file is
+     * saved (but not during saving), so cancelled execution never leaves partially written PDF file.
+     * 
+     * @param cancellation
+     *            Returns <code>true</code> if execution should be stopped.
+     * @return this pipeline.
+     */
+    public Pipeline setCancellation(final BooleanSupplier cancellation) {
+        this.cancellation = cancellation;
+        return this;
+    }
+
+    private void checkCancellation(final File pdfFile) {
+        if (cancellation.getAsBoolean()) {
+            throw new CancellationException(String.format("Processing of PDF file is cancelled: %s!", pdfFile));
+        }
+    }
+
+    /**
+     * @return <code>true</code> if pipeline have no operations.
+     */
+    public boolean isEmpty() {
+        return steps.isEmpty();
+    }
+
+    /**
+     * @return <code>true</code> if all operations read Metadata only, so the rest of PDF file is not parsed.
+     */
+    public boolean isMetadataOnly() {
+        return !steps.isEmpty() && steps.stream().allMatch(step -> step.metadataOnly);
+    }
+
+    /**
+     * Load PDF file, execute all operations in order of addition and save PDF file if it was modified. PDF file is not
+     * loaded if pipeline has no operations.
+     * 
+     * @param pdfFile
+     *            Source PDF file.
+     * @return <code>true</code> if PDF file was modified.
+     * @throws IOException
+     * @throws CancellationException
+     *             If execution was cancelled (see {@link #setCancellation(BooleanSupplier)}).
+     */
+    public boolean execute(final File pdfFile) throws IOException {
+        boolean modified = false;
+        boolean rewrite = false;
+
+        // Nothing to do: PDF file is not even loaded.
+        if (steps.isEmpty()) {
+            checkCancellation(pdfFile);
+            return false;
+        }
+
+        final Recorder recorder = new Recorder(pdfFile, metricsListener);
+        PDDocument document = null;
+        try {
+            checkCancellation(pdfFile);
+
+            // Read PDF file: only Metadata if nothing else is required.
+            document = isMetadataOnly() ? MetadataReader.load(pdfFile) : IOHelper.load(pdfFile, memoryUsageSetting);
+            recorder.phase(Stats.LOAD, pdfFile.length(), 0);
+
+            // Execute operations.
+            for (Step step : steps) {
+                final boolean changed = step.operation.execute(document);
+                modified |= changed;
+                rewrite |= changed && step.rewrite;
+                if (recorder.isEnabled()) {
+                    recorder.phase(step.name, step.bytesRead.getAsLong(), step.bytesWritten.getAsLong());
+                }
+                checkCancellation(pdfFile);
+            }
+
+            if (modified) {
+                if (incremental && !rewrite) {
+                    append(document, pdfFile, recorder);
+                } else {
+                    replace(document, pdfFile, recorder);
+                }
+            }
+        } finally {
+            if (document != null) {
+                document.close();
+            }
+        }
+
+        return modified;
+    }
+
+    /*
+     * Temporary file is unique and created in the same directory as the target, so several documents can be saved
+     * concurrently and the target is replaced by atomic rename (without copying between file systems).
+     */
+    private static void replace(final PDDocument document, final File pdfFile, final Recorder recorder)
+            throws IOException {
+        final Path pdfPath = pdfFile.getAbsoluteFile().toPath();
+
+        // Create temporary PDF file for result.
+        final Path tempPath = Files.createTempFile(pdfPath.getParent(), "." + pdfPath.getFileName(), ".tmp");
+        try {
+            // Keep permissions of original PDF file.
+            try {
+                Files.setPosixFilePermissions(tempPath, Files.getPosixFilePermissions(pdfPath));
+            } catch (UnsupportedOperationException e) {
+                // Ignore: file system does not support POSIX permissions.
+            }
+
+            // Save result to temporary PDF file.
+            document.save(tempPath.toFile());
+            document.close();
+            recorder.phase(Stats.SAVE, 0, Files.size(tempPath));
+
+            // Replace original PDF file.
+            try {
+                Files.move(tempPath, pdfPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, pdfPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            recorder.phase(Stats.MOVE, 0, 0);
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
+
+    /*
+     * Only objects that are new or marked as updated are written into incremental update. Document Information is
+     * referenced from trailer, which is always written; Outlines (bookmarks) and Names are referenced from catalog.
+     * Marked objects deep inside of the trees are written by IncrementalWriter.
+     *
+     * Incremental update is appended in place, so cost of the save depends only on the size of the update: original
+     * content is neither read nor copied. The update is flushed to the disk; if it can not be written, PDF file is
+     * truncated back to the original length. Original bytes are never changed, so if the process is killed or the
+     * system crashes during the write, PDF file can only end with incomplete update after the original content.
+     */
+    private static void append(final PDDocument document, final File pdfFile, final Recorder recorder)
+            throws IOException {
+        document.getDocumentCatalog().getCOSObject().setNeedToBeUpdated(true);
+
+        try (FileChannel channel = FileChannel.open(pdfFile.toPath(), StandardOpenOption.WRITE)) {
+            final long originalSize = channel.size();
+            try {
+                channel.position(originalSize);
+                final OutputStream output = new IncrementOutputStream(Channels.newOutputStream(channel));
+                final COSWriter writer = new IncrementalWriter(output, new OriginalContent(originalSize));
+                writer.write(document);
+                writer.close();
+                channel.force(true);
+                recorder.phase(Stats.SAVE, 0, channel.size() - originalSize);
+            } catch (IOException | RuntimeException e) {
+                // Restore original PDF file.
+                channel.truncate(originalSize);
+                channel.force(true);
+                throw e;
+            }
+        }
+    }
+
+    /*
+     * Measure phases one after another: every phase is started when the previous one is completed.
+     */
+    private static class Recorder {
+
+        private final File pdfFile;
+
+        private final MetricsListener metricsListener;
+
+        private long startNanos;
+
+        private long startAllocatedBytes;
+
+        Recorder(final File pdfFile, final MetricsListener metricsListener) {
+            this.pdfFile = pdfFile;
+            this.metricsListener = metricsListener;
+            start();
+        }
+
+        private void start() {
+            if (metricsListener != null) {
+                startAllocatedBytes = Stats.getAllocatedBytes();
+                startNanos = System.nanoTime();
+            }
+        }
+
+        boolean isEnabled() {
+            return metricsListener != null;
+        }
+
+        void phase(final String name, final long bytesRead, final long bytesWritten) {
+            if (metricsListener != null) {
+                final long nanos = System.nanoTime() - startNanos;
+                final long allocatedBytes = Stats.getAllocatedBytes();
+                metricsListener.phaseCompleted(pdfFile, new Stats.Phase(name, nanos, bytesRead, bytesWritten,
+                        startAllocatedBytes == Stats.UNKNOWN ? Stats.UNKNOWN : allocatedBytes - startAllocatedBytes));
+                start();
+            }
+        }
+    }
+
+    /*
+     * PDFBox writes marked object only if it is referenced from another written object, so changed Outline (bookmark)
+     * in the middle of the tree requires marking of all siblings before it. This writer also writes all marked objects
+     * of the document and new objects that are referenced from them, so size of incremental update depends only on
+     * number of changed objects.
+     */
+    private static class IncrementalWriter extends COSWriter {
+
+        private final Set<COSBase> writtenObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        IncrementalWriter(final OutputStream output, final RandomAccessRead source) throws IOException {
+            super(output, source);
+        }
+
+        private static COSBase getActual(final COSBase object) {
+            return object instanceof COSObject ? ((COSObject) object).getObject() : object;
+        }
+
+        @Override
+        public void doWriteObject(final COSBase object) throws IOException {
+            writtenObjects.add(getActual(object));
+            super.doWriteObject(object);
+        }
+
+        // Add referenced objects that are not in the file yet (direct objects are written inside of the container).
+        private static void addNewObjects(final COSBase container, final Set<COSBase> existingObjects,
+                final Deque<COSBase> objects) {
+            final Iterable<COSBase> items;
+            if (container instanceof COSDictionary) {
+                items = ((COSDictionary) container).getValues();
+            } else if (container instanceof COSArray) {
+                items = (COSArray) container;
+            } else {
+                return;
+            }
+
+            for (COSBase item : items) {
+                if (item instanceof COSObject || item instanceof COSDictionary && !item.isDirect()) {
+                    final COSBase actual = getActual(item);
+                    if (actual != null && !existingObjects.contains(actual)) {
+                        objects.add(actual);
+                    }
+                } else {
+                    addNewObjects(item, existingObjects, objects);
+                }
+            }
+        }
+
+        @Override
+        protected void doWriteBody(final COSDocument document) throws IOException {
+            super.doWriteBody(document);
+
+            // Marked objects that are not referenced from written objects.
+            final Set<COSBase> existingObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+            final Deque<COSBase> objects = new ArrayDeque<>();
+            for (COSObject object : document.getObjects()) {
+                final COSBase actual = object.getObject();
+                existingObjects.add(actual);
+                if (actual instanceof COSUpdateInfo && ((COSUpdateInfo) actual).isNeedToBeUpdated()) {
+                    objects.add(actual);
+                }
+            }
+
+            while (!objects.isEmpty()) {
+                final COSBase object = objects.poll();
+                if (!writtenObjects.contains(object)) {
+                    doWriteObject(object);
+                    addNewObjects(object, existingObjects, objects);
+                }
+            }
+        }
+    }
+
+    /*
+     * PDFBox copies the whole original PDF file before the incremental update section and uses its length for offsets
+     * of the update. Original content is already in the file, so only the length is provided: the content is empty.
+     */
+    private static class OriginalContent implements RandomAccessRead {
+
+        private final long length;
+
+        private boolean closed = false;
+
+        OriginalContent(final long length) {
+            this.length = length;
+        }
+
+        @Override
+        public int read() {
+            return -1;
+        }
+
+        @Override
+        public int read(final byte[] b) {
+            return -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            return -1;
+        }
+
+        @Override
+        public long getPosition() {
+            return length;
+        }
+
+        @Override
+        public void seek(final long position) {
+            // Content is not read.
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public int peek() {
+            return -1;
+        }
+
+        @Override
+        public void rewind(final int bytes) {
+            // Content is not read.
+        }
+
+        @Override
+        public byte[] readFully(final int len) throws IOException {
+            throw new IOException("Original content is not read!");
+        }
+
+        @Override
+        public boolean isEOF() {
+            return true;
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /*
+     * Incremental update section is written to the end of PDF file; the channel is closed by the owner.
+     */
+    private static class IncrementOutputStream extends FilterOutputStream {
+
+        IncrementOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Do not close the channel: it is closed by the owner.
+            flush();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Server that keeps JVM warm and executes the same actions as {@link CLI} for local clients.
+ * 
+ * <p>
+ * Server listens only on the loopback interface. Client sends UTF-8 lines: token of the server first; if the token is
+ * right, server answers {@link #ACCEPTED} line and client sends working directory, number of arguments and arguments
+ * (one per line, escaped by {@link #escape(String)}, so they can contain line breaks). Output of execution is sent
+ * back, the last line is exit status (see {@link CLI#EXIT_SUCCESS}), and
+ * connection is closed. Client that does not get {@link #ACCEPTED} line (wrong token, or port of stopped server is used
+ * by another process) can execute actions by itself. Port and token of the server are written to the file that is
+ * readable only by the owner, so other users can not execute actions on behalf of the server.
+ * </p>
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class Server implements Closeable {
+
+    /**
+     * File with port and token of running server.
+     */
+    public static final File DEFAULT_INFO_FILE = new File(System.getProperty("user.home"), ".pmm_server");
+
+    protected static final String INFO_TEMPLATE = "%d %s";
+
+    /**
+     * Answer of the server to the right token.
+     */
+    public static final String ACCEPTED = "Accepted";
+
+    protected static final int TOKEN_SIZE = 16;
+
+    protected static final int MAX_ARGUMENTS = 1024;
+
+    // Time to receive request from client (milliseconds).
+    protected static final int REQUEST_TIMEOUT = 30 * 1000;
+
+    private final ServerSocket serverSocket;
+
+    private final String token;
+
+    private final ExecutorService executor;
+
+    private File infoFile;
+
+    /**
+     * @param port
+     *            Port of the server; <code>0</code> for any free port.
+     * @param threads
+     *            Number of requests that are executed at the same time.
+     * @throws IOException
+     */
+    public Server(final int port, final int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException(String.format("Number of threads should be positive: %d!", threads));
+        }
+
+        final byte[] tokenBytes = new byte[TOKEN_SIZE];
+        new SecureRandom().nextBytes(tokenBytes);
+        final StringBuilder tokenBuilder = new StringBuilder();
+        for (byte b : tokenBytes) {
+            tokenBuilder.append(String.format("%02x", b));
+        }
+        this.token = tokenBuilder.toString();
+
+        this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        this.executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * @return port of the server.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return token that client should send with every request.
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Write port and token of the server to the file that is readable only by the owner. The file is removed when
+     * server is closed.
+     * 
+     * @param infoFile
+     *            Target file.
+     * @throws IOException
+     */
+    public void writeInfo(final File infoFile) throws IOException {
+        Files.deleteIfExists(infoFile.toPath());
+        try {
+            Files.createFile(infoFile.toPath(),
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // Not POSIX file system.
+            Files.createFile(infoFile.toPath());
+            infoFile.setReadable(false, false);
+            infoFile.setReadable(true, true);
+        }
+        Files.write(infoFile.toPath(), Collections.singletonList(String.format(INFO_TEMPLATE, getPort(), token)),
+                StandardCharsets.UTF_8, StandardOpenOption.TRUNCATE_EXISTING);
+
+        this.infoFile = infoFile;
+    }
+
+    /**
+     * Escape value of request line: backslash, line feed and carriage return are replaced by "\\", "\n" and "\r".
+     * 
+     * @param value
+     *            Argument or working directory.
+     * @return single line.
+     */
+    public static String escape(final String value) {
+        final StringBuilder line = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); ++i) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '\\':
+                line.append("\\\\");
+                break;
+            case '\n':
+                line.append("\\n");
+                break;
+            case '\r':
+                line.append("\\r");
+                break;
+            default:
+                line.append(c);
+                break;
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Restore value of request line (see {@link #escape(String)}).
+     * 
+     * @param line
+     *            Escaped value.
+     * @return argument or working directory.
+     */
+    public static String unescape(final String line) {
+        final StringBuilder value = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); ++i) {
+            final char c = line.charAt(i);
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+
+            final char next = i + 1 < line.length() ? line.charAt(++i) : 0;
+            switch (next) {
+            case '\\':
+                value.append('\\');
+                break;
+            case 'n':
+                value.append('\n');
+                break;
+            case 'r':
+                value.append('\r');
+                break;
+            default:
+                throw new IllegalArgumentException(String.format("Wrong escape sequence in request: '%s'!", line));
+            }
+        }
+        return value.toString();
+    }
+
+    /**
+     * Accept requests until server is closed.
+     * 
+     * @throws IOException
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    break;
+                }
+                throw e;
+            }
+
+            executor.execute(() -> handle(socket));
+        }
+    }
+
+    private void handle(final Socket socket) {
+        try (Socket client = socket) {
+            client.setSoTimeout(REQUEST_TIMEOUT);
+
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+            final PrintStream out = new PrintStream(client.getOutputStream(), false, StandardCharsets.UTF_8.name());
+            boolean accepted = false;
+            int status = CLI.EXIT_FAILURE;
+            try {
+                // Check token: the answer is sent before the rest of request is read.
+                final String clientToken = reader.readLine();
+                if (clientToken == null || !MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                        clientToken.getBytes(StandardCharsets.UTF_8))) {
+                    out.println("Wrong token!");
+                    return;
+                }
+                out.println(ACCEPTED);
+                out.flush();
+                accepted = true;
+
+                // Read request.
+                final String workingDir = reader.readLine();
+                final String argsNumber = reader.readLine();
+                if (workingDir == null || argsNumber == null) {
+                    out.println("Request is incomplete!");
+                    return;
+                }
+                final int argsCount = Integer.parseInt(argsNumber.trim());
+                if (argsCount < 0 || argsCount > MAX_ARGUMENTS) {
+                    out.println(String.format("Wrong number of arguments: %d!", argsCount));
+                    return;
+                }
+                final String[] args = new String[argsCount];
+                for (int i = 0; i < argsCount; ++i) {
+                    final String arg = reader.readLine();
+                    if (arg == null) {
+                        out.println("Request is incomplete!");
+                        return;
+                    }
+                    args[i] = unescape(arg);
+                }
+
+                // Execution can take any time.
+                client.setSoTimeout(0);
+                status = CLI.run(args, new File(unescape(workingDir)), out);
+            } catch (IOException | RuntimeException e) {
+                out.println(e.getMessage() != null ? e.getMessage() : e.toString());
+            } finally {
+                // Exit status is the last line of accepted request.
+                if (accepted) {
+                    out.println(status);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Client is disconnected.
+        }
+    }
+
+    /**
+     * Stop accepting requests. Requests that are executed now are completed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            serverSocket.close();
+            executor.shutdown();
+        } finally {
+            if (infoFile != null) {
+                Files.deleteIfExists(infoFile.toPath());
+            }
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Statistics of {@link Pipeline} executions: time, read and written bytes and allocated heap of every phase (load of
+ * PDF file, operations, save and move of PDF file).
+ * 
+ * Statistics is collected as {@link MetricsListener}, so the same object can be used by many pipelines.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class Stats implements MetricsListener {
+
+    public static final String LOAD = "load";
+
+    public static final String SAVE = "save";
+
+    public static final String MOVE = "move";
+
+    /**
+     * Value of metric that can not be measured.
+     */
+    public static final long UNKNOWN = -1;
+
+    private final Map<File, List<Phase>> files = new LinkedHashMap<>();
+
+    private final Map<String, Phase> totals = new LinkedHashMap<>();
+
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+
+    /**
+     * Metrics of single phase.
+     */
+    public static class Phase {
+
+        private final String name;
+
+        private final long nanos;
+
+        private final long bytesRead;
+
+        private final long bytesWritten;
+
+        private final long allocatedBytes;
+
+        /**
+         * @param name
+         *            Name of the phase.
+         * @param nanos
+         *            Wall time in nanoseconds.
+         * @param bytesRead
+         *            Number of read bytes.
+         * @param bytesWritten
+         *            Number of written bytes.
+         * @param allocatedBytes
+         *            Heap allocated by the thread that executes the phase or {@link Stats#UNKNOWN}.
+         */
+        public Phase(final String name, final long nanos, final long bytesRead, final long bytesWritten,
+                final long allocatedBytes) {
+            this.name = name;
+            this.nanos = nanos;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        /**
+         * @return name of the phase: {@link Stats#LOAD}, {@link Stats#SAVE}, {@link Stats#MOVE} or name of the
+         *         operation.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return wall time in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return number of read bytes.
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * @return number of written bytes.
+         */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * @return heap allocated by the thread that executes the phase (threads that are started by the phase are not
+         *         counted) or {@link Stats#UNKNOWN}.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        private Phase add(final Phase phase) {
+            final long allocated = allocatedBytes == UNKNOWN || phase.allocatedBytes == UNKNOWN ? UNKNOWN
+                    : allocatedBytes + phase.allocatedBytes;
+            return new Phase(name, nanos + phase.nanos, bytesRead + phase.bytesRead,
+                    bytesWritten + phase.bytesWritten, allocated);
+        }
+
+        private void appendJson(final StringBuilder json) {
+            json.append("\"phase\": ");
+            appendString(json, name);
+            json.append(", \"nanos\": ").append(nanos);
+            json.append(", \"bytesRead\": ").append(bytesRead);
+            json.append(", \"bytesWritten\": ").append(bytesWritten);
+            json.append(", \"allocatedBytes\": ").append(allocatedBytes);
+        }
+    }
+
+    /**
+     * @return heap allocated by current thread from its start or {@link #UNKNOWN} if JVM does not support it.
+     */
+    public static long getAllocatedBytes() {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+            if (sunThreadBean.isThreadAllocatedMemorySupported() && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return UNKNOWN;
+    }
+
+    @Override
+    public synchronized void phaseCompleted(final File pdfFile, final Phase phase) {
+        files.computeIfAbsent(pdfFile, file -> new ArrayList<>()).add(phase);
+
+        final Phase total = totals.get(phase.getName());
+        totals.put(phase.getName(), total == null ? phase : total.add(phase));
+        counts.merge(phase.getName(), 1, Integer::sum);
+    }
+
+    /**
+     * @return phases of every processed PDF file in order of execution.
+     */
+    public synchronized Map<File, List<Phase>> getFiles() {
+        final Map<File, List<Phase>> copy = new LinkedHashMap<>();
+        for (Map.Entry<File, List<Phase>> entry : files.entrySet()) {
+            copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * @return sum of metrics of all PDF files for every phase.
+     */
+    public synchronized Map<String, Phase> getTotals() {
+        return new LinkedHashMap<>(totals);
+    }
+
+    private static void appendString(final StringBuilder json, final String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                json.append("\\\"");
+                break;
+            case '\\':
+                json.append("\\\\");
+                break;
+            default:
+                if (c < 0x20) {
+                    json.append(String.format("\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+                break;
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * @return statistics in JSON format: phases of every PDF file and totals of every phase.
+     */
+    public synchronized String toJson() {
+        final StringBuilder json = new StringBuilder();
+        json.append("{\n  \"files\": [");
+        String fileSeparator = "\n";
+        for (Map.Entry<File, List<Phase>> entry : files.entrySet()) {
+            json.append(fileSeparator).append("    { \"file\": ");
+            appendString(json, entry.getKey().getPath());
+            json.append(", \"phases\": [");
+            String phaseSeparator = "\n";
+            for (Phase phase : entry.getValue()) {
+                json.append(phaseSeparator).append("      { ");
+                phase.appendJson(json);
+                json.append(" }");
+                phaseSeparator = ",\n";
+            }
+            json.append("\n    ] }");
+            fileSeparator = ",\n";
+        }
+        json.append("\n  ],\n  \"totals\": [");
+        String totalSeparator = "\n";
+        for (Phase total : totals.values()) {
+            json.append(totalSeparator).append("    { ");
+            total.appendJson(json);
+            json.append(", \"count\": ").append(counts.get(total.getName())).append(" }");
+            totalSeparator = ",\n";
+        }
+        json.append("\n  ]\n}");
+        return json.toString();
+    }
+}
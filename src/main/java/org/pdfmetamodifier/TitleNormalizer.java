@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Normalize Outline (bookmark) titles with ordered table of substitutions.
+ * 
+ * All patterns are compiled once, so normalization of a title does not compile anything and creates new string only
+ * when some substitution really matches.
+ * 
+ * Substitutions are not merged into single alternation: result of one substitution can be matched by the next one (for
+ * example, "`'" is replaced by "''" and then by "\""), so single pass gives different titles.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class TitleNormalizer {
+
+    //@formatter:off
+    /**
+     * Default substitutions: replace not common used symbols and remove redundant whitespaces.
+     */
+    public static final List<Rule> DEFAULT_RULES = Collections.unmodifiableList(Arrays.asList(
+            Rule.literal("`",                   "'"     ),
+            Rule.literal("‘",                   "'"     ),
+            Rule.literal("’",                   "'"     ),
+            Rule.literal("”",                   "\""    ),
+            Rule.literal("“",                   "\""    ),
+            Rule.literal("''",                  "\""    ),
+            Rule.literal(" - ",                 " – "   ),
+            Rule.regex  ("(?<=\\S)–(?=\\S)",    " – "   ),
+            Rule.literal("…",                   "..."   ),
+            Rule.literal(". . .",               "..."   ),
+            Rule.literal(" ,",                  ","     ),
+            Rule.literal(" .",                  "."     ),
+            Rule.literal("\t",                  OutlineHelper.SHIFT),
+            Rule.regex  ("\\s{2,}",             " "     )
+        ));
+    //@formatter:on
+
+    /**
+     * Normalizer with {@link #DEFAULT_RULES}.
+     */
+    public static final TitleNormalizer DEFAULT = new TitleNormalizer(DEFAULT_RULES);
+
+    private final List<Rule> rules;
+
+    /**
+     * @param rules
+     *            Substitutions that are applied in specified order.
+     */
+    public TitleNormalizer(final List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+    }
+
+    /**
+     * @return substitutions that are applied in specified order.
+     */
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Create new normalizer that applies additional substitutions after substitutions of this normalizer.
+     * 
+     * @param additionalRules
+     *            Additional substitutions.
+     * @return new normalizer.
+     */
+    public TitleNormalizer withRules(final List<Rule> additionalRules) {
+        final List<Rule> allRules = new ArrayList<>(rules);
+        allRules.addAll(additionalRules);
+        return new TitleNormalizer(allRules);
+    }
+
+    /**
+     * Trim title and apply all substitutions.
+     * 
+     * @param title
+     *            Outline (bookmark) title.
+     * @return normalized title.
+     */
+    public String normalize(final String title) {
+        String result = title.trim();
+        for (Rule rule : rules) {
+            result = rule.apply(result);
+        }
+        return result;
+    }
+
+    /**
+     * Single substitution.
+     */
+    public static class Rule {
+
+        private final Pattern pattern;
+
+        private final String replacement;
+
+        /**
+         * @param pattern
+         *            What should be replaced.
+         * @param replacement
+         *            Replacement (used as is, without references to groups).
+         */
+        public Rule(final Pattern pattern, final String replacement) {
+            this.pattern = pattern;
+            this.replacement = Matcher.quoteReplacement(replacement);
+        }
+
+        /**
+         * @param target
+         *            Text that should be replaced.
+         * @param replacement
+         *            Replacement.
+         * @return substitution of plain text.
+         */
+        public static Rule literal(final String target, final String replacement) {
+            return new Rule(Pattern.compile(target, Pattern.LITERAL), replacement);
+        }
+
+        /**
+         * @param regex
+         *            Regular expression that should be replaced.
+         * @param replacement
+         *            Replacement (used as is, without references to groups).
+         * @return substitution of regular expression.
+         */
+        public static Rule regex(final String regex, final String replacement) {
+            return new Rule(Pattern.compile(regex), replacement);
+        }
+
+        /**
+         * @param text
+         *            Source text.
+         * @return text with substitution, or the same instance if nothing matches.
+         */
+        public String apply(final String text) {
+            final Matcher matcher = pattern.matcher(text);
+            return matcher.find() ? matcher.replaceAll(replacement) : text;
+        }
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.DateTimeException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+
+/**
+ * Helper with methods for synchronize XMP Metadata and Document Information.
+ * 
+ * <p>
+ * XMP packet is processed as a stream of XML events: properties that have the same meaning as Document Information
+ * entries (title, author, dates, etc.) are read or replaced, everything else (other schemas, extensions, padding) is
+ * copied as is. So the packet is never kept in memory as a whole and custom schemas do not have to be known.
+ * </p>
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class XmpHelper {
+
+    protected static final String RDF_NAMESPACE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+
+    protected static final String DC_NAMESPACE = "http://purl.org/dc/elements/1.1/";
+
+    protected static final String PDF_NAMESPACE = "http://ns.adobe.com/pdf/1.3/";
+
+    protected static final String XMP_NAMESPACE = "http://ns.adobe.com/xap/1.0/";
+
+    protected static final QName RDF = new QName(RDF_NAMESPACE, "RDF", "rdf");
+
+    protected static final QName DESCRIPTION = new QName(RDF_NAMESPACE, "Description", "rdf");
+
+    protected static final QName ABOUT = new QName(RDF_NAMESPACE, "about", "rdf");
+
+    protected static final QName ALT = new QName(RDF_NAMESPACE, "Alt", "rdf");
+
+    protected static final QName SEQ = new QName(RDF_NAMESPACE, "Seq", "rdf");
+
+    protected static final QName LI = new QName(RDF_NAMESPACE, "li", "rdf");
+
+    protected static final QName LANG = new QName(XMLConstants.XML_NS_URI, "lang", XMLConstants.XML_NS_PREFIX);
+
+    protected static final String DEFAULT_LANG = "x-default";
+
+    protected static final String AUTHOR_SEPARATOR = "; ";
+
+    protected static final String INDENT = "   ";
+
+    /**
+     * XMP properties with the same meaning as Document Information entries.
+     */
+    protected static final Map<QName, COSName> PROPERTIES;
+    static {
+        //@formatter:off
+        final Map<QName, COSName> properties = new LinkedHashMap<>();
+        properties.put(new QName(DC_NAMESPACE,  "title",       "dc" ), COSName.TITLE);
+        properties.put(new QName(DC_NAMESPACE,  "creator",     "dc" ), COSName.AUTHOR);
+        properties.put(new QName(DC_NAMESPACE,  "description", "dc" ), COSName.SUBJECT);
+        properties.put(new QName(PDF_NAMESPACE, "Keywords",    "pdf"), COSName.KEYWORDS);
+        properties.put(new QName(XMP_NAMESPACE, "CreatorTool", "xmp"), COSName.CREATOR);
+        properties.put(new QName(PDF_NAMESPACE, "Producer",    "pdf"), COSName.PRODUCER);
+        properties.put(new QName(XMP_NAMESPACE, "CreateDate",  "xmp"), COSName.CREATION_DATE);
+        properties.put(new QName(XMP_NAMESPACE, "ModifyDate",  "xmp"), COSName.MOD_DATE);
+        //@formatter:on
+        PROPERTIES = Collections.unmodifiableMap(properties);
+    }
+
+    protected static final List<COSName> DATES = Arrays.asList(COSName.CREATION_DATE, COSName.MOD_DATE);
+
+    /*
+     * XMP dates are ISO 8601 dates with optional month, day, time (seconds and fraction of seconds are optional too)
+     * and time zone (UTC by default). DateConverter of xmpbox is not used: it needs JAXB, which Java 11 does not have.
+     */
+    //@formatter:off
+    private static final DateTimeFormatter DATE_PARSER = new DateTimeFormatterBuilder()
+            .appendPattern("uuuu[-MM[-dd]]")
+            .optionalStart()
+                .appendLiteral('T')
+                .append(DateTimeFormatter.ISO_LOCAL_TIME)
+                .optionalStart()
+                    .appendOffsetId()
+                .optionalEnd()
+            .optionalEnd()
+            .parseDefaulting(ChronoField.MONTH_OF_YEAR, 1)
+            .parseDefaulting(ChronoField.DAY_OF_MONTH, 1)
+            .parseDefaulting(ChronoField.HOUR_OF_DAY, 0)
+            .parseDefaulting(ChronoField.OFFSET_SECONDS, 0)
+            .toFormatter();
+    //@formatter:on
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ssxxx");
+
+    private static XMLEventReader createReader(final InputStream input) throws XMLStreamException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+
+        // XMP packet should not refer to external resources.
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        return factory.createXMLEventReader(input);
+    }
+
+    private static boolean isProperty(final QName name, final int depth, final int descriptionDepth) {
+        return descriptionDepth > 0 && depth == descriptionDepth + 1 && PROPERTIES.containsKey(name);
+    }
+
+    private static String getAttributeValue(final StartElement element, final QName name) {
+        final Attribute attribute = element.getAttributeByName(name);
+        return attribute != null ? attribute.getValue() : null;
+    }
+
+    /**
+     * Parse XMP date.
+     * 
+     * @param value
+     *            ISO 8601 date, for example "2016-05-09T13:00:30+02:00".
+     * @return date or <code>null</code> if date can not be parsed.
+     */
+    protected static Calendar parseDate(final String value) {
+        try {
+            return GregorianCalendar.from(OffsetDateTime.parse(value, DATE_PARSER).toZonedDateTime());
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Format XMP date.
+     * 
+     * @param date
+     *            Date.
+     * @return ISO 8601 date with seconds and time zone, for example "2016-05-09T13:00:30+02:00".
+     */
+    protected static String formatDate(final Calendar date) {
+        return OffsetDateTime.ofInstant(date.toInstant(), date.getTimeZone().toZoneId()).format(DATE_FORMATTER);
+    }
+
+    private static void setValue(final PDDocumentInformation information, final COSName key, final String value) {
+        if (DATES.contains(key)) {
+            // Date that can not be parsed is not copied to Document Information.
+            final Calendar date = parseDate(value);
+            if (date != null) {
+                information.getCOSObject().setDate(key, date);
+            }
+        } else {
+            information.getCOSObject().setString(key, value);
+        }
+    }
+
+    /**
+     * Read properties of XMP Metadata that have the same meaning as Document Information entries.
+     * 
+     * @param input
+     *            XMP packet.
+     * @return Document Information with entries from XMP Metadata.
+     * @throws IOException
+     */
+    public static PDDocumentInformation xmpToInformation(final InputStream input) throws IOException {
+        final PDDocumentInformation information = new PDDocumentInformation();
+        try {
+            final XMLEventReader reader = createReader(input);
+
+            int depth = 0;
+            int descriptionDepth = 0;
+            QName property = null;
+            String lang = null;
+            final StringBuilder text = new StringBuilder();
+            final List<String> items = new ArrayList<>();
+            String defaultItem = null;
+            while (reader.hasNext()) {
+                final XMLEvent event = reader.nextEvent();
+                if (event.isStartElement()) {
+                    ++depth;
+                    final StartElement element = event.asStartElement();
+                    if (DESCRIPTION.equals(element.getName())) {
+                        descriptionDepth = depth;
+
+                        // Simple properties can be written as attributes.
+                        final Iterator<?> attributes = element.getAttributes();
+                        while (attributes.hasNext()) {
+                            final Attribute attribute = (Attribute) attributes.next();
+                            final COSName key = PROPERTIES.get(attribute.getName());
+                            if (key != null) {
+                                setValue(information, key, attribute.getValue().trim());
+                            }
+                        }
+                    } else if (isProperty(element.getName(), depth, descriptionDepth)) {
+                        property = element.getName();
+                        text.setLength(0);
+                        items.clear();
+                        defaultItem = null;
+                    } else if (property != null && LI.equals(element.getName())) {
+                        lang = getAttributeValue(element, LANG);
+                        text.setLength(0);
+                    }
+                } else if (event.isCharacters() && property != null) {
+                    text.append(event.asCharacters().getData());
+                } else if (event.isEndElement()) {
+                    final QName name = event.asEndElement().getName();
+                    if (property != null && LI.equals(name)) {
+                        items.add(text.toString().trim());
+                        if (DEFAULT_LANG.equals(lang)) {
+                            defaultItem = text.toString().trim();
+                        }
+                        text.setLength(0);
+                    } else if (property != null && property.equals(name) && depth == descriptionDepth + 1) {
+                        // Language alternatives have default value, sequences are joined.
+                        final String value;
+                        if (items.isEmpty()) {
+                            value = text.toString().trim();
+                        } else if (defaultItem != null) {
+                            value = defaultItem;
+                        } else if (PROPERTIES.get(property) == COSName.AUTHOR) {
+                            value = String.join(AUTHOR_SEPARATOR, items);
+                        } else {
+                            value = items.get(0);
+                        }
+                        setValue(information, PROPERTIES.get(property), value);
+                        property = null;
+                    } else if (DESCRIPTION.equals(name) && depth == descriptionDepth) {
+                        descriptionDepth = 0;
+                    }
+                    --depth;
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("XMP Metadata have a wrong format: " + e.getMessage(), e);
+        }
+        return information;
+    }
+
+    private static void addText(final XMLEventWriter writer, final XMLEventFactory factory, final QName name,
+            final String value, final String indent) throws XMLStreamException {
+        writer.add(factory.createCharacters(indent));
+        writer.add(factory.createStartElement(name, null, null));
+        writer.add(factory.createCharacters(value));
+        writer.add(factory.createEndElement(name, null));
+    }
+
+    private static void addArray(final XMLEventWriter writer, final XMLEventFactory factory, final QName name,
+            final QName arrayName, final String value, final String indent) throws XMLStreamException {
+        writer.add(factory.createCharacters(indent));
+        writer.add(factory.createStartElement(name, null, null));
+        writer.add(factory.createCharacters(indent + INDENT));
+        writer.add(factory.createStartElement(arrayName, null, null));
+        writer.add(factory.createCharacters(indent + INDENT + INDENT));
+        final Iterator<Attribute> attributes = ALT.equals(arrayName)
+                ? Collections.singletonList(factory.createAttribute(LANG, DEFAULT_LANG)).iterator()
+                : null;
+        writer.add(factory.createStartElement(LI, attributes, null));
+        writer.add(factory.createCharacters(value));
+        writer.add(factory.createEndElement(LI, null));
+        writer.add(factory.createCharacters(indent + INDENT));
+        writer.add(factory.createEndElement(arrayName, null));
+        writer.add(factory.createCharacters(indent));
+        writer.add(factory.createEndElement(name, null));
+    }
+
+    private static void addDescription(final XMLEventWriter writer, final XMLEventFactory factory,
+            final PDDocumentInformation information, final String indent) throws XMLStreamException {
+        // Values of properties.
+        final Map<QName, String> values = new LinkedHashMap<>();
+        for (Map.Entry<QName, COSName> property : PROPERTIES.entrySet()) {
+            final COSName key = property.getValue();
+            final String value;
+            if (DATES.contains(key)) {
+                final Calendar date = information.getCOSObject().getDate(key);
+                value = date != null ? formatDate(date) : null;
+            } else {
+                value = information.getCOSObject().getString(key);
+            }
+            if (value != null) {
+                values.put(property.getKey(), value);
+            }
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+
+        //@formatter:off
+        final List<Namespace> namespaces = Arrays.asList(
+                factory.createNamespace("dc",  DC_NAMESPACE ),
+                factory.createNamespace("pdf", PDF_NAMESPACE),
+                factory.createNamespace("xmp", XMP_NAMESPACE)
+            );
+        //@formatter:on
+        writer.add(factory.createCharacters(indent));
+        writer.add(factory.createStartElement(DESCRIPTION,
+                Collections.singletonList(factory.createAttribute(ABOUT, "")).iterator(), namespaces.iterator()));
+        for (Map.Entry<QName, String> value : values.entrySet()) {
+            final COSName key = PROPERTIES.get(value.getKey());
+            if (key == COSName.TITLE || key == COSName.SUBJECT) {
+                addArray(writer, factory, value.getKey(), ALT, value.getValue(), indent + INDENT);
+            } else if (key == COSName.AUTHOR) {
+                addArray(writer, factory, value.getKey(), SEQ, value.getValue(), indent + INDENT);
+            } else {
+                addText(writer, factory, value.getKey(), value.getValue(), indent + INDENT);
+            }
+        }
+        writer.add(factory.createCharacters(indent));
+        writer.add(factory.createEndElement(DESCRIPTION, null));
+    }
+
+    /**
+     * Copy XMP Metadata and replace properties that have the same meaning as Document Information entries by values
+     * of Document Information. Properties without values in Document Information are removed.
+     * 
+     * @param input
+     *            Source XMP packet.
+     * @param output
+     *            Target XMP packet.
+     * @param information
+     *            Document Information.
+     * @throws IOException
+     */
+    public static void updateXmp(final InputStream input, final OutputStream output,
+            final PDDocumentInformation information) throws IOException {
+        try {
+            final XMLEventReader reader = createReader(input);
+            final XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(output, "UTF-8");
+            final XMLEventFactory factory = XMLEventFactory.newInstance();
+
+            int depth = 0;
+            int descriptionDepth = 0;
+            int skippedDepth = 0;
+            // Indentation is written before the next element, so it can be removed with replaced property.
+            XMLEvent whitespace = null;
+            // Whitespace outside of root element is not reported by reader.
+            boolean packetStarted = false;
+            while (reader.hasNext()) {
+                final XMLEvent event = reader.nextEvent();
+                final boolean topLevel = depth == 0 && (event.isStartElement() || event.isProcessingInstruction());
+
+                // Skip replaced property with all children.
+                if (skippedDepth > 0) {
+                    if (event.isStartElement()) {
+                        ++skippedDepth;
+                    } else if (event.isEndElement()) {
+                        --skippedDepth;
+                    }
+                    continue;
+                }
+
+                XMLEvent result = event;
+                if (event.isStartDocument()) {
+                    // XMP packet does not have XML declaration.
+                    continue;
+                } else if (event.isCharacters() && event.asCharacters().isWhiteSpace() && depth > 0) {
+                    if (whitespace != null) {
+                        writer.add(whitespace);
+                    }
+                    whitespace = event;
+                    continue;
+                } else if (event.isStartElement()) {
+                    final StartElement element = event.asStartElement();
+                    if (isProperty(element.getName(), depth + 1, descriptionDepth)) {
+                        skippedDepth = 1;
+                        whitespace = null;
+                        continue;
+                    }
+
+                    ++depth;
+                    if (DESCRIPTION.equals(element.getName())) {
+                        descriptionDepth = depth;
+
+                        // Remove replaced properties that are written as attributes.
+                        final List<Attribute> attributes = new ArrayList<>();
+                        final Iterator<?> iterator = element.getAttributes();
+                        while (iterator.hasNext()) {
+                            final Attribute attribute = (Attribute) iterator.next();
+                            if (!PROPERTIES.containsKey(attribute.getName())) {
+                                attributes.add(attribute);
+                            }
+                        }
+                        result = factory.createStartElement(element.getName(), attributes.iterator(),
+                                element.getNamespaces());
+                    }
+                } else if (event.isEndElement()) {
+                    final QName name = event.asEndElement().getName();
+                    if (DESCRIPTION.equals(name) && depth == descriptionDepth) {
+                        descriptionDepth = 0;
+                    } else if (RDF.equals(name)) {
+                        // Replaced properties are written into separate description with indentation of siblings.
+                        final String data = whitespace != null ? whitespace.asCharacters().getData() : "";
+                        final int lineStart = data.lastIndexOf('\n');
+                        addDescription(writer, factory, information,
+                                (lineStart >= 0 ? data.substring(lineStart) : "\n") + INDENT);
+                    }
+                    --depth;
+                }
+
+                if (whitespace != null) {
+                    writer.add(whitespace);
+                    whitespace = null;
+                }
+                if (topLevel) {
+                    if (packetStarted) {
+                        writer.add(factory.createCharacters("\n"));
+                    }
+                    packetStarted = true;
+                }
+                writer.add(result);
+            }
+            writer.flush();
+            writer.close();
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("XMP Metadata have a wrong format: " + e.getMessage(), e);
+        }
+    }
+}
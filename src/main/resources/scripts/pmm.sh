@@ -1,14 +1,67 @@
 #!/bin/bash
 # ==============================================================================
 # Run PdfMetaModifier in a command line.
+#
+# If PdfMetaModifier server is running (see '--server' option), request is sent
+# to the server instead of starting new JVM. Exit status of the action is
+# returned by the server.
 # ==============================================================================
 
 JAR_FILE=pmm.jar
 JVM_OPT="-Xms64m -Xmx512m"
+SERVER_FILE="$HOME/.pmm_server"
+SERVER_ACCEPTED="Accepted"
+SERVER_TIMEOUT=5
 
-SCRIPT_PATH=`readlink -f $0`
-DIR_PATH=`dirname $SCRIPT_PATH`
-SCRIPT_PARAMS=$@
+SCRIPT_PATH=`readlink -f "$0"`
+DIR_PATH=`dirname "$SCRIPT_PATH"`
 
-java $JVM_OPT -jar "$DIR_PATH/$JAR_FILE" $SCRIPT_PARAMS
+# Print value in one line: backslash, line feed and carriage return are escaped (see Server.escape()).
+escape() {
+    local VALUE="${1//\\/\\\\}"
+    VALUE="${VALUE//$'\n'/\\n}"
+    VALUE="${VALUE//$'\r'/\\r}"
+    printf '%s\n' "$VALUE"
+}
 
+# Send request to the server: token first, then working directory, number of arguments and arguments.
+if [ -r "$SERVER_FILE" ] && [ "$1" != "--server" ]; then
+    read SERVER_PORT SERVER_TOKEN < "$SERVER_FILE"
+    if { exec 3<>"/dev/tcp/127.0.0.1/$SERVER_PORT"; } 2>/dev/null; then
+        # File can be stale: port can belong to another process, which does not accept the token.
+        printf '%s\n' "$SERVER_TOKEN" >&3
+        if IFS= read -r -t $SERVER_TIMEOUT LINE <&3 && [ "$LINE" = "$SERVER_ACCEPTED" ]; then
+            escape "$PWD" >&3
+            printf '%s\n' "$#" >&3
+            for ARG in "$@"; do
+                escape "$ARG" >&3
+            done
+
+            # Output is printed as it comes; the last line is exit status.
+            STATUS=""
+            HAS_STATUS=0
+            while IFS= read -r LINE <&3; do
+                if [ $HAS_STATUS -eq 1 ]; then
+                    printf '%s\n' "$STATUS"
+                fi
+                STATUS="$LINE"
+                HAS_STATUS=1
+            done
+            exec 3<&-
+
+            case "$STATUS" in
+                ''|*[!0-9]*)
+                    # Connection is broken before the end of execution.
+                    if [ $HAS_STATUS -eq 1 ]; then
+                        printf '%s\n' "$STATUS"
+                    fi
+                    exit 1
+                    ;;
+            esac
+            exit $STATUS
+        fi
+        exec 3<&-
+    fi
+fi
+
+java $JVM_OPT -jar "$DIR_PATH/$JAR_FILE" "$@"
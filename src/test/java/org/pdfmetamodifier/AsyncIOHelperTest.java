@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link AsyncIOHelper}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class AsyncIOHelperTest {
+
+    private final static String TEST_PATH = "src" + File.separatorChar + "test" + File.separatorChar + "resources";
+
+    private static void await(final CountDownLatch latch, final long millis) throws IOException {
+        try {
+            latch.await(millis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Test for {@link AsyncIOHelper#execute(File, Pipeline)} with executor of the caller.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void executeBounded() throws Exception {
+        final File pdfFile = Paths.get(TEST_PATH, "document.pdf").toFile();
+        final int maxJobs = 2;
+
+        final ExecutorService executor = Executors.newCachedThreadPool();
+        try (AsyncIOHelper asyncIOHelper = new AsyncIOHelper(executor, maxJobs)) {
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger maxRunning = new AtomicInteger();
+
+            final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; ++i) {
+                results.add(asyncIOHelper.execute(pdfFile, new Pipeline().add(document -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    await(new CountDownLatch(1), 20);
+                    running.decrementAndGet();
+                    return false;
+                })));
+            }
+
+            // Jobs wait in the queue, not in threads of executor.
+            assertTrue(asyncIOHelper.getRunningJobs() <= maxJobs);
+            for (CompletableFuture<Boolean> result : results) {
+                assertFalse(result.get(10, TimeUnit.SECONDS));
+            }
+            assertTrue(maxRunning.get() <= maxJobs);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test for cancellation of {@link AsyncIOHelper} jobs.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void cancel() throws Exception {
+        final File pdfFile = Paths.get(TEST_PATH, "document.pdf").toFile();
+
+        try (AsyncIOHelper asyncIOHelper = new AsyncIOHelper(1)) {
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final AtomicBoolean nextOperation = new AtomicBoolean();
+            final AtomicBoolean queuedOperation = new AtomicBoolean();
+
+            // Running job is stopped before the next operation.
+            final CompletableFuture<Boolean> running = asyncIOHelper.execute(pdfFile, new Pipeline().add(document -> {
+                started.countDown();
+                await(release, 10000);
+                return false;
+            }).add(document -> {
+                nextOperation.set(true);
+                return false;
+            }));
+            // Queued job is not started.
+            final CompletableFuture<Boolean> queued = asyncIOHelper.execute(pdfFile, new Pipeline().add(document -> {
+                queuedOperation.set(true);
+                return false;
+            }));
+
+            started.await();
+            assertEquals(1, asyncIOHelper.getQueuedJobs());
+            assertTrue(queued.cancel(false));
+            assertTrue(running.cancel(false));
+            release.countDown();
+
+            // Next job is executed as usual.
+            final Path outlinesPath = Paths.get(TEST_PATH, "async_bookmarks.txt");
+            try {
+                asyncIOHelper.saveOutlines(Paths.get(TEST_PATH, "outlines", "bookmarks.pdf").toFile(),
+                        outlinesPath.toFile()).get(10, TimeUnit.SECONDS);
+                assertEquals(Files.readAllLines(Paths.get(TEST_PATH, "outlines", "bookmarks_bookmarks.txt")),
+                        Files.readAllLines(outlinesPath));
+            } finally {
+                // Clean.
+                outlinesPath.toFile().delete();
+            }
+            assertFalse(nextOperation.get());
+            assertFalse(queuedOperation.get());
+        }
+    }
+
+    /**
+     * Test for cancellation of results of {@link AsyncIOHelper#saveOutlines(File, File)},
+     * {@link AsyncIOHelper#saveMetadata(File, File)} and {@link AsyncIOHelper#saveAttachments(File, File)}.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void cancelSave() throws Exception {
+        final File pdfFile = Paths.get(TEST_PATH, "attachments", "cmp_hello_with_attachments.pdf").toFile();
+        final Path outlinesPath = Paths.get(TEST_PATH, "async_cancel_bookmarks.txt");
+        final Path metadataPath = Paths.get(TEST_PATH, "async_cancel_metadata.txt");
+        final Path attachmentsPath = Paths.get(TEST_PATH, "async_cancel_files");
+
+        try (AsyncIOHelper asyncIOHelper = new AsyncIOHelper(1)) {
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final CompletableFuture<Boolean> running = asyncIOHelper.execute(pdfFile, new Pipeline().add(document -> {
+                started.countDown();
+                await(release, 10000);
+                return false;
+            }));
+
+            // Jobs wait in the queue and are cancelled through derived results.
+            final List<CompletableFuture<?>> results = new ArrayList<>();
+            results.add(asyncIOHelper.saveOutlines(pdfFile, outlinesPath.toFile()));
+            results.add(asyncIOHelper.saveMetadata(pdfFile, metadataPath.toFile()));
+            results.add(asyncIOHelper.saveAttachments(pdfFile, attachmentsPath.toFile()));
+            started.await();
+            assertEquals(3, asyncIOHelper.getQueuedJobs());
+            for (CompletableFuture<?> result : results) {
+                assertTrue(result.cancel(false));
+            }
+            release.countDown();
+            assertFalse(running.get(10, TimeUnit.SECONDS));
+
+            // Next job is executed after cancelled ones, they do not write anything.
+            assertEquals(Long.valueOf(73), asyncIOHelper.saveAttachments(pdfFile, attachmentsPath.toFile())
+                    .get(10, TimeUnit.SECONDS));
+            assertEquals(0, asyncIOHelper.getQueuedJobs());
+            assertFalse(Files.exists(outlinesPath));
+            assertFalse(Files.exists(metadataPath));
+            assertEquals(5, attachmentsPath.toFile().list().length);
+        } finally {
+            // Clean.
+            outlinesPath.toFile().delete();
+            metadataPath.toFile().delete();
+            if (attachmentsPath.toFile().isDirectory()) {
+                for (File file : attachmentsPath.toFile().listFiles()) {
+                    file.delete();
+                }
+            }
+            attachmentsPath.toFile().delete();
+        }
+    }
+
+    /**
+     * Test for {@link AsyncIOHelper#execute(File, Pipeline)} with executor that runs jobs in the calling thread.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void executeDirect() throws Exception {
+        final File pdfFile = Paths.get(TEST_PATH, "document.pdf").toFile();
+
+        try (AsyncIOHelper asyncIOHelper = new AsyncIOHelper(Runnable::run, 1)) {
+            final List<Integer> stackDepths = new ArrayList<>();
+            final List<CompletableFuture<Boolean>> results = new ArrayList<>();
+            results.add(asyncIOHelper.execute(pdfFile, new Pipeline().add(document -> {
+                // Jobs are queued while the first one is executed.
+                for (int i = 0; i < 10; ++i) {
+                    results.add(asyncIOHelper.execute(pdfFile, new Pipeline().add(queuedDocument -> {
+                        stackDepths.add(Thread.currentThread().getStackTrace().length);
+                        return false;
+                    })));
+                }
+                assertEquals(10, asyncIOHelper.getQueuedJobs());
+                return false;
+            })));
+
+            // Queued jobs are executed by the loop, not by nested calls.
+            assertEquals(11, results.size());
+            for (CompletableFuture<Boolean> result : results) {
+                assertFalse(result.get());
+            }
+            assertEquals(10, stackDepths.size());
+            assertEquals(stackDepths.get(0), stackDepths.get(stackDepths.size() - 1));
+        }
+    }
+
+    /**
+     * Test for {@link AsyncIOHelper#updateMetadata(File, File)}.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void updateMetadata() throws Exception {
+        final Path pdfPath = Paths.get(TEST_PATH, "async_document.pdf");
+        final Path metadataPath = Paths.get(TEST_PATH, "metadata", "title-bar_metadata.txt");
+        final Path savedMetadataPath = Paths.get(TEST_PATH, "async_metadata.txt");
+
+        try (AsyncIOHelper asyncIOHelper = new AsyncIOHelper(2)) {
+            Files.copy(Paths.get(TEST_PATH, "document.pdf"), pdfPath, StandardCopyOption.REPLACE_EXISTING);
+
+            //@formatter:off
+            assertTrue(asyncIOHelper.updateMetadata(pdfPath.toFile(), metadataPath.toFile())
+                    .thenCompose(modified -> asyncIOHelper.saveMetadata(pdfPath.toFile(), savedMetadataPath.toFile()))
+                    .thenApply(saved -> true)
+                    .get(10, TimeUnit.SECONDS));
+            //@formatter:on
+            assertEquals(Files.readAllLines(metadataPath), Files.readAllLines(savedMetadataPath));
+        } finally {
+            // Clean.
+            pdfPath.toFile().delete();
+            savedMetadataPath.toFile().delete();
+        }
+    }
+}
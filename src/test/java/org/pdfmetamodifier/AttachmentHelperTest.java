@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDComplexFileSpecification;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDEmbeddedFile;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationFileAttachment;
+import org.junit.Test;
+
+/**
+ * Test for {@link AttachmentHelper}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class AttachmentHelperTest {
+
+    private final static String TEST_PATH = "src" + File.separatorChar + "test" + File.separatorChar + "resources";
+
+    private static void dirDelete(final File file) throws IOException {
+        if (file.isFile()) {
+            file.delete();
+        }
+        if (file.isDirectory()) {
+            for (String child : file.list()) {
+                dirDelete(new File(file.getAbsolutePath() + File.separatorChar + child));
+            }
+            file.delete();
+        }
+    }
+
+    private static PDComplexFileSpecification createFileSpecification(final String filename) {
+        final PDComplexFileSpecification fileSpec = new PDComplexFileSpecification();
+        fileSpec.setFile(filename);
+        return fileSpec;
+    }
+
+    @Test
+    public void cleanFilename() {
+        assertEquals("Book.pdf", AttachmentHelper.cleanFilename("Book.pdf"));
+        assertEquals("passwd", AttachmentHelper.cleanFilename("../../etc/passwd"));
+        assertEquals("Book.pdf", AttachmentHelper.cleanFilename("C:\\Books\\Book.pdf"));
+        assertEquals("a_b_c.txt", AttachmentHelper.cleanFilename("a:b\u0000c.txt"));
+        assertEquals(AttachmentHelper.DEFAULT_FILENAME, AttachmentHelper.cleanFilename(".."));
+        assertEquals(AttachmentHelper.DEFAULT_FILENAME, AttachmentHelper.cleanFilename("Books/"));
+        assertEquals(AttachmentHelper.DEFAULT_FILENAME, AttachmentHelper.cleanFilename(null));
+    }
+
+    @Test
+    public void getFilenames() {
+        //@formatter:off
+        final List<PDComplexFileSpecification> fileSpecs = Arrays.asList(
+                createFileSpecification("a.txt"),
+                createFileSpecification("dir/a.txt"),
+                createFileSpecification("A.TXT"),
+                createFileSpecification("a_2.txt"),
+                createFileSpecification("b"),
+                createFileSpecification("b")
+            );
+        //@formatter:on
+
+        final List<String> expected = Arrays.asList("a.txt", "a_2.txt", "A_3.TXT", "a_2_2.txt", "b", "b_2");
+        assertEquals(expected, new ArrayList<>(AttachmentHelper.getFilenames(fileSpecs).keySet()));
+    }
+
+    @Test
+    public void globsToPattern() {
+        final Pattern pattern = AttachmentHelper.globsToPattern(Arrays.asList("*.txt", "Book?.pdf", "a+b(1).zip"));
+        assertTrue(pattern.matcher("a.txt").matches());
+        assertTrue(pattern.matcher("dir/a.txt").matches());
+        assertTrue(pattern.matcher("Book1.pdf").matches());
+        assertTrue(pattern.matcher("a+b(1).zip").matches());
+        assertFalse(pattern.matcher("a.txt.zip").matches());
+        assertFalse(pattern.matcher("Book10.pdf").matches());
+        assertFalse(pattern.matcher("aab(1).zip").matches());
+    }
+
+    @Test
+    public void removeFiles() throws IOException {
+        final Path pdfPath = Paths.get(TEST_PATH, "attachments", "document_remove.pdf");
+
+        try {
+            //@formatter:off
+            new PdfGenerator()
+                    .setPages(10)
+                    .setDestinations(5)
+                    .setAttachments(12)
+                    .setAttachmentSize(64 * 1024)
+                    .generate(pdfPath.toFile());
+            //@formatter:on
+            final long originalSize = Files.size(pdfPath);
+
+            // Content of removed files is not kept even for incremental update.
+            //@formatter:off
+            assertTrue(new Pipeline()
+                    .setIncremental(true)
+                    .removeAttachments(Arrays.asList("attachment-1?.txt", "attachment-3.txt"))
+                    .execute(pdfPath.toFile()));
+            //@formatter:on
+            assertTrue(Files.size(pdfPath) < originalSize - originalSize / 5);
+            assertFalse(IOHelper.removeAttachments(pdfPath.toFile(), Arrays.asList("attachment-3.txt")));
+
+            try (PDDocument document = PDDocument.load(pdfPath.toFile())) {
+                final List<String> names = new ArrayList<>();
+                for (PDComplexFileSpecification fileSpec : AttachmentHelper.getFileSpecifications(document)) {
+                    names.add(fileSpec.getFilename());
+                }
+                //@formatter:off
+                final List<String> expected = Arrays.asList(
+                        "attachment-0.txt", "attachment-1.txt", "attachment-2.txt", "attachment-4.txt",
+                        "attachment-5.txt", "attachment-6.txt", "attachment-7.txt", "attachment-8.txt",
+                        "attachment-9.txt"
+                    );
+                //@formatter:on
+                assertEquals(expected, names);
+
+                // Other names are kept.
+                final PDDocumentNameDictionary namesDictionary = document.getDocumentCatalog().getNames();
+                assertEquals(5, namesDictionary.getDests().getNames().size());
+            }
+
+            // All files.
+            assertTrue(IOHelper.removeAttachments(pdfPath.toFile()));
+            try (PDDocument document = PDDocument.load(pdfPath.toFile())) {
+                assertNull(document.getDocumentCatalog().getNames().getEmbeddedFiles());
+                assertNotNull(document.getDocumentCatalog().getNames().getDests());
+            }
+        } finally {
+            // Clean.
+            pdfPath.toFile().delete();
+        }
+    }
+
+    @Test
+    public void extractFilesConcurrently() throws IOException {
+        final Path pdfPath = Paths.get(TEST_PATH, "attachments", "document_concurrently.pdf");
+        final Path sequentialDir = Paths.get(TEST_PATH, "attachments", "document_concurrently_1");
+        final Path concurrentDir = Paths.get(TEST_PATH, "attachments", "document_concurrently_4");
+        final Path duplicateDir = Paths.get(TEST_PATH, "attachments", "document_concurrently_duplicate");
+
+        try {
+            // Many files, some of them with the same name (ignoring case).
+            final File attachmentsDir = Paths.get(TEST_PATH, "attachments", "cmp_hello_with_attachments_files")
+                    .toFile();
+            Files.createDirectories(duplicateDir);
+            final List<File> attachmentFiles = new ArrayList<>();
+            for (String attachment : attachmentsDir.list()) {
+                attachmentFiles.add(new File(attachmentsDir, attachment));
+
+                final Path duplicate = duplicateDir.resolve(attachment.toUpperCase(Locale.ROOT));
+                Files.write(duplicate, Arrays.asList("Duplicate of " + attachment));
+                attachmentFiles.add(duplicate.toFile());
+            }
+            Files.copy(Paths.get(TEST_PATH, "document.pdf"), pdfPath);
+            IOHelper.addAttachments(pdfPath.toFile(), attachmentFiles);
+
+            // Result does not depend on number of threads.
+            try (PDDocument document = PDDocument.load(pdfPath.toFile())) {
+                final long sequentialSize = IOHelper.saveAttachments(document, sequentialDir.toFile(), 1);
+                final long concurrentSize = IOHelper.saveAttachments(document, concurrentDir.toFile(), 4);
+                assertEquals(sequentialSize, concurrentSize);
+            }
+
+            final String[] filenames = sequentialDir.toFile().list();
+            Arrays.sort(filenames);
+            final String[] concurrentFilenames = concurrentDir.toFile().list();
+            Arrays.sort(concurrentFilenames);
+            assertArrayEquals(filenames, concurrentFilenames);
+            assertEquals(attachmentFiles.size(), filenames.length);
+            for (String filename : filenames) {
+                assertArrayEquals(Files.readAllBytes(sequentialDir.resolve(filename)),
+                        Files.readAllBytes(concurrentDir.resolve(filename)));
+            }
+        } finally {
+            // Clean.
+            pdfPath.toFile().delete();
+            dirDelete(sequentialDir.toFile());
+            dirDelete(concurrentDir.toFile());
+            dirDelete(duplicateDir.toFile());
+        }
+    }
+
+    @Test
+    public void extractFilesLazily() throws IOException {
+        final Path outputDir = Paths.get(TEST_PATH, "attachments", "document_lazily");
+
+        try (PDDocument document = new PDDocument()) {
+            final PDPage page = new PDPage();
+            document.addPage(page);
+
+            // The same content under two names; file specification in the named tree is referenced by annotation.
+            final PDEmbeddedFile content = IOHelper.createEmbeddedFile(document,
+                    new ByteArrayInputStream("Content".getBytes(StandardCharsets.UTF_8)), true);
+            final PDComplexFileSpecification fileSpec1 = createFileSpecification("a.txt");
+            fileSpec1.setEmbeddedFile(content);
+            final PDComplexFileSpecification fileSpec2 = createFileSpecification("b.txt");
+            fileSpec2.setEmbeddedFile(content);
+            final PDEmbeddedFilesNameTreeNode root = new PDEmbeddedFilesNameTreeNode();
+            NameTreeHelper.add(root.getCOSObject(), new COSString("a.txt"), fileSpec1.getCOSObject());
+            NameTreeHelper.add(root.getCOSObject(), new COSString("b.txt"), fileSpec2.getCOSObject());
+            final PDDocumentNameDictionary names = new PDDocumentNameDictionary(document.getDocumentCatalog());
+            names.setEmbeddedFiles(root);
+            document.getDocumentCatalog().setNames(names);
+
+            final PDAnnotationFileAttachment annotation = new PDAnnotationFileAttachment();
+            annotation.setFile(fileSpec2);
+            page.getAnnotations().add(annotation);
+
+            // File specification is returned once.
+            final Iterator<PDComplexFileSpecification> fileSpecs = AttachmentHelper.iterateFileSpecifications(document);
+            assertEquals("a.txt", fileSpecs.next().getFilename());
+            assertEquals("b.txt", fileSpecs.next().getFilename());
+            assertFalse(fileSpecs.hasNext());
+
+            // Result does not depend on number of threads.
+            for (int threads : new int[] { 1, 4 }) {
+                Files.createDirectories(outputDir);
+                final long size = AttachmentHelper.extractFiles(
+                        AttachmentHelper.iterateFilenames(AttachmentHelper.iterateFileSpecifications(document)),
+                        outputDir.toFile(), threads);
+                assertEquals(2 * "Content".length(), size);
+                assertEquals(Arrays.asList("Content"), Files.readAllLines(outputDir.resolve("a.txt")));
+                assertEquals(Arrays.asList("Content"), Files.readAllLines(outputDir.resolve("b.txt")));
+                dirDelete(outputDir.toFile());
+            }
+        } finally {
+            // Clean.
+            dirDelete(outputDir.toFile());
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link Batch}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class BatchTest {
+
+    private final static String TEST_PATH = "src" + File.separatorChar + "test" + File.separatorChar + "resources";
+
+    private static void dirDelete(final File file) throws IOException {
+        if (file.isFile()) {
+            file.delete();
+        }
+        if (file.isDirectory()) {
+            for (String child : file.list()) {
+                dirDelete(new File(file.getAbsolutePath() + File.separatorChar + child));
+            }
+            file.delete();
+        }
+    }
+
+    /**
+     * Test for {@link Batch#execute(java.util.function.Function)}.
+     * 
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    @Test
+    public void execute() throws IOException, InterruptedException {
+        final Path batchDir = Paths.get(TEST_PATH, "batch");
+        final Path outputDir = Paths.get(TEST_PATH, "batch_output");
+        final Path metadataPath = Paths.get(TEST_PATH, "metadata", "title-bar_metadata.txt");
+
+        // Prepare PDF files.
+        final List<String> names = Arrays.asList("a", "b", "c", "d");
+        Files.createDirectories(batchDir.resolve("sub"));
+        for (String name : names) {
+            Files.copy(Paths.get(TEST_PATH, "document.pdf"), batchDir.resolve("sub").resolve(name + ".pdf"),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.write(batchDir.resolve("broken.pdf"), Arrays.asList("Not a PDF file"));
+
+        // Execute.
+        final Batch batch = new Batch(batchDir.toString(), outputDir.toFile(), 4);
+        assertEquals(names.size() + 1, batch.getPdfFiles().size());
+
+        final File template = new File(Batch.NAME_PLACEHOLDER + "_metadata.txt");
+        //@formatter:off
+        final Batch.Summary summary = batch.execute(pdfFile -> new Pipeline()
+                .updateMetadata(metadataPath.toFile())
+                .saveMetadata(batch.resolveOutput(template, pdfFile))
+            );
+        //@formatter:on
+
+        // Check results.
+        assertEquals(names.size(), summary.getSuccesses());
+        assertEquals(names.size(), summary.getModified());
+        assertEquals(1, summary.getFailures().size());
+        assertTrue(summary.getFailures().containsKey(batchDir.resolve("broken.pdf").toFile()));
+        for (String name : names) {
+            final Path outputPath = outputDir.resolve("sub").resolve(name + "_metadata.txt");
+            assertEquals(Files.readAllLines(metadataPath), Files.readAllLines(outputPath));
+        }
+
+        // PDF files are not loaded without actions.
+        final Batch.Summary emptySummary = batch.execute(pdfFile -> new Pipeline());
+        assertEquals(names.size() + 1, emptySummary.getSuccesses());
+        assertEquals(0, emptySummary.getModified());
+        assertTrue(emptySummary.getFailures().isEmpty());
+
+        // Clean.
+        dirDelete(batchDir.toFile());
+        dirDelete(outputDir.toFile());
+    }
+
+    /**
+     * Test for {@link Batch#resolveInput(File, File)}.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void resolveInput() throws IOException {
+        final Batch batch = new Batch(TEST_PATH, null, 1);
+
+        final File pdfFile = Paths.get(TEST_PATH, "outlines", "bookmarks.pdf").toFile();
+
+        //@formatter:off
+        assertEquals(new File("common.txt"),
+                batch.resolveInput(new File("common.txt"), pdfFile));
+        assertEquals(Paths.get(TEST_PATH, "outlines", "bookmarks_bookmarks.txt").toFile().getAbsoluteFile(),
+                batch.resolveInput(new File("%s_bookmarks.txt"), pdfFile));
+        //@formatter:on
+    }
+}
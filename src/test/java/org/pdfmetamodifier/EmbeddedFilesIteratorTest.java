@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDComplexFileSpecification;
+import org.junit.Test;
+
+/**
+ * Test for {@link EmbeddedFilesIterator}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class EmbeddedFilesIteratorTest {
+
+    private static COSDictionary createNode(final String... names) {
+        final COSArray namesArray = new COSArray();
+        for (String name : names) {
+            final PDComplexFileSpecification fileSpec = new PDComplexFileSpecification();
+            fileSpec.setFile(name);
+
+            namesArray.add(new COSString(name));
+            namesArray.add(fileSpec);
+        }
+
+        final COSDictionary node = new COSDictionary();
+        node.setItem(COSName.NAMES, namesArray);
+        return node;
+    }
+
+    private static COSDictionary addKids(final COSDictionary node, final COSDictionary... kids) {
+        final COSArray kidsArray = new COSArray();
+        for (COSDictionary kid : kids) {
+            kidsArray.add(kid);
+        }
+        node.setItem(COSName.KIDS, kidsArray);
+        return node;
+    }
+
+    private static List<String> iterate(final PDEmbeddedFilesNameTreeNode root) {
+        final List<String> result = new ArrayList<>();
+        final Iterator<Map.Entry<String, PDComplexFileSpecification>> iterator = new EmbeddedFilesIterator(root);
+        while (iterator.hasNext()) {
+            final Map.Entry<String, PDComplexFileSpecification> entry = iterator.next();
+            assertEquals(entry.getKey(), entry.getValue().getFilename());
+            result.add(entry.getKey());
+        }
+        return result;
+    }
+
+    @Test
+    public void iterateEmpty() {
+        assertFalse(new EmbeddedFilesIterator(null).hasNext());
+        assertFalse(new EmbeddedFilesIterator(new PDEmbeddedFilesNameTreeNode()).hasNext());
+    }
+
+    @Test
+    public void iterateDeep() {
+        //@formatter:off
+        final COSDictionary leaf = createNode("f.txt", "g.txt");
+        final COSDictionary root = addKids(createNode("a.txt"),
+                addKids(new COSDictionary(),
+                        addKids(new COSDictionary(),
+                                createNode("b.txt", "c.txt")
+                            ),
+                        createNode("d.txt")
+                    ),
+                addKids(createNode("e.txt"),
+                        leaf
+                    )
+            );
+        //@formatter:on
+
+        // Loop and broken entries are skipped.
+        addKids(leaf, root);
+        ((COSArray) leaf.getDictionaryObject(COSName.NAMES)).add(COSInteger.ONE);
+        ((COSArray) leaf.getDictionaryObject(COSName.NAMES)).add(COSInteger.ONE);
+
+        final List<String> expected = Arrays.asList("a.txt", "b.txt", "c.txt", "d.txt", "e.txt", "f.txt", "g.txt");
+        assertEquals(expected, iterate(new PDEmbeddedFilesNameTreeNode(root)));
+    }
+
+    @Test
+    public void getFileSpecifications() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            //@formatter:off
+            final COSDictionary root = addKids(new COSDictionary(),
+                    addKids(new COSDictionary(),
+                            createNode("a.txt", "b.txt"),
+                            createNode("c.txt")
+                        )
+                );
+            //@formatter:on
+
+            final PDDocumentNameDictionary names = new PDDocumentNameDictionary(document.getDocumentCatalog());
+            names.setEmbeddedFiles(new PDEmbeddedFilesNameTreeNode(root));
+            document.getDocumentCatalog().setNames(names);
+
+            final List<String> filenames = new ArrayList<>();
+            for (PDComplexFileSpecification fileSpec : AttachmentHelper.getFileSpecifications(document)) {
+                filenames.add(fileSpec.getFilename());
+            }
+            assertEquals(Arrays.asList("a.txt", "b.txt", "c.txt"), filenames);
+        }
+    }
+}
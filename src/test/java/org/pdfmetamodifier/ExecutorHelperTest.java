@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link ExecutorHelper}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class ExecutorHelperTest {
+
+    /**
+     * Test for {@link ExecutorHelper#newExecutor(int, boolean)}: number of tasks that are executed at the same time is
+     * limited with and without virtual threads.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void newExecutor() throws Exception {
+        final int threads = 3;
+        for (boolean virtualThreads : new boolean[] { false, true }) {
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger maxRunning = new AtomicInteger();
+
+            final ExecutorService executor = ExecutorHelper.newExecutor(threads, virtualThreads);
+            try {
+                final List<Future<Integer>> results = new ArrayList<>();
+                for (int i = 0; i < 20; ++i) {
+                    final int index = i;
+                    results.add(executor.submit(() -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(10);
+                        running.decrementAndGet();
+                        return index;
+                    }));
+                }
+
+                for (int i = 0; i < results.size(); ++i) {
+                    assertEquals(i, (int) results.get(i).get());
+                }
+                assertTrue(maxRunning.get() <= threads);
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Test for {@link ExecutorHelper#isVirtualThreadsSupported()}.
+     */
+    @Test
+    public void isVirtualThreadsSupported() {
+        boolean supported;
+        try {
+            Thread.class.getMethod("ofVirtual");
+            supported = true;
+        } catch (NoSuchMethodException e) {
+            supported = false;
+        }
+        assertEquals(supported, ExecutorHelper.isVirtualThreadsSupported());
+    }
+}
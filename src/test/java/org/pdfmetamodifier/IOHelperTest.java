@@ -18,17 +18,30 @@
  */
 package org.pdfmetamodifier;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDEmbeddedFilesNameTreeNode;
+import org.apache.pdfbox.pdmodel.common.filespecification.PDComplexFileSpecification;
 import org.junit.Test;
 
 /**
@@ -152,6 +165,29 @@ public class IOHelperTest {
         pdfPath.toFile().delete();
     }
 
+    /**
+     * Test for {@link IOHelper#updateOutlines(File, File)} with the same Outlines (bookmarks).
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void updateBookmarksUnchanged() throws IOException {
+        final Path originalPdfPath = Paths.get(TEST_PATH, "outlines", "bookmarks.pdf");
+        final Path pdfPath = Paths.get(TEST_PATH, "outlines", "bookmarks_unchanged.pdf");
+
+        try {
+            Files.copy(originalPdfPath, pdfPath, StandardCopyOption.REPLACE_EXISTING);
+
+            // PDF file is not rewritten.
+            assertFalse(IOHelper.updateOutlines(pdfPath.toFile(),
+                    Paths.get(TEST_PATH, "outlines", "bookmarks_bookmarks.txt").toFile()));
+            assertArrayEquals(Files.readAllBytes(originalPdfPath), Files.readAllBytes(pdfPath));
+        } finally {
+            // Clean.
+            pdfPath.toFile().delete();
+        }
+    }
+
     /**
      * Test for {@link IOHelper#saveMetadata(File, File)}.
      * 
@@ -186,7 +222,99 @@ public class IOHelperTest {
      */
     @Test
     public void updateMetadata() throws IOException {
-        // TODO
+        final Path originalPdfPath = Paths.get(TEST_PATH, "metadata", "title-bar.pdf");
+        final Path pdfPath = Paths.get(TEST_PATH, "metadata", "title-bar_update.pdf");
+        final Path metadataPath = Paths.get(TEST_PATH, "metadata", "cmp_state_metadata_metadata.txt");
+        final Path tempMetadataPath = Paths.get(TEST_PATH, "metadata", "title-bar_update_metadata.txt");
+
+        try {
+            Files.copy(originalPdfPath, pdfPath, StandardCopyOption.REPLACE_EXISTING);
+
+            // The same Metadata: PDF file is not rewritten.
+            assertFalse(IOHelper.updateMetadata(pdfPath.toFile(),
+                    Paths.get(TEST_PATH, "metadata", "title-bar_metadata.txt").toFile()));
+            assertArrayEquals(Files.readAllBytes(originalPdfPath), Files.readAllBytes(pdfPath));
+
+            // New Metadata.
+            assertTrue(IOHelper.updateMetadata(pdfPath.toFile(), metadataPath.toFile()));
+            IOHelper.saveMetadata(pdfPath.toFile(), tempMetadataPath.toFile());
+            fileCompare(metadataPath.toFile(), tempMetadataPath.toFile());
+        } finally {
+            // Clean.
+            pdfPath.toFile().delete();
+            tempMetadataPath.toFile().delete();
+        }
+    }
+
+    /**
+     * Test for {@link IOHelper#saveXmp(File, File)}.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void saveXmp() throws IOException {
+        final String rootPath = TEST_PATH + File.separatorChar + "metadata";
+        final String[] testFiles = new String[] { "title-bar", "cmp_state_metadata" };
+        for (String filename : testFiles) {
+            final String basePath = rootPath + File.separatorChar + filename;
+
+            final File pdfFile = new File(basePath + ".pdf");
+            final File xmpFile = new File(basePath + "_xmp_metadata.xmp");
+            final File tempXmpFile = new File(basePath + "_xmp_metadata_temp.xmp");
+
+            try {
+                // Execute.
+                IOHelper.saveXmp(pdfFile, tempXmpFile);
+
+                // Compare results.
+                assertArrayEquals(Files.readAllBytes(xmpFile.toPath()), Files.readAllBytes(tempXmpFile.toPath()));
+            } finally {
+                // Clean.
+                tempXmpFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Test for {@link IOHelper#updateXmp(File, File)}.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void updateXmp() throws IOException {
+        final String rootPath = TEST_PATH + File.separatorChar + "metadata";
+        final File xmpFile = new File(rootPath + File.separatorChar + "title-bar_xmp_metadata.xmp");
+        final File pdfFile = new File(rootPath + File.separatorChar + "update_xmp_document.pdf");
+        final File tempXmpFile = new File(rootPath + File.separatorChar + "update_xmp_document_temp.xmp");
+
+        try {
+            Files.copy(Paths.get(TEST_PATH, "document.pdf"), pdfFile.toPath());
+
+            // Execute.
+            IOHelper.updateXmp(pdfFile, xmpFile);
+
+            // XMP packet is copied as is.
+            IOHelper.saveXmp(pdfFile, tempXmpFile);
+            assertArrayEquals(Files.readAllBytes(xmpFile.toPath()), Files.readAllBytes(tempXmpFile.toPath()));
+
+            // Metadata is updated from XMP.
+            final List<String> metadata = MetadataHelper.metadataToLineList(pdfFile);
+            assertTrue(metadata.contains("Title|Avoiding Cape Cod Traffic"));
+            assertTrue(metadata.contains("Author|Mary"));
+            assertTrue(metadata.contains("Creator|Acrobat PDFMaker 9.0 for Word"));
+            assertTrue(metadata.contains("CreationDate|D:20101105124232-04'00'"));
+
+            // The same XMP packet changes nothing; packet of the same length with other content is copied.
+            assertFalse(IOHelper.updateXmp(pdfFile, xmpFile));
+            final String xmp = new String(Files.readAllBytes(xmpFile.toPath()), StandardCharsets.UTF_8);
+            Files.write(tempXmpFile.toPath(), xmp.replace("Mary", "Mark").getBytes(StandardCharsets.UTF_8));
+            assertTrue(IOHelper.updateXmp(pdfFile, tempXmpFile));
+            assertTrue(MetadataHelper.metadataToLineList(pdfFile).contains("Author|Mark"));
+        } finally {
+            // Clean.
+            pdfFile.delete();
+            tempXmpFile.delete();
+        }
     }
 
     /**
@@ -257,6 +385,193 @@ public class IOHelperTest {
      */
     @Test
     public void addAttachments() throws IOException {
-        // TODO
+        final Path originalPdfPath = Paths.get(TEST_PATH, "document.pdf");
+        final File attachmentsDir = Paths.get(TEST_PATH, "attachments", "cmp_hello_with_attachments_files").toFile();
+        final String[] attachments = attachmentsDir.list();
+        Arrays.sort(attachments);
+
+        final List<File> attachmentFiles = new ArrayList<>();
+        for (String attachment : attachments) {
+            attachmentFiles.add(new File(attachmentsDir, attachment));
+        }
+
+        for (IOHelper.Compression compression : IOHelper.Compression.values()) {
+            final Path pdfPath = Paths.get(TEST_PATH, "attachments", "document_" + compression + ".pdf");
+            final Path tempAttachmentsPath = Paths.get(TEST_PATH, "attachments", "document_" + compression + "_files");
+
+            // Copy original file.
+            Files.copy(originalPdfPath, pdfPath, StandardCopyOption.REPLACE_EXISTING);
+
+            // Execute.
+            new Pipeline().addAttachments(attachmentFiles, compression).execute(pdfPath.toFile());
+
+            // Check filters.
+            final PDDocument document = PDDocument.load(pdfPath.toFile());
+            try {
+                final PDEmbeddedFilesNameTreeNode tree = new PDDocumentNameDictionary(document.getDocumentCatalog())
+                        .getEmbeddedFiles();
+                final Iterator<Map.Entry<String, PDComplexFileSpecification>> embeddedFiles = new EmbeddedFilesIterator(
+                        tree);
+                while (embeddedFiles.hasNext()) {
+                    final PDComplexFileSpecification fileSpec = embeddedFiles.next().getValue();
+                    final List<COSName> filters = fileSpec.getEmbeddedFile().getFilters();
+                    final boolean compressed = filters != null && !filters.isEmpty();
+                    assertEquals(compression != IOHelper.Compression.NONE, compressed);
+                }
+            } finally {
+                document.close();
+            }
+
+            // Compare results.
+            IOHelper.saveAttachments(pdfPath.toFile(), tempAttachmentsPath.toFile());
+            dirCompare(attachmentsDir, tempAttachmentsPath.toFile());
+
+            // Clean.
+            dirDelete(tempAttachmentsPath.toFile());
+            pdfPath.toFile().delete();
+        }
+    }
+
+    /**
+     * Test for {@link IOHelper#addAttachments(File, java.util.List)} with existing Attached (embedded) files.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void addAttachmentsToExisting() throws IOException {
+        final Path originalPdfPath = Paths.get(TEST_PATH, "attachments", "cmp_hello_with_attachment.pdf");
+        final Path pdfPath = Paths.get(TEST_PATH, "attachments", "cmp_hello_with_attachment_added.pdf");
+        final File attachmentsDir = Paths.get(TEST_PATH, "attachments", "cmp_hello_with_attachments_files").toFile();
+
+        try {
+            Files.copy(originalPdfPath, pdfPath, StandardCopyOption.REPLACE_EXISTING);
+            final List<File> attachmentFiles = new ArrayList<>();
+            for (String attachment : attachmentsDir.list()) {
+                attachmentFiles.add(new File(attachmentsDir, attachment));
+            }
+
+            // Existing Attached (embedded) files are kept.
+            new Pipeline().setIncremental(true).addAttachments(attachmentFiles).execute(pdfPath.toFile());
+            try (PDDocument original = PDDocument.load(originalPdfPath.toFile());
+                    PDDocument document = PDDocument.load(pdfPath.toFile())) {
+                assertEquals(AttachmentHelper.getFileSpecifications(original).size() + attachmentFiles.size(),
+                        AttachmentHelper.getFileSpecifications(document).size());
+            }
+        } finally {
+            // Clean.
+            pdfPath.toFile().delete();
+        }
+    }
+
+    /**
+     * Test for {@link IOHelper#addAttachments(File, java.util.List)} with the file that is already attached.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void addAttachmentsReplace() throws IOException {
+        final Path originalPdfPath = Paths.get(TEST_PATH, "document.pdf");
+        final Path pdfPath = Paths.get(TEST_PATH, "attachments", "document_replace.pdf");
+        final Path attachmentsPath = Paths.get(TEST_PATH, "attachments", "document_replace_files");
+        final Path tempAttachmentsPath = Paths.get(TEST_PATH, "attachments", "document_replace_saved");
+        final File attachment = attachmentsPath.resolve("hello.txt").toFile();
+
+        try {
+            Files.copy(originalPdfPath, pdfPath, StandardCopyOption.REPLACE_EXISTING);
+            Files.createDirectories(attachmentsPath);
+
+            // The same file name is attached twice.
+            Files.write(attachment.toPath(), Arrays.asList("Old content"));
+            IOHelper.addAttachments(pdfPath.toFile(), Arrays.asList(attachment));
+            Files.write(attachment.toPath(), Arrays.asList("New content"));
+            IOHelper.addAttachments(pdfPath.toFile(), Arrays.asList(attachment));
+
+            // Only one Attached (embedded) file with the new content.
+            try (PDDocument document = PDDocument.load(pdfPath.toFile())) {
+                final Iterator<Map.Entry<String, PDComplexFileSpecification>> embeddedFiles = new EmbeddedFilesIterator(
+                        new PDDocumentNameDictionary(document.getDocumentCatalog()).getEmbeddedFiles());
+                assertTrue(embeddedFiles.hasNext());
+                assertEquals("hello.txt", embeddedFiles.next().getKey());
+                assertFalse(embeddedFiles.hasNext());
+            }
+            IOHelper.saveAttachments(pdfPath.toFile(), tempAttachmentsPath.toFile());
+            dirCompare(attachmentsPath.toFile(), tempAttachmentsPath.toFile());
+        } finally {
+            // Clean.
+            pdfPath.toFile().delete();
+            dirDelete(attachmentsPath.toFile());
+            dirDelete(tempAttachmentsPath.toFile());
+        }
+    }
+
+    /**
+     * Test for {@link IOHelper#parseMemoryUsageSetting(String)}.
+     */
+    @Test
+    public void parseMemoryUsageSetting() {
+        MemoryUsageSetting setting = IOHelper.parseMemoryUsageSetting("main");
+        assertTrue(setting.useMainMemory());
+        assertFalse(setting.useTempFile());
+        assertFalse(setting.isMainMemoryRestricted());
+
+        setting = IOHelper.parseMemoryUsageSetting("temp");
+        assertFalse(setting.useMainMemory());
+        assertTrue(setting.useTempFile());
+
+        setting = IOHelper.parseMemoryUsageSetting("mixed:64M");
+        assertTrue(setting.useMainMemory());
+        assertTrue(setting.useTempFile());
+        assertEquals(64L * 1024 * 1024, setting.getMaxMainMemoryBytes());
+
+        setting = IOHelper.parseMemoryUsageSetting("main:2k");
+        assertEquals(2L * 1024, setting.getMaxMainMemoryBytes());
+
+        setting = IOHelper.parseMemoryUsageSetting("temp:3G");
+        assertEquals(3L * 1024 * 1024 * 1024, setting.getMaxStorageBytes());
+
+        setting = IOHelper.parseMemoryUsageSetting("main:100");
+        assertEquals(100L, setting.getMaxMainMemoryBytes());
+    }
+
+    /**
+     * Test for {@link IOHelper#parseMemoryUsageSetting(String)}.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void parseMemoryUsageSetting_mixedWithoutSize() {
+        IOHelper.parseMemoryUsageSetting("mixed");
+    }
+
+    /**
+     * Test for {@link IOHelper#parseMemoryUsageSetting(String)} with size that does not fit into <code>long</code>.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void parseMemoryUsageSetting_tooBig() {
+        IOHelper.parseMemoryUsageSetting("main:99999999999G");
+    }
+
+    /**
+     * Test for {@link IOHelper#load(File, MemoryUsageSetting)}.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void loadWithTempFileOnly() throws IOException {
+        final File pdfFile = Paths.get(TEST_PATH, "metadata", "title-bar.pdf").toFile();
+        final File metadataFile = Paths.get(TEST_PATH, "metadata", "title-bar_metadata.txt").toFile();
+        final File tempMetadataFile = Paths.get(TEST_PATH, "metadata", "title-bar_metadata_temp.txt").toFile();
+
+        // Execute.
+        final PDDocument document = IOHelper.load(pdfFile, MemoryUsageSetting.setupTempFileOnly());
+        try {
+            IOHelper.saveMetadata(document, tempMetadataFile);
+        } finally {
+            document.close();
+        }
+
+        // Compare results.
+        fileCompare(metadataFile, tempMetadataFile);
+
+        // Clean.
+        tempMetadataFile.delete();
     }
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link Index}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class IndexTest {
+
+    private final static String TEST_PATH = "src" + File.separatorChar + "test" + File.separatorChar + "resources";
+
+    private static List<String> getNames(final List<Index.Entry> entries) {
+        final List<String> names = new ArrayList<>();
+        for (Index.Entry entry : entries) {
+            names.add(new File(entry.getPath()).getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void scan() throws IOException, InterruptedException {
+        final Path libraryDir = Paths.get(TEST_PATH, "index_library");
+        final File indexFile = Paths.get(TEST_PATH, "index_library.idx").toFile();
+        final Path documentPath = libraryDir.resolve("document.pdf");
+        final Path titleBarPath = libraryDir.resolve("title-bar.pdf");
+
+        try {
+            Files.createDirectories(libraryDir);
+            Files.copy(Paths.get(TEST_PATH, "document.pdf"), documentPath);
+            Files.copy(Paths.get(TEST_PATH, "metadata", "title-bar.pdf"), titleBarPath);
+            Files.copy(Paths.get(TEST_PATH, "outlines", "bookmarks.pdf"), libraryDir.resolve("bookmarks.pdf"));
+            final List<File> pdfFiles = new Batch(libraryDir.toString(), null, 1).getPdfFiles();
+
+            // First scan parses all PDF files.
+            final Index index = new Index(indexFile);
+            Index.Summary summary = index.scan(pdfFiles, 2);
+            assertEquals(3, summary.getParsed());
+            assertEquals(0, summary.getFailures().size());
+            index.save();
+
+            // Query saved index.
+            final Index savedIndex = new Index(indexFile);
+            assertEquals(Arrays.asList("bookmarks.pdf", "document.pdf"),
+                    getNames(savedIndex.query(Collections.singletonList("!Title"))));
+            assertEquals(Collections.singletonList("title-bar.pdf"),
+                    getNames(savedIndex.query(Arrays.asList("Author=Mary", "Producer~PDF Library", "pages>0"))));
+            assertEquals(Arrays.asList("bookmarks.pdf", "title-bar.pdf"),
+                    getNames(savedIndex.query(Collections.singletonList("outlines"))));
+
+            // Not changed PDF files are not parsed again, even if modification time is changed.
+            titleBarPath.toFile().setLastModified(titleBarPath.toFile().lastModified() + 10000);
+            summary = savedIndex.scan(pdfFiles, 2);
+            assertEquals(0, summary.getParsed());
+            assertEquals(3, summary.getUnchanged());
+
+            // Changed PDF files are parsed again, absent PDF files are removed.
+            IOHelper.updateMetadata(documentPath.toFile(), Paths.get(TEST_PATH, "metadata", "title-bar_metadata.txt")
+                    .toFile());
+            summary = savedIndex.scan(new Batch(documentPath.toString(), null, 1).getPdfFiles(), 2);
+            assertEquals(1, summary.getParsed());
+            assertEquals(2, summary.getRemoved());
+            assertEquals(Collections.singletonList("document.pdf"),
+                    getNames(savedIndex.query(Collections.singletonList("Title=Avoiding Cape Cod Traffic"))));
+            assertNull(savedIndex.getEntries().iterator().next().getError());
+        } finally {
+            // Clean.
+            indexFile.delete();
+            for (String filename : libraryDir.toFile().list()) {
+                libraryDir.resolve(filename).toFile().delete();
+            }
+            libraryDir.toFile().delete();
+        }
+    }
+
+    private static void clean(final Path libraryDir, final File indexFile) {
+        indexFile.delete();
+        if (libraryDir.toFile().exists()) {
+            for (String filename : libraryDir.toFile().list()) {
+                libraryDir.resolve(filename).toFile().delete();
+            }
+            libraryDir.toFile().delete();
+        }
+    }
+
+    @Test
+    public void saveIncrementally() throws IOException, InterruptedException {
+        final Path libraryDir = Paths.get(TEST_PATH, "index_incremental");
+        final File indexFile = Paths.get(TEST_PATH, "index_incremental.idx").toFile();
+        final Path titleBarPath = libraryDir.resolve("title-bar.pdf");
+
+        try {
+            Files.createDirectories(libraryDir);
+            for (int i = 0; i < 10; ++i) {
+                Files.copy(Paths.get(TEST_PATH, "outlines", "bookmarks.pdf"), libraryDir.resolve(i + ".pdf"));
+            }
+            Files.copy(Paths.get(TEST_PATH, "metadata", "title-bar.pdf"), titleBarPath);
+            final List<File> pdfFiles = new Batch(libraryDir.toString(), null, 1).getPdfFiles();
+
+            final Index index = new Index(indexFile);
+            index.scan(pdfFiles, 2);
+            index.save();
+            final long fullSize = indexFile.length();
+
+            // Only the record of changed PDF file is appended.
+            titleBarPath.toFile().setLastModified(titleBarPath.toFile().lastModified() + 10000);
+            index.scan(pdfFiles, 2);
+            index.save();
+            assertTrue(indexFile.length() > fullSize);
+            assertTrue(indexFile.length() - fullSize < fullSize / 5);
+
+            // Partially written record is ignored and replaced by the next save.
+            Files.write(indexFile.toPath(), new byte[] { 0, 0, 1, 0, 1, 2, 3 }, StandardOpenOption.APPEND);
+            final Index savedIndex = new Index(indexFile);
+            assertEquals(11, savedIndex.getEntries().size());
+            assertEquals(titleBarPath.toFile().lastModified(),
+                    savedIndex.query(Collections.singletonList("Author=Mary")).get(0).getLastModified());
+
+            Files.delete(titleBarPath);
+            savedIndex.scan(new Batch(libraryDir.toString(), null, 1).getPdfFiles(), 2);
+            savedIndex.save();
+            assertEquals(10, new Index(indexFile).getEntries().size());
+        } finally {
+            // Clean.
+            clean(libraryDir, indexFile);
+        }
+    }
+
+    @Test
+    public void scanKeepsFailed() throws IOException, InterruptedException {
+        final Path libraryDir = Paths.get(TEST_PATH, "index_failed");
+        final File indexFile = Paths.get(TEST_PATH, "index_failed.idx").toFile();
+        final Path documentPath = libraryDir.resolve("document.pdf");
+
+        try {
+            Files.createDirectories(libraryDir);
+            Files.copy(Paths.get(TEST_PATH, "metadata", "title-bar.pdf"), documentPath);
+            final List<File> pdfFiles = new Batch(libraryDir.toString(), null, 1).getPdfFiles();
+
+            final Index index = new Index(indexFile);
+            index.scan(pdfFiles, 1);
+
+            // PDF file can not be read: summary is kept and not counted as removed.
+            Files.delete(documentPath);
+            final Index.Summary summary = index.scan(pdfFiles, 1);
+            assertEquals(1, summary.getFailures().size());
+            assertEquals(0, summary.getRemoved());
+            assertEquals(Collections.singletonList("document.pdf"),
+                    getNames(index.query(Collections.singletonList("Author=Mary"))));
+        } finally {
+            // Clean.
+            clean(libraryDir, indexFile);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWrongCondition() {
+        Index.parseCondition("pages>many");
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Test;
+
+/**
+ * Test for {@link MetadataReader}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class MetadataReaderTest {
+
+    private final static String TEST_PATH = "src" + File.separatorChar + "test" + File.separatorChar + "resources";
+
+    private static void assertSameMetadata(final File pdfFile) throws IOException {
+        final List<String> expected;
+        try (PDDocument document = PDDocument.load(pdfFile)) {
+            expected = MetadataHelper.metadataToLineList(document.getDocumentInformation());
+        }
+        assertEquals(expected, MetadataHelper.metadataToLineList(pdfFile));
+    }
+
+    @Test
+    public void load() throws IOException {
+        assertSameMetadata(Paths.get(TEST_PATH, "document.pdf").toFile());
+        assertSameMetadata(Paths.get(TEST_PATH, "metadata", "title-bar.pdf").toFile());
+        assertSameMetadata(Paths.get(TEST_PATH, "metadata", "cmp_state_metadata.pdf").toFile());
+    }
+
+    @Test
+    public void loadIncremental() throws IOException {
+        final Path pdfPath = Paths.get(TEST_PATH, "metadata_reader_document.pdf");
+        final Path metadataPath = Paths.get(TEST_PATH, "metadata", "title-bar_metadata.txt");
+
+        try {
+            // Metadata from the last incremental update should be read.
+            Files.copy(Paths.get(TEST_PATH, "document.pdf"), pdfPath, StandardCopyOption.REPLACE_EXISTING);
+            new Pipeline().updateMetadata(metadataPath.toFile()).setIncremental(true).execute(pdfPath.toFile());
+
+            assertSameMetadata(pdfPath.toFile());
+            try (PDDocument document = MetadataReader.load(pdfPath.toFile())) {
+                assertEquals(Files.readAllLines(metadataPath),
+                        MetadataHelper.metadataToLineList(document.getDocumentInformation()));
+            }
+        } finally {
+            // Clean.
+            Files.deleteIfExists(pdfPath);
+        }
+    }
+
+    @Test
+    public void loadGenerated() throws IOException {
+        final Path pdfPath = Paths.get(TEST_PATH, "metadata_reader_generated.pdf");
+
+        try {
+            PdfGenerator.parse("pages=1000,depth=2,breadth=10,info=20").generate(pdfPath.toFile());
+
+            assertSameMetadata(pdfPath.toFile());
+        } finally {
+            // Clean.
+            Files.deleteIfExists(pdfPath);
+        }
+    }
+}
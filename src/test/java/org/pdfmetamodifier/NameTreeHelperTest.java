@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.junit.Test;
+
+/**
+ * Test for {@link NameTreeHelper}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class NameTreeHelperTest {
+
+    /*
+     * Check B-tree: size of nodes, Limits and order of names. Names and values are collected in order, depths of
+     * leaves are collected too.
+     */
+    private static void check(final COSDictionary node, final boolean root, final int depth,
+            final List<COSString> names, final List<COSBase> values, final Set<Integer> leafDepths) {
+        final int firstName = names.size();
+        if (node.getDictionaryObject(COSName.KIDS) instanceof COSArray) {
+            final COSArray kids = (COSArray) node.getDictionaryObject(COSName.KIDS);
+            assertTrue(kids.size() <= NameTreeHelper.MAX_NODE_SIZE);
+            for (int i = 0; i < kids.size(); ++i) {
+                check((COSDictionary) kids.getObject(i), false, depth + 1, names, values, leafDepths);
+            }
+        } else {
+            final COSArray leafNames = (COSArray) node.getDictionaryObject(COSName.NAMES);
+            assertTrue(leafNames.size() / 2 <= NameTreeHelper.MAX_NODE_SIZE);
+            for (int i = 0; i < leafNames.size(); i += 2) {
+                names.add((COSString) leafNames.getObject(i));
+                values.add(leafNames.getObject(i + 1));
+            }
+            leafDepths.add(depth);
+        }
+
+        final COSArray limits = (COSArray) node.getDictionaryObject(COSName.LIMITS);
+        if (root) {
+            assertNull(limits);
+        } else {
+            assertEquals(names.get(firstName), limits.getObject(0));
+            assertEquals(names.get(names.size() - 1), limits.getObject(1));
+        }
+    }
+
+    private static List<COSBase> check(final COSDictionary root) {
+        final List<COSString> names = new ArrayList<>();
+        final List<COSBase> values = new ArrayList<>();
+        final Set<Integer> leafDepths = new HashSet<>();
+        check(root, true, 0, names, values, leafDepths);
+
+        // Balanced and sorted.
+        assertEquals(1, leafDepths.size());
+        for (int i = 1; i < names.size(); ++i) {
+            assertTrue(NameTreeHelper.compare(names.get(i - 1), names.get(i)) <= 0);
+        }
+        return values;
+    }
+
+    private static int countUpdated(final COSDictionary node) {
+        int count = node.isNeedToBeUpdated() ? 1 : 0;
+        if (node.getDictionaryObject(COSName.KIDS) instanceof COSArray) {
+            final COSArray kids = (COSArray) node.getDictionaryObject(COSName.KIDS);
+            for (int i = 0; i < kids.size(); ++i) {
+                count += countUpdated((COSDictionary) kids.getObject(i));
+            }
+        }
+        return count;
+    }
+
+    private static void clearUpdated(final COSDictionary node) {
+        node.setNeedToBeUpdated(false);
+        if (node.getDictionaryObject(COSName.KIDS) instanceof COSArray) {
+            final COSArray kids = (COSArray) node.getDictionaryObject(COSName.KIDS);
+            for (int i = 0; i < kids.size(); ++i) {
+                clearUpdated((COSDictionary) kids.getObject(i));
+            }
+        }
+    }
+
+    /**
+     * Test for {@link NameTreeHelper#compare(COSString, COSString)}.
+     */
+    @Test
+    public void compare() {
+        assertTrue(NameTreeHelper.compare(new COSString("a"), new COSString("b")) < 0);
+        assertTrue(NameTreeHelper.compare(new COSString("a"), new COSString("a.txt")) < 0);
+        assertTrue(NameTreeHelper.compare(new COSString("a.txt"), new COSString("a0")) < 0);
+        assertTrue(NameTreeHelper.compare(new COSString(new byte[] { (byte) 0xFF }), new COSString("a")) > 0);
+        assertEquals(0, NameTreeHelper.compare(new COSString("a"), new COSString("a")));
+    }
+
+    /**
+     * Test for {@link NameTreeHelper#add(COSDictionary, COSString, COSBase)}.
+     */
+    @Test
+    public void add() {
+        final int count = 50000;
+
+        // Names in random order, some of them are equal.
+        final Random random = new Random(0);
+        final COSDictionary root = new COSDictionary();
+        final Set<Integer> uniqueNames = new HashSet<>();
+        for (int i = 0; i < count; ++i) {
+            final int name = random.nextInt(count);
+            uniqueNames.add(name);
+            NameTreeHelper.add(root, new COSString(String.format("file-%05d", name)), COSInteger.get(i));
+        }
+        final List<COSBase> values = check(root);
+        assertEquals(uniqueNames.size(), values.size());
+
+        // Adding of one name changes only nodes on the path to it.
+        clearUpdated(root);
+        NameTreeHelper.add(root, new COSString("file-12345.txt"), COSInteger.get(count));
+        assertTrue(check(root).contains(COSInteger.get(count)));
+        assertTrue(countUpdated(root) <= 6);
+    }
+
+    /**
+     * Test for {@link NameTreeHelper#add(COSDictionary, COSString, COSBase)} with the name that already exists.
+     */
+    @Test
+    public void addExisting() {
+        final int count = 1000;
+
+        final COSDictionary root = new COSDictionary();
+        for (int i = 0; i < count; ++i) {
+            NameTreeHelper.add(root, new COSString(String.format("file-%04d", i)), COSInteger.get(i));
+        }
+
+        // Value is replaced in place, only the leaf is changed.
+        clearUpdated(root);
+        NameTreeHelper.add(root, new COSString("file-0500"), COSInteger.get(count));
+        final List<COSBase> values = check(root);
+        assertEquals(count, values.size());
+        assertEquals(COSInteger.get(count), values.get(500));
+        assertEquals(1, countUpdated(root));
+    }
+
+    /**
+     * Test for {@link NameTreeHelper#add(COSDictionary, COSString, COSBase)} for flat tree without Limits.
+     */
+    @Test
+    public void addToFlatTree() {
+        final int count = 200;
+
+        // One kid per name, names are not sorted.
+        final COSArray kids = new COSArray();
+        for (int i = count - 1; i >= 0; --i) {
+            final COSArray names = new COSArray();
+            names.add(new COSString(String.format("%03d", i)));
+            names.add(COSInteger.get(i));
+            final COSDictionary kid = new COSDictionary();
+            kid.setItem(COSName.NAMES, names);
+            kids.add(kid);
+        }
+        final COSDictionary root = new COSDictionary();
+        root.setItem(COSName.KIDS, kids);
+
+        // Tree is rebuilt, all names are kept, value of the existing name is replaced.
+        NameTreeHelper.add(root, new COSString("100"), COSInteger.get(count));
+        final List<COSBase> values = check(root);
+        assertEquals(count, values.size());
+        assertEquals(COSInteger.get(99), values.get(99));
+        assertEquals(COSInteger.get(count), values.get(100));
+        assertEquals(COSInteger.get(count - 1), values.get(count - 1));
+    }
+
+    /**
+     * Test for {@link NameTreeHelper#add(COSDictionary, COSString, COSBase)} for tree with wrong Limits in the node
+     * that is not on the path to the added name.
+     */
+    @Test
+    public void addToTreeWithWrongLimits() {
+        final int count = 1000;
+
+        final COSDictionary root = new COSDictionary();
+        for (int i = 0; i < count; ++i) {
+            NameTreeHelper.add(root, new COSString(String.format("file-%04d", i * 10)), COSInteger.get(i));
+        }
+
+        // The highest name of the first leaf is wrong, but Limits of leaves are still in order.
+        final COSDictionary firstLeaf = (COSDictionary) ((COSArray) root.getDictionaryObject(COSName.KIDS))
+                .getObject(0);
+        final COSArray limits = (COSArray) firstLeaf.getDictionaryObject(COSName.LIMITS);
+        limits.set(1, new COSString(((COSString) limits.getObject(1)).getString() + "5"));
+
+        // Tree is rebuilt, so Limits of all nodes are right.
+        NameTreeHelper.add(root, new COSString("file-99995"), COSInteger.get(count));
+        final List<COSBase> values = check(root);
+        assertEquals(count + 1, values.size());
+        assertEquals(COSInteger.get(count), values.get(count));
+    }
+
+    /**
+     * Test for {@link NameTreeHelper#rebuild(COSDictionary)} with equal names.
+     */
+    @Test
+    public void rebuildDuplicates() {
+        // The same name twice in one leaf: the last one is kept, as viewers do.
+        final COSArray names = new COSArray();
+        names.add(new COSString("b"));
+        names.add(COSInteger.get(1));
+        names.add(new COSString("a"));
+        names.add(COSInteger.get(2));
+        names.add(new COSString("b"));
+        names.add(COSInteger.get(3));
+        final COSDictionary root = new COSDictionary();
+        root.setItem(COSName.NAMES, names);
+
+        NameTreeHelper.rebuild(root);
+        final List<COSBase> values = check(root);
+        assertEquals(2, values.size());
+        assertEquals(COSInteger.get(2), values.get(0));
+        assertEquals(COSInteger.get(3), values.get(1));
+    }
+}
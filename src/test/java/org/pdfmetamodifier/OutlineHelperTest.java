@@ -19,18 +19,21 @@
 package org.pdfmetamodifier;
 
 import static org.junit.Assert.assertEquals;
-import static org.mockito.ArgumentMatchers.any;
+import static org.junit.Assert.assertSame;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageTree;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -166,12 +169,11 @@ public class OutlineHelperTest {
                 return mockPages.get(idx);
             }
         });
-        when(pageTree.indexOf(any(PDPage.class))).then(new Answer<Integer>() {
+        when(pageTree.iterator()).then(new Answer<Iterator<PDPage>>() {
 
             @Override
-            public Integer answer(final InvocationOnMock invocation) throws Throwable {
-                final PDPage page = (PDPage) invocation.getArguments()[0];
-                return mockPages.indexOf(page);
+            public Iterator<PDPage> answer(final InvocationOnMock invocation) throws Throwable {
+                return mockPages.iterator();
             }
         });
 
@@ -184,4 +186,162 @@ public class OutlineHelperTest {
             assertEquals(cleanLineList.get(i), resultLineList.get(i));
         }
     }
+
+    /**
+     * Test for {@link OutlineHelper#lineListToOutlines(org.apache.pdfbox.pdmodel.PDPageTree, java.util.List)} and
+     * {@link OutlineHelper#outlinesToLineList(org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline, org.apache.pdfbox.pdmodel.PDPageTree, org.apache.pdfbox.pdmodel.PDDestinationNameTreeNode)}
+     * for document with many pages.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void lineListToOutlinesAndBack_manyPages() throws IOException {
+        final int pageCount = 2000;
+
+        final PDDocument document = new PDDocument();
+        try {
+            for (int i = 0; i < pageCount; ++i) {
+                document.addPage(new PDPage());
+            }
+
+            // Pages in reverse order, some of them point to the same page.
+            final List<String> lineList = new ArrayList<>();
+            for (int i = pageCount; i > 0; --i) {
+                lineList.add(String.format("Chapter %d|%d", i, i));
+                lineList.add(String.format("    Section %d|%d", i, (i + 1) / 2));
+            }
+
+            final PDPageTree pageTree = document.getPages();
+
+            final PDDocumentOutline documentOutline = OutlineHelper.lineListToOutlines(pageTree, lineList);
+
+            final List<String> resultLineList = OutlineHelper.outlinesToLineList(documentOutline, pageTree, null);
+
+            assertEquals(lineList, resultLineList);
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Test for {@link OutlineHelper#lineListToOutlines(org.apache.pdfbox.pdmodel.PDPageTree, java.util.List)} with
+     * duplicated lines.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void lineListToOutlines_duplicates() throws IOException {
+        final List<String> lineList = new ArrayList<>();
+        lineList.add("Chapter 1");
+        lineList.add("    Exercises");
+        lineList.add("        Exercise 1");
+        lineList.add("Chapter 2");
+        lineList.add("    Exercises");
+        lineList.add("        Exercise 1");
+        lineList.add("        Exercise 2");
+        lineList.add("    Exercises");
+        lineList.add("Exercises");
+
+        final PDDocument document = new PDDocument();
+        try {
+            final PDDocumentOutline documentOutline = OutlineHelper.lineListToOutlines(document.getPages(), lineList);
+
+            final List<String> resultLineList = OutlineHelper.outlinesToLineList(documentOutline,
+                    document.getPages(), null);
+
+            assertEquals(lineList, resultLineList);
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Test for
+     * {@link OutlineHelper#updateOutlines(PDDocumentOutline, PDPageTree, org.apache.pdfbox.pdmodel.PDDestinationNameTreeNode, List)}.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void updateOutlines() throws IOException {
+        final List<String> lineList = new ArrayList<>();
+        lineList.add("Chapter 1|1");
+        lineList.add("    Section 1|1");
+        lineList.add("    Section 2|2");
+        lineList.add("Chapter 2|3");
+        lineList.add("    Section 3|3");
+
+        final PDDocument document = new PDDocument();
+        try {
+            for (int i = 0; i < 3; ++i) {
+                document.addPage(new PDPage());
+            }
+            final PDPageTree pageTree = document.getPages();
+            final PDDocumentOutline documentOutline = OutlineHelper.lineListToOutlines(pageTree, lineList);
+
+            // The same lines: nothing is changed.
+            assertEquals(0, OutlineHelper.updateOutlines(documentOutline, pageTree, null, lineList));
+
+            // Retitle and change of page: only one Outline (bookmark) is changed.
+            final PDOutlineItem section = documentOutline.getFirstChild().getLastChild();
+            lineList.set(2, "    Section Two|3");
+            assertEquals(1, OutlineHelper.updateOutlines(documentOutline, pageTree, null, lineList));
+            assertEquals(lineList, OutlineHelper.outlinesToLineList(documentOutline, pageTree, null));
+            assertSame(section.getCOSObject(), documentOutline.getFirstChild().getLastChild().getCOSObject());
+
+            // Move, add and remove.
+            lineList.remove(4);
+            lineList.add(1, "    Section 3|3");
+            lineList.add("New chapter");
+            OutlineHelper.updateOutlines(documentOutline, pageTree, null, lineList);
+            assertEquals(lineList, OutlineHelper.outlinesToLineList(documentOutline, pageTree, null));
+            assertEquals(3, documentOutline.getOpenCount());
+            assertEquals(-3, documentOutline.getFirstChild().getOpenCount());
+        } finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Test for {@link OutlineHelper#lineListToOutlines(org.apache.pdfbox.pdmodel.PDPageTree, java.util.List)} with
+     * big flat and deep lists.
+     * 
+     * @throws IOException
+     */
+    @Test(timeout = 10000)
+    public void lineListToOutlines_flatAndDeep() throws IOException {
+        final int count = 20000;
+
+        final List<String> lineList = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            lineList.add("Flat " + i);
+        }
+        final StringBuilder shift = new StringBuilder();
+        for (int i = 0; i < 500; ++i) {
+            lineList.add(shift + "Deep " + i);
+            shift.append(" ");
+        }
+
+        final PDDocument document = new PDDocument();
+        try {
+            final PDDocumentOutline documentOutline = OutlineHelper.lineListToOutlines(document.getPages(), lineList);
+
+            int flatCount = 0;
+            for (PDOutlineItem outlineItem : documentOutline.children()) {
+                ++flatCount;
+                if (outlineItem.getTitle().startsWith("Deep")) {
+                    // Check depth.
+                    int depth = 0;
+                    PDOutlineItem item = outlineItem;
+                    while (item != null) {
+                        ++depth;
+                        item = item.getFirstChild();
+                    }
+                    assertEquals(500, depth);
+                }
+            }
+            assertEquals(count + 1, flatCount);
+        } finally {
+            document.close();
+        }
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Test;
+
+/**
+ * Test for {@link PdfGenerator}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class PdfGeneratorTest {
+
+    private final static String TEST_PATH = "src" + File.separatorChar + "test" + File.separatorChar + "resources";
+
+    @Test
+    public void parse() {
+        final PdfGenerator generator = PdfGenerator.parse("pages=2K, depth=3,breadth=4,info=1,size=1M");
+        assertEquals(4 + 4 * 4 + 4 * 4 * 4, generator.getOutlines());
+        assertEquals(0, PdfGenerator.parse("depth=0").getOutlines());
+        assertEquals(0, PdfGenerator.parse("breadth=0").getOutlines());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWrongKey() {
+        PdfGenerator.parse("pages=10,colors=2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseWrongPages() {
+        PdfGenerator.parse("pages=0");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void createTooManyOutlines() throws IOException {
+        PdfGenerator.parse("depth=10,breadth=10").create();
+    }
+
+    @Test
+    public void generate() throws IOException {
+        final Path pdfPath1 = Paths.get(TEST_PATH, "generated_1.pdf");
+        final Path pdfPath2 = Paths.get(TEST_PATH, "generated_2.pdf");
+        final Path pdfPath3 = Paths.get(TEST_PATH, "generated_3.pdf");
+        final Path outlinesPath = Paths.get(TEST_PATH, "generated_outlines.txt");
+        final Path attachmentsPath = Paths.get(TEST_PATH, "generated_attachments");
+
+        try {
+            final String spec = "seed=7,pages=100,depth=3,breadth=4,destinations=10,info=5,attachments=3,size=100K";
+            PdfGenerator.parse(spec).generate(pdfPath1.toFile());
+            PdfGenerator.parse(spec).generate(pdfPath2.toFile());
+            PdfGenerator.parse(spec).setSeed(8).generate(pdfPath3.toFile());
+
+            // The same seed gives the same PDF file.
+            assertArrayEquals(Files.readAllBytes(pdfPath1), Files.readAllBytes(pdfPath2));
+            assertFalse(Arrays.equals(Files.readAllBytes(pdfPath1), Files.readAllBytes(pdfPath3)));
+
+            try (PDDocument document = PDDocument.load(pdfPath1.toFile())) {
+                assertEquals(100, document.getNumberOfPages());
+                assertEquals(8 + 5, document.getDocumentInformation().getMetadataKeys().size());
+                assertEquals(10, document.getDocumentCatalog().getNames().getDests().getNames().size());
+
+                // Named destinations are resolved to pages.
+                IOHelper.saveOutlines(document, outlinesPath.toFile());
+                final List<String> lines = Files.readAllLines(outlinesPath);
+                assertEquals(4 + 4 * 4 + 4 * 4 * 4, lines.size());
+                for (String line : lines) {
+                    assertTrue(line, line.matches(".*" + OutlineHelper.SEPARATOR + "\\d+"));
+                }
+
+                assertEquals(3 * 100 * 1024, IOHelper.saveAttachments(document, attachmentsPath.toFile()));
+                assertEquals(3, attachmentsPath.toFile().list().length);
+            }
+        } finally {
+            // Clean.
+            for (Path path : Arrays.asList(pdfPath1, pdfPath2, pdfPath3, outlinesPath)) {
+                Files.deleteIfExists(path);
+            }
+            final File[] attachmentFiles = attachmentsPath.toFile().listFiles();
+            if (attachmentFiles != null) {
+                for (File attachmentFile : attachmentFiles) {
+                    attachmentFile.delete();
+                }
+            }
+            Files.deleteIfExists(attachmentsPath);
+        }
+    }
+}
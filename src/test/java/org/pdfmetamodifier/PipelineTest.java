@@ -0,0 +1,482 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.pdfbox.cos.COSInputStream;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Test;
+
+/**
+ * Test for {@link Pipeline}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class PipelineTest {
+
+    private final static String TEST_PATH = "src" + File.separatorChar + "test" + File.separatorChar + "resources";
+
+    /**
+     * Test for {@link Pipeline#execute(File)} with several modifying operations.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void executeSeveralOperations() throws IOException {
+        final Path originalPdfPath = Paths.get(TEST_PATH, "document.pdf");
+        final Path pdfPath = Paths.get(TEST_PATH, "pipeline_document.pdf");
+        final Path originalOutlinesPath = Paths.get(TEST_PATH, "outlines", "bookmarks_bookmarks.txt");
+        final Path originalMetadataPath = Paths.get(TEST_PATH, "metadata", "title-bar_metadata.txt");
+        final Path outlinesPath = Paths.get(TEST_PATH, "pipeline_bookmarks.txt");
+        final Path metadataPath = Paths.get(TEST_PATH, "pipeline_metadata.txt");
+
+        // Copy original file.
+        Files.copy(originalPdfPath, pdfPath, StandardCopyOption.REPLACE_EXISTING);
+
+        // Update and save Outlines (bookmarks) and Metadata with single load.
+        //@formatter:off
+        final boolean modified = new Pipeline()
+                .updateOutlines(originalOutlinesPath.toFile())
+                .updateMetadata(originalMetadataPath.toFile())
+                .saveOutlines(outlinesPath.toFile())
+                .saveMetadata(metadataPath.toFile())
+                .execute(pdfPath.toFile());
+        //@formatter:on
+        assertTrue(modified);
+
+        // Check that results were saved.
+        assertEquals(Files.readAllLines(originalOutlinesPath), Files.readAllLines(outlinesPath));
+        assertEquals(Files.readAllLines(originalMetadataPath), Files.readAllLines(metadataPath));
+        Files.delete(outlinesPath);
+        Files.delete(metadataPath);
+
+        // Check modified file.
+        IOHelper.saveOutlines(pdfPath.toFile(), outlinesPath.toFile());
+        IOHelper.saveMetadata(pdfPath.toFile(), metadataPath.toFile());
+        assertEquals(Files.readAllLines(originalOutlinesPath), Files.readAllLines(outlinesPath));
+        assertEquals(Files.readAllLines(originalMetadataPath), Files.readAllLines(metadataPath));
+
+        // Clean.
+        Files.delete(outlinesPath);
+        Files.delete(metadataPath);
+        Files.delete(pdfPath);
+    }
+
+    /**
+     * Test for {@link Pipeline#execute(File)} without operations: PDF file is not loaded.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void executeEmpty() throws IOException {
+        final Path pdfPath = Paths.get(TEST_PATH, "pipeline_empty.pdf");
+        try {
+            Files.write(pdfPath, Arrays.asList("Not a PDF file"));
+
+            final Stats stats = new Stats();
+            assertTrue(new Pipeline().isEmpty());
+            assertFalse(new Pipeline().setMetricsListener(stats).execute(pdfPath.toFile()));
+            assertTrue(stats.getTotals().isEmpty());
+        } finally {
+            // Clean.
+            pdfPath.toFile().delete();
+        }
+    }
+
+    /**
+     * Test for {@link Pipeline#execute(File)} without modifying operations.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void executeReadOnly() throws IOException {
+        final Path pdfPath = Paths.get(TEST_PATH, "metadata", "title-bar.pdf");
+        final Path metadataPath = Paths.get(TEST_PATH, "pipeline_readonly_metadata.txt");
+
+        final long lastModified = pdfPath.toFile().lastModified();
+
+        // Execute.
+        assertFalse(new Pipeline().saveMetadata(metadataPath.toFile()).execute(pdfPath.toFile()));
+
+        // PDF file should not be touched.
+        assertEquals(lastModified, pdfPath.toFile().lastModified());
+
+        // Clean.
+        Files.delete(metadataPath);
+    }
+
+    /**
+     * Test for {@link Pipeline#execute(File)} that is called from several threads at the same time.
+     * 
+     * @throws Exception
+     */
+    @Test
+    public void executeConcurrently() throws Exception {
+        final Path originalPdfPath = Paths.get(TEST_PATH, "document.pdf");
+        final Path originalOutlinesPath = Paths.get(TEST_PATH, "outlines", "bookmarks_bookmarks.txt");
+        final Path originalMetadataPath = Paths.get(TEST_PATH, "metadata", "title-bar_metadata.txt");
+        final Path dir = Paths.get(TEST_PATH, "pipeline_concurrent");
+        Files.createDirectories(dir);
+
+        final int count = 8;
+        final List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            final Path pdfPath = dir.resolve(i + ".pdf");
+            Files.copy(originalPdfPath, pdfPath, StandardCopyOption.REPLACE_EXISTING);
+
+            //@formatter:off
+            tasks.add(() -> new Pipeline()
+                    .updateOutlines(originalOutlinesPath.toFile())
+                    .updateMetadata(originalMetadataPath.toFile())
+                    .execute(pdfPath.toFile()));
+            //@formatter:on
+        }
+
+        // Execute.
+        final ExecutorService executor = Executors.newFixedThreadPool(count);
+        try {
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Check that every file has correct content and there are no temporary files.
+        assertEquals(count, dir.toFile().list().length);
+        for (int i = 0; i < count; ++i) {
+            final Path pdfPath = dir.resolve(i + ".pdf");
+            final Path outlinesPath = dir.resolve(i + "_bookmarks.txt");
+            final Path metadataPath = dir.resolve(i + "_metadata.txt");
+
+            new Pipeline().saveOutlines(outlinesPath.toFile()).saveMetadata(metadataPath.toFile())
+                    .execute(pdfPath.toFile());
+            assertEquals(Files.readAllLines(originalOutlinesPath), Files.readAllLines(outlinesPath));
+            assertEquals(Files.readAllLines(originalMetadataPath), Files.readAllLines(metadataPath));
+
+            Files.delete(outlinesPath);
+            Files.delete(metadataPath);
+            Files.delete(pdfPath);
+        }
+
+        // Clean.
+        Files.delete(dir);
+    }
+
+    /**
+     * Test for {@link Pipeline#execute(File)} with incremental update.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void executeIncremental() throws IOException {
+        final Path originalPdfPath = Paths.get(TEST_PATH, "metadata", "title-bar.pdf");
+        final Path pdfPath = Paths.get(TEST_PATH, "pipeline_incremental.pdf");
+        final Path originalOutlinesPath = Paths.get(TEST_PATH, "outlines", "bookmarks_bookmarks.txt");
+        final Path originalMetadataPath = Paths.get(TEST_PATH, "metadata", "cmp_state_metadata_metadata.txt");
+        final Path outlinesPath = Paths.get(TEST_PATH, "pipeline_incremental_bookmarks.txt");
+        final Path metadataPath = Paths.get(TEST_PATH, "pipeline_incremental_metadata.txt");
+        final Path attachmentsPath = Paths.get(TEST_PATH, "pipeline_incremental_files");
+
+        // Copy original file.
+        Files.copy(originalPdfPath, pdfPath, StandardCopyOption.REPLACE_EXISTING);
+
+        // Execute.
+        //@formatter:off
+        assertTrue(new Pipeline()
+                .setIncremental(true)
+                .updateOutlines(originalOutlinesPath.toFile())
+                .updateMetadata(originalMetadataPath.toFile())
+                .removeAttachments()
+                .execute(pdfPath.toFile()));
+        //@formatter:on
+
+        // Original content should not be changed, only incremental update is appended.
+        final byte[] original = Files.readAllBytes(originalPdfPath);
+        final byte[] updated = Files.readAllBytes(pdfPath);
+        assertTrue(updated.length > original.length);
+        assertTrue(updated.length - original.length < original.length / 4);
+        assertArrayEquals(original, Arrays.copyOf(updated, original.length));
+
+        // Check modified file.
+        //@formatter:off
+        new Pipeline()
+                .saveOutlines(outlinesPath.toFile())
+                .saveMetadata(metadataPath.toFile())
+                .saveAttachments(attachmentsPath.toFile())
+                .execute(pdfPath.toFile());
+        //@formatter:on
+        assertEquals(Files.readAllLines(originalOutlinesPath), Files.readAllLines(outlinesPath));
+        assertEquals(Files.readAllLines(originalMetadataPath), Files.readAllLines(metadataPath));
+        assertEquals(0, attachmentsPath.toFile().list().length);
+
+        // Clean.
+        Files.delete(outlinesPath);
+        Files.delete(metadataPath);
+        Files.delete(attachmentsPath);
+        Files.delete(pdfPath);
+    }
+
+    /**
+     * Test for {@link Pipeline#execute(File)} with incremental update that fails during the write.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void executeIncrementalFailed() throws IOException {
+        final Path originalPdfPath = Paths.get(TEST_PATH, "metadata", "title-bar.pdf");
+        final Path dir = Paths.get(TEST_PATH, "pipeline_incremental_failed");
+        final Path pdfPath = dir.resolve("document.pdf");
+
+        try {
+            Files.createDirectories(dir);
+            Files.copy(originalPdfPath, pdfPath, StandardCopyOption.REPLACE_EXISTING);
+
+            // New object that can not be written.
+            final COSStream brokenStream = new COSStream() {
+
+                @Override
+                public COSInputStream createInputStream() throws IOException {
+                    throw new IOException("Broken stream!");
+                }
+
+                @Override
+                public InputStream createRawInputStream() throws IOException {
+                    throw new IOException("Broken stream!");
+                }
+            };
+            //@formatter:off
+            final Pipeline pipeline = new Pipeline()
+                    .setIncremental(true)
+                    .add(document -> {
+                        document.getDocumentCatalog().getCOSObject().setItem(COSName.METADATA, brokenStream);
+                        return true;
+                    });
+            //@formatter:on
+            try {
+                pipeline.execute(pdfPath.toFile());
+                fail();
+            } catch (IOException e) {
+                // Expected.
+            }
+
+            // Original PDF file is intact, no other files are left.
+            assertArrayEquals(Files.readAllBytes(originalPdfPath), Files.readAllBytes(pdfPath));
+            assertEquals(1, dir.toFile().list().length);
+        } finally {
+            // Clean.
+            pdfPath.toFile().delete();
+            dir.toFile().delete();
+        }
+    }
+
+    /**
+     * Test for {@link Pipeline#execute(File)} with incremental update of one Outline (bookmark) in the big tree.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void executeIncrementalOutlineChange() throws IOException {
+        final Path pdfPath = Paths.get(TEST_PATH, "pipeline_incremental_outline.pdf");
+        final Path outlinesPath = Paths.get(TEST_PATH, "pipeline_incremental_outline_bookmarks.txt");
+
+        try {
+            new PdfGenerator().setPages(50).setOutlineDepth(2).setOutlineBreadth(20).generate(pdfPath.toFile());
+            new Pipeline().saveOutlines(outlinesPath.toFile()).execute(pdfPath.toFile());
+
+            // Retitle Outline (bookmark) in the middle of the tree.
+            final List<String> lines = Files.readAllLines(outlinesPath);
+            final int index = lines.size() / 2;
+            lines.set(index, lines.get(index).replaceFirst("\\S", "X"));
+            Files.write(outlinesPath, lines);
+
+            // Only changed Outline (bookmark) is appended.
+            final long originalSize = Files.size(pdfPath);
+            assertTrue(new Pipeline().setIncremental(true).updateOutlines(outlinesPath.toFile())
+                    .execute(pdfPath.toFile()));
+            assertTrue(Files.size(pdfPath) - originalSize < 1024);
+
+            new Pipeline().saveOutlines(outlinesPath.toFile()).execute(pdfPath.toFile());
+            assertEquals(lines, Files.readAllLines(outlinesPath));
+        } finally {
+            // Clean.
+            pdfPath.toFile().delete();
+            outlinesPath.toFile().delete();
+        }
+    }
+
+    /**
+     * Test for {@link Pipeline#execute(File)} with incremental update of big PDF file: only the update is written.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void executeIncrementalBig() throws IOException {
+        final Path pdfPath = Paths.get(TEST_PATH, "pipeline_incremental_big.pdf");
+
+        try {
+            //@formatter:off
+            new PdfGenerator()
+                    .setPages(1000)
+                    .setAttachments(4)
+                    .setAttachmentSize(2 * 1024 * 1024)
+                    .generate(pdfPath.toFile());
+            //@formatter:on
+            final byte[] original = Files.readAllBytes(pdfPath);
+            final Object fileKey = Files.readAttributes(pdfPath, BasicFileAttributes.class).fileKey();
+
+            // Execute.
+            final Stats stats = new Stats();
+            //@formatter:off
+            assertTrue(new Pipeline()
+                    .setIncremental(true)
+                    .add(document -> {
+                        document.getDocumentInformation().setTitle("Big");
+                        document.getDocumentInformation().getCOSObject().setNeedToBeUpdated(true);
+                        return true;
+                    })
+                    .setMetricsListener(stats)
+                    .execute(pdfPath.toFile()));
+            //@formatter:on
+
+            // Original content is neither read nor written again, PDF file is not replaced.
+            final Stats.Phase save = stats.getTotals().get(Stats.SAVE);
+            assertEquals(0, save.getBytesRead());
+            assertEquals(Files.size(pdfPath) - original.length, save.getBytesWritten());
+            assertTrue(save.getBytesWritten() < 16 * 1024);
+            assertTrue(original.length > 1024 * 1024);
+            assertFalse(stats.getTotals().containsKey(Stats.MOVE));
+            if (fileKey != null) {
+                assertEquals(fileKey, Files.readAttributes(pdfPath, BasicFileAttributes.class).fileKey());
+            }
+            assertArrayEquals(original, Arrays.copyOf(Files.readAllBytes(pdfPath), original.length));
+            try (PDDocument document = PDDocument.load(pdfPath.toFile())) {
+                assertEquals("Big", document.getDocumentInformation().getTitle());
+            }
+        } finally {
+            // Clean.
+            pdfPath.toFile().delete();
+        }
+    }
+
+    /**
+     * Test for {@link Pipeline#setMetricsListener(MetricsListener)}.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void executeWithStats() throws IOException {
+        final Path originalPdfPath = Paths.get(TEST_PATH, "document.pdf");
+        final Path pdfPath = Paths.get(TEST_PATH, "pipeline_stats_document.pdf");
+        final Path originalMetadataPath = Paths.get(TEST_PATH, "metadata", "title-bar_metadata.txt");
+        final Path metadataPath = Paths.get(TEST_PATH, "pipeline_stats_metadata.txt");
+
+        // Copy original file.
+        Files.copy(originalPdfPath, pdfPath, StandardCopyOption.REPLACE_EXISTING);
+
+        // Execute.
+        final Stats stats = new Stats();
+        //@formatter:off
+        new Pipeline()
+                .updateMetadata(originalMetadataPath.toFile())
+                .saveMetadata(metadataPath.toFile())
+                .setMetricsListener(stats)
+                .execute(pdfPath.toFile());
+        //@formatter:on
+
+        // All phases are measured in order of execution.
+        final List<Stats.Phase> phases = stats.getFiles().get(pdfPath.toFile());
+        final List<String> names = new ArrayList<>();
+        for (Stats.Phase phase : phases) {
+            names.add(phase.getName());
+            assertTrue(phase.getNanos() >= 0);
+        }
+        assertEquals(Arrays.asList(Stats.LOAD, "updateMetadata", "saveMetadata", Stats.SAVE, Stats.MOVE), names);
+        assertEquals(Files.size(originalPdfPath), phases.get(0).getBytesRead());
+        assertEquals(Files.size(originalMetadataPath), phases.get(1).getBytesRead());
+        assertEquals(Files.size(metadataPath), phases.get(2).getBytesWritten());
+        assertEquals(Files.size(pdfPath), phases.get(3).getBytesWritten());
+        assertEquals(5, stats.getTotals().size());
+        assertTrue(stats.toJson().contains("\"phase\": \"updateMetadata\""));
+
+        // Clean.
+        Files.delete(metadataPath);
+        Files.delete(pdfPath);
+    }
+
+    /**
+     * Test for {@link Pipeline#saveAttachments(File, int)} with {@link Pipeline#setMetricsListener(MetricsListener)}.
+     * 
+     * @throws IOException
+     */
+    @Test
+    public void saveAttachmentsWithStats() throws IOException {
+        final Path pdfPath = Paths.get(TEST_PATH, "attachments", "cmp_hello_with_attachments.pdf");
+        final Path originalAttachmentsPath = Paths.get(TEST_PATH, "attachments", "cmp_hello_with_attachments_files");
+        final Path attachmentsPath = Paths.get(TEST_PATH, "pipeline_stats_files");
+
+        // Execute.
+        final Stats stats = new Stats();
+        //@formatter:off
+        assertFalse(new Pipeline()
+                .saveAttachments(attachmentsPath.toFile(), 2)
+                .setMetricsListener(stats)
+                .execute(pdfPath.toFile()));
+        //@formatter:on
+
+        // Size of saved files is reported as written bytes.
+        long size = 0;
+        for (String filename : originalAttachmentsPath.toFile().list()) {
+            size += Files.size(originalAttachmentsPath.resolve(filename));
+            assertArrayEquals(Files.readAllBytes(originalAttachmentsPath.resolve(filename)),
+                    Files.readAllBytes(attachmentsPath.resolve(filename)));
+        }
+        assertEquals(originalAttachmentsPath.toFile().list().length, attachmentsPath.toFile().list().length);
+        assertEquals(size, stats.getTotals().get(Pipeline.SAVE_ATTACHMENTS).getBytesWritten());
+
+        // Clean.
+        for (String filename : attachmentsPath.toFile().list()) {
+            Files.delete(attachmentsPath.resolve(filename));
+        }
+        Files.delete(attachmentsPath);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link Server}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class ServerTest {
+
+    private final static String TEST_PATH = "src" + File.separatorChar + "test" + File.separatorChar + "resources";
+
+    /*
+     * Lines of the response: the first line is the answer to the token, the last line of accepted request is exit
+     * status.
+     */
+    private static List<String> request(final Server server, final String token, final File workingDir,
+            final String... args) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            final PrintStream out = new PrintStream(socket.getOutputStream(), false, StandardCharsets.UTF_8.name());
+            final BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            // Request is sent only if the token is accepted.
+            out.println(token);
+            out.flush();
+            final List<String> response = new ArrayList<>();
+            final String answer = in.readLine();
+            response.add(answer);
+            if (!Server.ACCEPTED.equals(answer)) {
+                return response;
+            }
+
+            out.println(Server.escape(workingDir.getAbsolutePath()));
+            out.println(args.length);
+            for (String arg : args) {
+                out.println(Server.escape(arg));
+            }
+            out.flush();
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                response.add(line);
+            }
+            return response;
+        }
+    }
+
+    @Test
+    public void escape() {
+        for (String value : Arrays.asList("", "a b", "a\nb", "a\r\nb", "C:\\Books\\new", "\\n", "\n\\\r")) {
+            assertEquals(value, Server.unescape(Server.escape(value)));
+            assertFalse(Server.escape(value).contains("\n") || Server.escape(value).contains("\r"));
+        }
+        assertEquals("a\\nb", Server.escape("a\nb"));
+        assertEquals("a\\\\nb", Server.escape("a\\nb"));
+    }
+
+    @Test
+    public void serve() throws IOException, InterruptedException {
+        final File infoFile = Paths.get(TEST_PATH, "server_info.txt").toFile();
+        final File metadataDir = Paths.get(TEST_PATH, "metadata").toFile();
+        final Path metadataPath = Paths.get(TEST_PATH, "metadata", "title-bar_metadata_server.txt");
+        final Path multilinePath = Paths.get(TEST_PATH, "metadata", "title-bar\n\\n\r_metadata_server.txt");
+
+        final Server server = new Server(0, 2);
+        final Thread serverThread = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        try {
+            serverThread.start();
+
+            // Port and token are written to the info file.
+            server.writeInfo(infoFile);
+            final List<String> info = Files.readAllLines(infoFile.toPath());
+            assertEquals(Arrays.asList(server.getPort() + " " + server.getToken()), info);
+
+            // Wrong token.
+            assertEquals(Arrays.asList("Wrong token!"), request(server, "token", new File(TEST_PATH), "--version"));
+
+            // Relative paths are resolved against working directory of the client.
+            List<String> response = request(server, server.getToken(), metadataDir, "--pdf", "title-bar.pdf",
+                    "--save-metadata", "title-bar_metadata_server.txt");
+            assertEquals(Arrays.asList(Server.ACCEPTED, String.valueOf(CLI.EXIT_SUCCESS)), response);
+            assertEquals(Files.readAllLines(Paths.get(TEST_PATH, "metadata", "title-bar_metadata.txt")),
+                    Files.readAllLines(metadataPath));
+
+            // Arguments can contain line breaks and backslashes.
+            final String multilineName = "title-bar\n\\n\r_metadata_server.txt";
+            response = request(server, server.getToken(), metadataDir, "--pdf", "title-bar.pdf", "--save-metadata",
+                    multilineName);
+            assertEquals(Arrays.asList(Server.ACCEPTED, String.valueOf(CLI.EXIT_SUCCESS)), response);
+            assertEquals(Files.readAllLines(Paths.get(TEST_PATH, "metadata", "title-bar_metadata.txt")),
+                    Files.readAllLines(multilinePath));
+
+            // Exit status of failed action.
+            response = request(server, server.getToken(), metadataDir, "--pdf", "missing.pdf", "--save-metadata",
+                    "missing_metadata.txt");
+            assertEquals(String.valueOf(CLI.EXIT_FAILURE), response.get(response.size() - 1));
+
+            // Server can not be started from the server.
+            response = request(server, server.getToken(), new File(TEST_PATH), "--server");
+            assertTrue(response.get(1).startsWith("Server"));
+            assertEquals(String.valueOf(CLI.EXIT_FAILURE), response.get(response.size() - 1));
+        } finally {
+            // Clean.
+            server.close();
+            serverThread.join();
+            metadataPath.toFile().delete();
+            multilinePath.toFile().delete();
+        }
+
+        // Info file is removed when server is closed.
+        assertTrue(!infoFile.exists());
+    }
+}
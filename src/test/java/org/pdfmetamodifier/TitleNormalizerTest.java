@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test for {@link TitleNormalizer}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class TitleNormalizerTest {
+
+    /*
+     * Original implementation of OutlineHelper.cleanTitle() (without check for empty result).
+     */
+    private static String legacyCleanTitle(final String title) {
+        //@formatter:off
+        return title
+            .trim()
+            .replaceAll("`",                "'"     )
+            .replaceAll("‘",                "'"     )
+            .replaceAll("’",                "'"     )
+            .replaceAll("”",                "\""    )
+            .replaceAll("“",                "\""    )
+            .replaceAll("''",               "\""    )
+            .replaceAll(" - ",              " – "   )
+            .replaceAll("(?<=\\S)–(?=\\S)", " – "   )
+            .replaceAll("…",                "..."   )
+            .replaceAll("\\. \\. \\.",      "..."   )
+            .replaceAll(" ,",               ","     )
+            .replaceAll(" \\.",             "."     )
+            .replaceAll("\t",               OutlineHelper.SHIFT)
+            .replaceAll("\\s{2,}",          " "     )
+            ;
+        //@formatter:on
+    }
+
+    /**
+     * Test for {@link TitleNormalizer#normalize(String)}: result should be the same as for original implementation.
+     */
+    @Test
+    public void normalize_sameAsLegacy() {
+        final String alphabet = "ab.,-–'`‘’”“… \t\r\n";
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 100000; ++i) {
+            final StringBuilder title = new StringBuilder();
+            final int length = random.nextInt(16);
+            for (int j = 0; j < length; ++j) {
+                title.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            assertEquals(title.toString(), legacyCleanTitle(title.toString()),
+                    TitleNormalizer.DEFAULT.normalize(title.toString()));
+        }
+    }
+
+    /**
+     * Test for {@link TitleNormalizer#normalize(String)}: result of substitution is matched by next substitutions.
+     */
+    @Test
+    public void normalize_ordered() {
+        //@formatter:off
+        assertEquals("\"",                TitleNormalizer.DEFAULT.normalize("`'"              ));
+        assertEquals("\"Title\"",         TitleNormalizer.DEFAULT.normalize("‘’Title’’"       ));
+        assertEquals("Title Subtitle",    TitleNormalizer.DEFAULT.normalize("Title\t\tSubtitle"));
+        //@formatter:on
+    }
+
+    /**
+     * Test for {@link TitleNormalizer#normalize(String)}: clean title should not be copied.
+     */
+    @Test
+    public void normalize_clean() {
+        final String title = "Chapter 1. Introduction";
+        assertSame(title, TitleNormalizer.DEFAULT.normalize(title));
+    }
+
+    /**
+     * Test for {@link TitleNormalizer#withRules(java.util.List)}.
+     */
+    @Test
+    public void withRules() {
+        //@formatter:off
+        final TitleNormalizer normalizer = TitleNormalizer.DEFAULT.withRules(Arrays.asList(
+                TitleNormalizer.Rule.literal("Chapter",     "Ch."   ),
+                TitleNormalizer.Rule.regex  ("^(\\d+)\\)",  "$1"    )
+            ));
+
+        assertEquals("Ch. 1 – Intro",   normalizer.normalize(" Chapter  1 - Intro "));
+        assertEquals("$1 Intro",        normalizer.normalize("12) Intro"           ));
+        //@formatter:on
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2012-2018 PdfMetaModifier Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*
+ * This file is part of PdfMetaModifier.
+ */
+package org.pdfmetamodifier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.junit.Test;
+
+/**
+ * Test for {@link XmpHelper}.
+ * 
+ * @author Dmitry Zavodnikov (d.zavodnikov@gmail.com)
+ */
+public class XmpHelperTest {
+
+    private final static String TEST_PATH = "src" + File.separatorChar + "test" + File.separatorChar + "resources";
+
+    private static List<String> xmpToLineList(final InputStream input) throws IOException {
+        return MetadataHelper.metadataToLineList(XmpHelper.xmpToInformation(input));
+    }
+
+    private static List<String> readMetadata(final Path metadataPath) throws IOException {
+        final List<String> lines = new ArrayList<>();
+        for (String line : Files.readAllLines(metadataPath, StandardCharsets.UTF_8)) {
+            // Custom keys are not stored in XMP.
+            if (!line.startsWith("SourceModified")) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void xmpToInformation() throws IOException {
+        final String[] testFiles = new String[] { "title-bar", "cmp_state_metadata" };
+        for (String filename : testFiles) {
+            final Path xmpPath = Paths.get(TEST_PATH, "metadata", filename + "_xmp_metadata.xmp");
+            final Path metadataPath = Paths.get(TEST_PATH, "metadata", filename + "_metadata.txt");
+
+            try (InputStream input = Files.newInputStream(xmpPath)) {
+                assertEquals(readMetadata(metadataPath), xmpToLineList(input));
+            }
+        }
+    }
+
+    @Test
+    public void updateXmp() throws IOException {
+        final Path xmpPath = Paths.get(TEST_PATH, "metadata", "title-bar_xmp_metadata.xmp");
+        final Path metadataPath = Paths.get(TEST_PATH, "metadata", "cmp_state_metadata_metadata.txt");
+        final PDDocumentInformation information = MetadataHelper
+                .stringListToMetadata(Files.readAllLines(metadataPath, StandardCharsets.UTF_8));
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream input = Files.newInputStream(xmpPath)) {
+            XmpHelper.updateXmp(input, output, information);
+        }
+
+        // Properties are replaced by values from Metadata.
+        assertEquals(readMetadata(metadataPath), xmpToLineList(new ByteArrayInputStream(output.toByteArray())));
+
+        // Other properties are kept.
+        final String xmp = new String(output.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(xmp.contains("<xmpMM:DocumentID>uuid:059d82f9-7a0f-4382-a7c0-c5e27f23affe</xmpMM:DocumentID>"));
+        assertTrue(xmp.contains("<pdfx:SourceModified>D:20101105164213</pdfx:SourceModified>"));
+        assertTrue(xmp.contains("<?xpacket end=\"w\"?>"));
+    }
+
+    private static String roundTrip(final String date) {
+        return XmpHelper.formatDate(XmpHelper.parseDate(date));
+    }
+
+    @Test
+    public void dateRoundTrip() throws IOException {
+        //@formatter:off
+        assertEquals("2016-05-09T13:00:30+02:00", roundTrip("2016-05-09T13:00:30+02:00"));
+        assertEquals("2010-11-05T12:42:32-04:00", roundTrip("2010-11-05T12:42:32-04:00"));
+        assertEquals("2016-05-09T13:00:00+00:00", roundTrip("2016-05-09T13:00Z"       ));
+        assertEquals("2016-05-09T13:00:30+00:00", roundTrip("2016-05-09T13:00:30.25"  ));
+        assertEquals("2016-05-09T00:00:00+00:00", roundTrip("2016-05-09"              ));
+        assertEquals("2016-01-01T00:00:00+00:00", roundTrip("2016"                    ));
+        //@formatter:on
+
+        // Time zone is kept.
+        final Calendar date = XmpHelper.parseDate("2016-05-09T13:00:30+02:00");
+        assertEquals(13, date.get(Calendar.HOUR_OF_DAY));
+        assertEquals(2 * 60 * 60 * 1000, date.get(Calendar.ZONE_OFFSET));
+
+        // Wrong dates are ignored.
+        assertNull(XmpHelper.parseDate("2016-13-09"));
+        assertNull(XmpHelper.parseDate("yesterday"));
+
+        // Dates of Document Information are written to XMP and read back.
+        final PDDocumentInformation information = new PDDocumentInformation();
+        information.setCreationDate(date);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final String emptyXmp = "<rdf:RDF xmlns:rdf=\"" + XmpHelper.RDF_NAMESPACE + "\"></rdf:RDF>";
+        XmpHelper.updateXmp(new ByteArrayInputStream(emptyXmp.getBytes(StandardCharsets.UTF_8)), output, information);
+        final String xmp = new String(output.toByteArray(), StandardCharsets.UTF_8);
+        assertTrue(xmp, xmp.contains("2016-05-09T13:00:30+02:00"));
+        assertEquals(date.getTimeInMillis(), XmpHelper.xmpToInformation(new ByteArrayInputStream(output.toByteArray()))
+                .getCreationDate().getTimeInMillis());
+    }
+}